@@ -0,0 +1,300 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson;
+
+import hudson.DependencyRunner.ProjectRunnable;
+import hudson.model.AbstractProject;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a job on all projects in the order of dependencies, like {@link DependencyRunner} does,
+ * except that projects that don't depend on each other run concurrently.
+ *
+ * <p>
+ * A project runs only after all its upstream projects have completed, so independent branches
+ * of the dependency graph proceed in parallel while each branch is still processed upstream first.
+ * Projects that are in a dependency cycle (or are downstream of one) cannot be ordered, so they run
+ * one by one after all the others have completed.
+ *
+ * <p>
+ * {@link #start()} doesn't block. Each project is handed to the executor as soon as it becomes
+ * runnable, and the completion of a project schedules its downstream projects, so no thread is
+ * tied up waiting for the others. Once started, this object also reports on how the round went.
+ *
+ * @since 1.475
+ */
+public class ParallelDependencyRunner {
+    private final ProjectRunnable runnable;
+    private final Executor executor;
+
+    /**
+     * Projects that are not yet runnable, to the number of their upstream projects that haven't completed.
+     */
+    private final Map<AbstractProject,Integer> waiting = new HashMap<AbstractProject,Integer>();
+
+    /**
+     * Downstream projects of each project, as of when the round has started.
+     * Taking a snapshot keeps the round consistent even if the dependency graph is rebuilt in the mean time.
+     */
+    private final Map<AbstractProject,List<AbstractProject>> downstream = new HashMap<AbstractProject,List<AbstractProject>>();
+
+    /**
+     * Projects that can't be ordered because of dependency cycles.
+     */
+    private final List<AbstractProject> cyclic = new ArrayList<AbstractProject>();
+
+    /**
+     * Number of projects that have been scheduled but not completed.
+     */
+    private int running;
+    /**
+     * True while {@link #start()} is still scheduling the first projects.
+     */
+    private boolean starting;
+    private boolean done;
+
+    private long startTime;
+    private long endTime;
+    private int projectCount;
+    private int maxParallelism;
+    /**
+     * Sum of the time it took to run each project.
+     */
+    private long busyTime;
+
+    /**
+     * @param executor
+     *      Runs the projects. Its number of threads bounds the parallelism.
+     */
+    public ParallelDependencyRunner(ProjectRunnable runnable, Executor executor) {
+        this.runnable = runnable;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the projects that have no upstream projects, and returns immediately.
+     */
+    public synchronized void start() {
+        startTime = System.currentTimeMillis();
+        starting = true;
+
+        List<AbstractProject> all = Jenkins.getInstance().getAllItems(AbstractProject.class);
+        projectCount = all.size();
+        Set<AbstractProject> projects = new HashSet<AbstractProject>(all);
+        for (AbstractProject<?,?> p : all)
+            downstream.put(p, new ArrayList<AbstractProject>());
+        for (AbstractProject<?,?> p : all) {
+            int n=0;
+            for (AbstractProject u : new HashSet<AbstractProject>(p.getUpstreamProjects())) {
+                if (projects.contains(u)) {
+                    downstream.get(u).add(p);
+                    n++;
+                }
+            }
+            waiting.put(p,n);
+        }
+
+        // find the projects that never become runnable because of cycles
+        Map<AbstractProject,Integer> counts = new HashMap<AbstractProject,Integer>(waiting);
+        List<AbstractProject> ready = new ArrayList<AbstractProject>();
+        for (AbstractProject p : all)
+            if (counts.get(p)==0)
+                ready.add(p);
+        List<AbstractProject> roots = new ArrayList<AbstractProject>(ready);
+        while (!ready.isEmpty()) {
+            AbstractProject p = ready.remove(ready.size()-1);
+            counts.remove(p);
+            for (AbstractProject d : downstream.get(p)) {
+                int c = counts.get(d)-1;
+                counts.put(d,c);
+                if (c==0)   ready.add(d);
+            }
+        }
+        for (AbstractProject p : all) {
+            if (counts.containsKey(p)) {
+                LOGGER.fine("deferring project in a dependency cycle: " + p.getName());
+                waiting.remove(p);
+                cyclic.add(p);
+            }
+        }
+
+        for (AbstractProject p : roots) {
+            waiting.remove(p);
+            submit(p);
+        }
+        starting = false;
+        if (running==0)
+            finishAcyclic();
+    }
+
+    private void submit(final AbstractProject p) {
+        running++;
+        maxParallelism = Math.max(maxParallelism,running);
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    try {
+                        invoke(p);
+                    } finally {
+                        completed(p,System.currentTimeMillis()-start);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the polling thread pool is being replaced. we'll get to this project in the next round
+            LOGGER.log(Level.WARNING, "Failed to schedule "+p.getName(), e);
+            completed(p,0);
+        }
+    }
+
+    private void invoke(AbstractProject p) {
+        SecurityContext oldContext = ACL.impersonate(ACL.SYSTEM);
+        try {
+            LOGGER.fine("running project in correct dependency order: " + p.getName());
+            runnable.run(p);
+        } catch (Throwable e) {
+            // don't let one project hold back its downstream projects forever
+            LOGGER.log(Level.WARNING, "Failed to run "+p.getName(), e);
+        } finally {
+            SecurityContextHolder.setContext(oldContext);
+        }
+    }
+
+    private synchronized void completed(AbstractProject p, long duration) {
+        running--;
+        busyTime += duration;
+        for (AbstractProject d : downstream.get(p)) {
+            Integer c = waiting.get(d);
+            if (c==null)    continue;
+            if (c==1) {
+                waiting.remove(d);
+                submit(d);
+            } else {
+                waiting.put(d,c-1);
+            }
+        }
+        if (running==0 && !starting)
+            finishAcyclic();
+    }
+
+    /**
+     * Called when all the projects that can be ordered have completed.
+     */
+    private void finishAcyclic() {
+        if (cyclic.isEmpty()) {
+            finish();
+            return;
+        }
+        final List<AbstractProject> rest = new ArrayList<AbstractProject>(cyclic);
+        cyclic.clear();
+        running++;
+        Runnable task = new Runnable() {
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    for (AbstractProject p : rest)
+                        invoke(p);
+                } finally {
+                    synchronized (ParallelDependencyRunner.this) {
+                        running--;
+                        busyTime += System.currentTimeMillis()-start;
+                        finish();
+                    }
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to schedule the projects in dependency cycles", e);
+            running--;
+            finish();
+        }
+    }
+
+    private void finish() {
+        endTime = System.currentTimeMillis();
+        done = true;
+        LOGGER.fine(String.format("Ran %d projects in %dms. Max parallelism %d, average parallelism %.2f",
+                projectCount, getDuration(), maxParallelism, getAverageParallelism()));
+    }
+
+    /**
+     * Returns true once all the projects have completed.
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * When {@link #start()} was called.
+     */
+    public synchronized long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Time it took to run all the projects, or the time elapsed so far if it's still running.
+     */
+    public synchronized long getDuration() {
+        return (done ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    public synchronized int getProjectCount() {
+        return projectCount;
+    }
+
+    /**
+     * Largest number of projects that were running at the same time.
+     */
+    public synchronized int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    /**
+     * Average number of projects that were running at the same time, that is,
+     * the total time spent running each project divided by {@link #getDuration()}.
+     */
+    public synchronized double getAverageParallelism() {
+        long d = getDuration();
+        return d>0 ? (double)busyTime/d : 0;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelDependencyRunner.class.getName());
+}
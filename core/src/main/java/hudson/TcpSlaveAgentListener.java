@@ -24,6 +24,8 @@
 package hudson;
 
 import hudson.slaves.OfflineCause;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
 import jenkins.AgentProtocol;
 
 import java.io.DataInputStream;
@@ -32,6 +34,12 @@ import java.io.PrintWriter;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,6 +56,13 @@ import java.util.logging.Logger;
  * This class accepts the socket, then after a short handshaking, it dispatches to appropriate
  * {@link AgentProtocol}s.
  *
+ * <p>
+ * The protocol header is read by a small, fixed number of threads with a bounded backlog, the protocols
+ * themselves run on a bounded number of threads, and the rate of accepting new connections is capped,
+ * so that hundreds of slaves reconnecting at once (such as after a restart) do not translate into
+ * hundreds of threads handshaking at once. The socket has a read timeout of {@link #HANDSHAKE_TIMEOUT}
+ * until the protocol completes its handshake, so a client that never speaks can't hold on to a thread either.
+ *
  * @author Kohsuke Kawaguchi
  * @see AgentProtocol
  */
@@ -56,6 +71,37 @@ public final class TcpSlaveAgentListener extends Thread {
     private final ServerSocket serverSocket;
     private volatile boolean shuttingDown;
 
+    /**
+     * Reads the protocol header of new connections. The bounded queue keeps a reconnect storm
+     * from piling up an unbounded number of half-open connections.
+     */
+    private final ThreadPoolExecutor handshakePool = new ThreadPoolExecutor(
+            HANDSHAKE_THREADS, HANDSHAKE_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_PENDING_HANDSHAKES),
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    /**
+     * Runs {@link AgentProtocol}s. Threads are reused across connections, instead of starting
+     * a new thread for every connection. Connections beyond {@link #MAX_PROTOCOL_THREADS} are closed.
+     */
+    private final ThreadPoolExecutor protocolPool = new ThreadPoolExecutor(
+            0, MAX_PROTOCOL_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    /**
+     * Only touched by the listener thread.
+     */
+    private long windowStart;
+    private int acceptedInWindow;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong handshakeTime = new AtomicLong();
+    private final AtomicLong protocolRuns = new AtomicLong();
+    private final AtomicLong protocolTime = new AtomicLong();
+
     public final int configuredPort;
 
     /**
@@ -88,22 +134,54 @@ public final class TcpSlaveAgentListener extends Thread {
         try {
             // the loop eventually terminates when the socket is closed.
             while (true) {
+                throttle();
                 Socket s = serverSocket.accept();
+                accepted.incrementAndGet();
 
                 // this prevents a connection from silently terminated by the router in between or the other peer
                 // and that goes without unnoticed. However, the time out is often very long (for example 2 hours
                 // by default in Linux) that this alone is enough to prevent that.
                 s.setKeepAlive(true);
 
-                new ConnectionHandler(s).start();
+                try {
+                    handshakePool.execute(new ConnectionHandler(s));
+                } catch (RejectedExecutionException e) {
+                    // too many connections are waiting for the handshake. the client will retry
+                    rejected.incrementAndGet();
+                    LOGGER.warning("Rejected connection from "+s.getRemoteSocketAddress()+" as too many connections are being established");
+                    s.close();
+                }
             }
         } catch (IOException e) {
             if(!shuttingDown) {
                 LOGGER.log(Level.SEVERE,"Failed to accept JNLP slave agent connections",e);
             }
+        } catch (InterruptedException e) {
+            if(!shuttingDown) {
+                LOGGER.log(Level.SEVERE,"Interrupted while accepting JNLP slave agent connections",e);
+            }
         }
     }
 
+    /**
+     * Keeps the rate of accepting new connections under {@link #MAX_ACCEPT_RATE} per second.
+     * Connections beyond that wait in the backlog of the server socket.
+     */
+    private void throttle() throws InterruptedException {
+        if (MAX_ACCEPT_RATE<=0)     return;
+        long now = System.currentTimeMillis();
+        if (now-windowStart>=1000) {
+            windowStart = now;
+            acceptedInWindow = 0;
+        }
+        if (acceptedInWindow>=MAX_ACCEPT_RATE) {
+            Thread.sleep(Math.max(1,windowStart+1000-now));
+            windowStart = System.currentTimeMillis();
+            acceptedInWindow = 0;
+        }
+        acceptedInWindow++;
+    }
+
     /**
      * Initiates the shuts down of the listener.
      */
@@ -114,57 +192,149 @@ public final class TcpSlaveAgentListener extends Thread {
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Failed to close down TCP port",e);
         }
+        handshakePool.shutdown();
+        protocolPool.shutdown();
+    }
+
+    /**
+     * Number of connections accepted so far.
+     * @since 1.475
+     */
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    /**
+     * Number of connections that are closed right away because too many connections were waiting for the handshake,
+     * or too many protocols were running.
+     * @since 1.475
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Number of connections that are currently waiting for, or going through, the handshake.
+     * @since 1.475
+     */
+    public int getPendingHandshakeCount() {
+        return handshakePool.getQueue().size()+handshakePool.getActiveCount();
+    }
+
+    /**
+     * Average time in milliseconds from accepting a connection to handing it over to the {@link AgentProtocol}.
+     * @since 1.475
+     */
+    public long getAverageHandshakeTime() {
+        long n = handshakes.get();
+        return n==0 ? 0 : handshakeTime.get()/n;
     }
 
-    private final class ConnectionHandler extends Thread {
+    /**
+     * Average time in milliseconds an {@link AgentProtocol} took to handle a connection.
+     * For the slave agent protocols, this is the time it takes to establish the channel.
+     * @since 1.475
+     */
+    public long getAverageProtocolTime() {
+        long n = protocolRuns.get();
+        return n==0 ? 0 : protocolTime.get()/n;
+    }
+
+    /**
+     * Reads the protocol header and dispatches the connection to {@link AgentProtocol}.
+     *
+     * <p>
+     * This runs in {@link #handshakePool}, then the protocol itself runs in {@link #protocolPool}, as some
+     * protocols occupy the thread for the lifetime of the connection. The read timeout stays in place
+     * until the protocol is done with its own handshake.
+     */
+    private final class ConnectionHandler implements Runnable {
         private final Socket s;
         /**
          * Unique number to identify this connection. Used in the log.
          */
         private final int id;
+        private final long acceptedAt = System.currentTimeMillis();
 
         public ConnectionHandler(Socket s) {
             this.s = s;
             synchronized(getClass()) {
                 id = iotaGen++;
             }
-            setName("TCP slave agent connection handler #"+id+" with "+s.getRemoteSocketAddress());
         }
 
-        @Override
         public void run() {
+            Thread t = Thread.currentThread();
+            String oldName = t.getName();
+            t.setName("TCP slave agent connection handler #"+id+" with "+s.getRemoteSocketAddress());
             try {
                 LOGGER.info("Accepted connection #"+id+" from "+s.getRemoteSocketAddress());
 
                 DataInputStream in = new DataInputStream(s.getInputStream());
                 PrintWriter out = new PrintWriter(s.getOutputStream(),true); // DEPRECATED: newer protocol shouldn't use PrintWriter but should use DataOutputStream
 
+                // don't let a client that never speaks hold on to a thread.
+                // the protocol resets this once it has completed its own handshake
+                s.setSoTimeout(HANDSHAKE_TIMEOUT);
                 String s = in.readUTF();
 
                 if(s.startsWith("Protocol:")) {
                     String protocol = s.substring(9);
-                    AgentProtocol p = AgentProtocol.of(protocol);
-                    if (p!=null)
-                        p.handle(this.s);
-                    else
+                    final AgentProtocol p = AgentProtocol.of(protocol);
+                    if (p!=null) {
+                        handshakes.incrementAndGet();
+                        handshakeTime.addAndGet(System.currentTimeMillis()-acceptedAt);
+                        try {
+                            protocolPool.execute(new Runnable() {
+                                public void run() {
+                                    handle(p);
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            if (!shuttingDown) {
+                                rejected.incrementAndGet();
+                                LOGGER.warning("Rejected connection #"+id+" from "+this.s.getRemoteSocketAddress()+" as too many protocols are running");
+                            }
+                            close();
+                        }
+                    } else
                         error(out, "Unknown protocol:" + s);
                 } else {
                     error(out, "Unrecognized protocol: "+s);
                 }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING,"Connection #"+id+" failed",e);
+                close();
+            } finally {
+                t.setName(oldName);
+            }
+        }
+
+        private void handle(AgentProtocol p) {
+            Thread t = Thread.currentThread();
+            String oldName = t.getName();
+            t.setName("TCP slave agent connection handler #"+id+" with "+s.getRemoteSocketAddress()+" ("+p.getName()+")");
+            long start = System.currentTimeMillis();
+            try {
+                p.handle(this.s);
             } catch (InterruptedException e) {
                 LOGGER.log(Level.WARNING,"Connection #"+id+" aborted",e);
-                try {
-                    s.close();
-                } catch (IOException _) {
-                    // try to clean up the socket
-                }
+                close();
             } catch (IOException e) {
                 LOGGER.log(Level.WARNING,"Connection #"+id+" failed",e);
-                try {
-                    s.close();
-                } catch (IOException _) {
-                    // try to clean up the socket
-                }
+                close();
+            } finally {
+                protocolRuns.incrementAndGet();
+                protocolTime.addAndGet(System.currentTimeMillis()-start);
+                t.setName(oldName);
+            }
+        }
+
+        private void close() {
+            try {
+                s.close();
+            } catch (IOException _) {
+                // try to clean up the socket
             }
         }
 
@@ -186,6 +356,33 @@ public final class TcpSlaveAgentListener extends Thread {
 
     private static int iotaGen=1;
 
+    /**
+     * Number of threads that read the protocol header of new connections.
+     */
+    public static int HANDSHAKE_THREADS = Integer.getInteger(TcpSlaveAgentListener.class.getName()+".handshakeThreads",
+            Math.max(4,Runtime.getRuntime().availableProcessors()*2));
+
+    /**
+     * Maximum number of {@link AgentProtocol}s running at once. Protocols like CLI occupy a thread
+     * for the lifetime of the connection, and slave agents until their channel is established.
+     */
+    public static int MAX_PROTOCOL_THREADS = Integer.getInteger(TcpSlaveAgentListener.class.getName()+".maxProtocolThreads",256);
+
+    /**
+     * Connections accepted beyond this many waiting for the handshake are closed right away.
+     */
+    public static int MAX_PENDING_HANDSHAKES = Integer.getInteger(TcpSlaveAgentListener.class.getName()+".maxPendingHandshakes",256);
+
+    /**
+     * Milliseconds to wait for each read until the protocol has completed its handshake.
+     */
+    public static int HANDSHAKE_TIMEOUT = Integer.getInteger(TcpSlaveAgentListener.class.getName()+".handshakeTimeout",30*1000);
+
+    /**
+     * Maximum number of connections accepted per second. 0 for no limit.
+     */
+    public static int MAX_ACCEPT_RATE = Integer.getInteger(TcpSlaveAgentListener.class.getName()+".maxAcceptRate",50);
+
     private static final Logger LOGGER = Logger.getLogger(TcpSlaveAgentListener.class.getName());
 
     /**
@@ -26,6 +26,7 @@ package hudson;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.StreamException;
 import com.thoughtworks.xstream.io.xml.XppDriver;
 import com.thoughtworks.xstream.io.xml.XppReader;
@@ -34,6 +35,7 @@ import hudson.util.AtomicFileWriter;
 import hudson.util.IOException2;
 import hudson.util.IOUtils;
 import hudson.util.XStream2;
+import hudson.util.xstream.ReusingXppDriver;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
@@ -132,9 +134,15 @@ public final class XmlFile {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Reading "+file);
         }
+        flushPendingWrite();
         InputStream in = new BufferedInputStream(new FileInputStream(file));
         try {
-            return xs.fromXML(in);
+            HierarchicalStreamReader r = DEFAULT_DRIVER.createReader(in);
+            try {
+                return xs.unmarshal(r);
+            } finally {
+                r.close();
+            }
         } catch(StreamException e) {
             throw new IOException2("Unable to read "+file,e);
         } catch(ConversionException e) {
@@ -154,10 +162,16 @@ public final class XmlFile {
      *      if the XML representation is completely new.
      */
     public Object unmarshal( Object o ) throws IOException {
+        flushPendingWrite();
         InputStream in = new BufferedInputStream(new FileInputStream(file));
         try {
             // TODO: expose XStream the driver from XStream
-            return xs.unmarshal(DEFAULT_DRIVER.createReader(in), o);
+            HierarchicalStreamReader r = DEFAULT_DRIVER.createReader(in);
+            try {
+                return xs.unmarshal(r, o);
+            } finally {
+                r.close();
+            }
         } catch (StreamException e) {
             throw new IOException2("Unable to read "+file,e);
         } catch(ConversionException e) {
@@ -169,7 +183,46 @@ public final class XmlFile {
         }
     }
 
+    /**
+     * Writes the object to this file.
+     *
+     * <p>
+     * When {@link XmlFileWriteQueue} is enabled, the object is serialized right away,
+     * but the file may be written later in the background. Failures to write the file are then
+     * not reported to the caller. The directory is still created right away, so that the write
+     * can be dropped if the directory is deleted in the mean time.
+     */
     public void write( Object o ) throws IOException {
+        if (XmlFileWriteQueue.isEnabled()) {
+            mkdirs();
+            StringWriter w = new StringWriter();
+            try {
+                w.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+                xs.toXML(o,w);
+            } catch(StreamException e) {
+                throw new IOException2(e);
+            }
+            XmlFileWriteQueue.schedule(this,w.toString());
+            return;
+        }
+        writeNow(o);
+    }
+
+    /**
+     * Writes what {@link #write(Object)} has serialized.
+     * Unlike {@link #write(Object)}, this doesn't create the directory, which {@link #write(Object)} already did.
+     */
+    /*package*/ void writeNow( String xml ) throws IOException {
+        AtomicFileWriter w = new AtomicFileWriter(file);
+        try {
+            w.write(xml);
+            w.commit();
+        } finally {
+            w.abort();
+        }
+    }
+
+    private void writeNow( Object o ) throws IOException {
         mkdirs();
         AtomicFileWriter w = new AtomicFileWriter(file);
         try {
@@ -184,10 +237,12 @@ public final class XmlFile {
     }
 
     public boolean exists() {
-        return file.exists();
+        return file.exists() || (XmlFileWriteQueue.isEnabled() && XmlFileWriteQueue.isPending(file));
     }
 
     public void delete() {
+        if (XmlFileWriteQueue.isEnabled())
+            XmlFileWriteQueue.cancel(file);
         file.delete();
     }
     
@@ -195,6 +250,14 @@ public final class XmlFile {
         file.getParentFile().mkdirs();
     }
 
+    /**
+     * Makes sure that what we read reflects the latest {@link #write(Object)}.
+     */
+    private void flushPendingWrite() throws IOException {
+        if (XmlFileWriteQueue.isEnabled())
+            XmlFileWriteQueue.flush(file);
+    }
+
     @Override
     public String toString() {
         return file.toString();
@@ -206,6 +269,7 @@ public final class XmlFile {
      * not just the system default encoding.
      */
     public Reader readRaw() throws IOException {
+        flushPendingWrite();
         return new InputStreamReader(new FileInputStream(file),sniffEncoding());
     }
 
@@ -240,6 +304,7 @@ public final class XmlFile {
      *      always non-null.
      */
     public String sniffEncoding() throws IOException {
+        flushPendingWrite();
         class Eureka extends SAXException {
             final String encoding;
             public Eureka(String encoding) {
@@ -306,7 +371,10 @@ public final class XmlFile {
 
     private static final SAXParserFactory JAXP = SAXParserFactory.newInstance();
 
-    private static final XppDriver DEFAULT_DRIVER = new XppDriver();
+    /**
+     * Reuses parsers, as loading Jenkins reads a great many files in a row.
+     */
+    private static final XppDriver DEFAULT_DRIVER = new ReusingXppDriver();
 
     static {
         JAXP.setNamespaceAware(true);
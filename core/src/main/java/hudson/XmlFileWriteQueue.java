@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.IOException2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optionally defers the disk writes of {@link XmlFile#write(Object)} to background threads, so that
+ * the same object saved repeatedly in a short time (such as a build as actions are added to it)
+ * hits the disk only once, with its latest state.
+ *
+ * <p>
+ * The object is still serialized by the thread that calls {@link XmlFile#write(Object)}, typically
+ * while holding the lock that its <tt>save()</tt> method holds, so what gets written is a consistent
+ * snapshot. Only the writing of the file is deferred.
+ *
+ * <p>
+ * This is off by default, and is enabled by setting <tt>-Dhudson.XmlFileWriteQueue.delay</tt>
+ * to the number of milliseconds a write can be held back.
+ * Reading a file through {@link XmlFile} writes out the pending change first, deleting it cancels
+ * the pending change, and everything pending is written when Jenkins shuts down. However, those who
+ * read the files directly from the disk (including {@link hudson.model.listeners.SaveableListener}s
+ * that look at the file) can see the old contents for up to that delay.
+ *
+ * <p>
+ * As the caller of {@link XmlFile#write(Object)} is long gone by the time the file is written, a write
+ * that fails (for example because the disk is full) cannot be reported to it. Such a write is retried
+ * {@link #MAX_RETRIES} times, and then dropped with a log message, so the change is lost unless the object
+ * is saved again. Reading the file through {@link XmlFile} in the mean time reports the failure to the reader.
+ *
+ * @since 1.475
+ */
+public final class XmlFileWriteQueue {
+    private XmlFileWriteQueue() {}
+
+    private static final class Pending implements Runnable {
+        final File file;
+        XmlFile xml;
+        /**
+         * Serialized form of the object to write.
+         */
+        String content;
+        boolean writing;
+        /**
+         * True if there's another request while {@link #writing}.
+         */
+        boolean dirty;
+        /**
+         * Number of consecutive failed attempts to write this file.
+         */
+        int failures;
+
+        Pending(XmlFile xml, String content) {
+            this.file = xml.getFile();
+            this.xml = xml;
+            this.content = content;
+        }
+
+        public void run() {
+            try {
+                writeOut(this);
+            } catch (IOException e) {
+                // already reported by writeOut
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.WARNING, "Interrupted while writing "+file, e);
+            }
+        }
+    }
+
+    /**
+     * Guarded by itself.
+     */
+    private static final Map<File,Pending> PENDING = new HashMap<File,Pending>();
+
+    private static final AtomicLong requested = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+
+    static boolean isEnabled() {
+        return DELAY>0;
+    }
+
+    /**
+     * Schedules the given XML to be written to the file.
+     *
+     * @param content
+     *      The object already serialized by {@link XmlFile}.
+     */
+    static void schedule(XmlFile xml, String content) {
+        requested.incrementAndGet();
+        synchronized (PENDING) {
+            Pending p = PENDING.get(xml.getFile());
+            if (p!=null) {
+                // coalesce with the write that's already pending
+                p.xml = xml;
+                p.content = content;
+                if (p.writing)
+                    p.dirty = true;
+                return;
+            }
+            p = new Pending(xml,content);
+            PENDING.put(p.file,p);
+            EXECUTOR.schedule(p,DELAY,TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static boolean isPending(File f) {
+        synchronized (PENDING) {
+            return PENDING.containsKey(f);
+        }
+    }
+
+    /**
+     * Writes the pending change of the given file, if any, and waits for it to complete.
+     *
+     * @throws IOException
+     *      if the pending change failed to be written. It stays pending and is retried later.
+     */
+    static void flush(File f) throws IOException {
+        try {
+            while (true) {
+                Pending p;
+                synchronized (PENDING) {
+                    p = PENDING.get(f);
+                }
+                if (p==null)    return;
+                writeOut(p);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException2("Interrupted while waiting for "+f+" to be written",e);
+        }
+    }
+
+    /**
+     * Discards the pending change of the given file, if any.
+     */
+    static void cancel(File f) {
+        synchronized (PENDING) {
+            Pending p = PENDING.get(f);
+            if (p==null)    return;
+            try {
+                while (p.writing)
+                    PENDING.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            PENDING.remove(f);
+        }
+    }
+
+    /**
+     * Writes all the pending changes and waits for them to complete.
+     */
+    public static void flushAll() {
+        List<File> files;
+        synchronized (PENDING) {
+            files = new ArrayList<File>(PENDING.keySet());
+        }
+        for (File f : files) {
+            try {
+                flush(f);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write "+f, e);
+            }
+        }
+    }
+
+    private static void writeOut(Pending p) throws IOException, InterruptedException {
+        XmlFile xml;
+        String content;
+        synchronized (PENDING) {
+            while (p.writing)
+                PENDING.wait();     // someone else is writing this file
+            if (PENDING.get(p.file)!=p)
+                return;             // already written out, or cancelled
+            xml = p.xml;
+            content = p.content;
+            p.writing = true;
+            p.dirty = false;
+        }
+
+        boolean failed = true;
+        try {
+            if (!p.file.getParentFile().exists()) {
+                // XmlFile.write created it, so it has been deleted since, along with the job or build it was for.
+                // don't bring it back with just this file in it
+                LOGGER.fine("Not writing "+p.file+" as its directory has been deleted");
+            } else {
+                xml.writeNow(content);
+                written.incrementAndGet();
+            }
+            failed = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write "+p.file, e);
+            throw e;
+        } finally {
+            synchronized (PENDING) {
+                p.writing = false;
+                if (failed && !p.dirty) {
+                    // keep the change around, so that it's not lost to a transient problem
+                    if (++p.failures<=MAX_RETRIES) {
+                        EXECUTOR.schedule(p,DELAY,TimeUnit.MILLISECONDS);
+                    } else {
+                        LOGGER.severe("Giving up writing "+p.file+" after "+p.failures+" attempts. The change is lost");
+                        PENDING.remove(p.file);
+                    }
+                } else {
+                    if (!failed)
+                        p.failures = 0;
+                    if (p.dirty)
+                        EXECUTOR.schedule(p,DELAY,TimeUnit.MILLISECONDS);
+                    else
+                        PENDING.remove(p.file);
+                }
+                PENDING.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Number of times {@link XmlFile#write(Object)} was called while this queue is enabled.
+     */
+    public static long getRequestedCount() {
+        return requested.get();
+    }
+
+    /**
+     * Number of times a file was actually written. The difference from {@link #getRequestedCount()}
+     * is the number of writes saved.
+     */
+    public static long getWrittenCount() {
+        return written.get();
+    }
+
+    public static int getPendingCount() {
+        synchronized (PENDING) {
+            return PENDING.size();
+        }
+    }
+
+    /**
+     * How long in milliseconds a write can be held back to coalesce it with the subsequent ones.
+     * 0 or less to write synchronously, as usual.
+     */
+    public static int DELAY = Integer.getInteger(XmlFileWriteQueue.class.getName()+".delay",0);
+
+    /**
+     * Number of times a failed write is retried before the change is dropped.
+     */
+    public static int MAX_RETRIES = Integer.getInteger(XmlFileWriteQueue.class.getName()+".maxRetries",3);
+
+    public static final int CONCURRENCY = Integer.getInteger(XmlFileWriteQueue.class.getName()+".concurrency",2);
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(CONCURRENCY,
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    static {
+        // there's nothing to do here unless the queue has been used
+        Runtime.getRuntime().addShutdownHook(new Thread("Writing pending XML files") {
+            @Override
+            public void run() {
+                flushAll();
+            }
+        });
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(XmlFileWriteQueue.class.getName());
+}
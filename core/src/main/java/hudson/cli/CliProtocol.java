@@ -49,6 +49,9 @@ public class CliProtocol extends AgentProtocol {
                     Computer.threadPoolForRemoting, Mode.BINARY,
                     new BufferedInputStream(c.in), new BufferedOutputStream(c.out), null, true, Jenkins.getInstance().pluginManager.uberClassLoader);
             channel.setProperty(CliEntryPoint.class.getName(),new CliManagerImpl(channel));
+            // the channel is up, so the handshake timeout no longer applies
+            socket.setSoTimeout(0);
+            channel.syncIO();
             channel.join();
         }
     }
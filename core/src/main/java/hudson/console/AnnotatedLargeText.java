@@ -48,6 +48,8 @@ import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -75,15 +77,21 @@ public class AnnotatedLargeText<T> extends LargeText {
      * Can be null.
      */
     private T context;
+    /**
+     * The log file, or null if the text is in memory.
+     */
+    private final File file;
 
     public AnnotatedLargeText(File file, Charset charset, boolean completed, T context) {
         super(file, charset, completed);
         this.context = context;
+        this.file = file;
     }
 
     public AnnotatedLargeText(ByteBuffer memory, Charset charset, boolean completed, T context) {
         super(memory, charset, completed);
         this.context = context;
+        this.file = null;
     }
 
     public void doProgressiveHtml(StaplerRequest req, StaplerResponse rsp) throws IOException {
@@ -153,8 +161,24 @@ public class AnnotatedLargeText<T> extends LargeText {
     }
 
     public long writeHtmlTo(long start, Writer w) throws IOException {
+        StaplerRequest req = Stapler.getCurrentRequest();
+        if (start==0 && file!=null && isComplete() && ConsoleHtmlCache.isApplicable(file)
+                && (req==null || req.getHeader("X-ConsoleAnnotator")==null)) {
+            // the log doesn't change anymore, so the annotation results of the whole log can be reused.
+            // there's no need to send back the annotator state, either, as there's nothing more to come.
+            try {
+                return ConsoleHtmlCache.writeHtmlTo(file,w,charset,context);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to use the cached HTML rendering of "+file, e);
+                // fall through. note that if we've already written something the output will be garbled,
+                // but that requires a failure in the middle of reading a local file, which is unlikely
+            }
+        }
+
         ConsoleAnnotationOutputStream caw = new ConsoleAnnotationOutputStream(
-                w, createAnnotator(Stapler.getCurrentRequest()), context, charset);
+                w, createAnnotator(req), context, charset,
+                file!=null ? ConsoleNoteDictionary.of(file) : null);
+
         long r = super.writeLogTo(start,caw);
 
         try {
@@ -174,4 +198,5 @@ public class AnnotatedLargeText<T> extends LargeText {
         return r;
     }
 
+    private static final Logger LOGGER = Logger.getLogger(AnnotatedLargeText.class.getName());
 }
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers the console output of a build, so that lots of small writes (such as one per line)
+ * turn into fewer, bigger writes to the underlying stream, which is a file or a remote stream.
+ *
+ * <p>
+ * Unlike {@link java.io.BufferedOutputStream}, data never sits in the buffer for longer than
+ * the given latency, so that the progressive console output stays fresh. For the same reason,
+ * {@link #flush()} doesn't flush right away but merely makes sure the data reaches the underlying
+ * stream within the latency, as plenty of writers (auto-flushing {@link java.io.PrintStream}s, remote streams,
+ * plugins) flush after every line. The owner of the stream that needs everything written at a given
+ * point, such as before the post-build steps that read the log, calls {@link #flushNow()}.
+ * {@link #close()} flushes everything.
+ *
+ * <p>
+ * This stream also counts the bytes and the flushes, to tell how chatty a build is.
+ *
+ * @since 1.475
+ */
+public class CoalescingOutputStream extends FilterOutputStream {
+    private final byte[] buf;
+    private int count;
+
+    /**
+     * Milliseconds. 0 or less disables buffering.
+     */
+    private final long maxLatency;
+
+    /**
+     * Scheduled flush of the data in {@link #buf}, if any.
+     */
+    private ScheduledFuture<?> pendingFlush;
+    private boolean closed;
+
+    private final long startTime = System.currentTimeMillis();
+    private long bytes;
+    private long flushes;
+
+    public CoalescingOutputStream(OutputStream out) {
+        this(out,BUFFER_SIZE,MAX_LATENCY);
+    }
+
+    /**
+     * @param maxLatency
+     *      How long data can stay in the buffer, in milliseconds. 0 or less to disable buffering.
+     */
+    public CoalescingOutputStream(OutputStream out, int bufferSize, long maxLatency) {
+        super(out);
+        this.buf = new byte[bufferSize];
+        this.maxLatency = maxLatency;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        bytes++;
+        if (maxLatency<=0) {
+            out.write(b);
+            flushes++;
+            return;
+        }
+        if (count==buf.length)
+            drain();
+        buf[count++] = (byte)b;
+        scheduleFlush();
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        bytes += len;
+        if (maxLatency<=0 || len>=buf.length) {
+            // too big to buffer. keep the order with what's already buffered
+            drain();
+            out.write(b,off,len);
+            flushes++;
+            return;
+        }
+        if (len>buf.length-count)
+            drain();
+        System.arraycopy(b,off,buf,count,len);
+        count += len;
+        scheduleFlush();
+    }
+
+    /**
+     * Data written so far reaches the underlying stream within the latency, so there's nothing to do here,
+     * unless the buffering is disabled.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (maxLatency<=0)
+            out.flush();
+    }
+
+    /**
+     * Writes all the buffered data to the underlying stream and flushes it right away.
+     */
+    public synchronized void flushNow() throws IOException {
+        if (pendingFlush!=null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)     return;
+        closed = true;
+        try {
+            flushNow();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count>0) {
+            out.write(buf,0,count);
+            count = 0;
+            flushes++;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (pendingFlush!=null)     return;
+        pendingFlush = TIMER.schedule(new Runnable() {
+            public void run() {
+                synchronized (CoalescingOutputStream.this) {
+                    pendingFlush = null;
+                    if (closed)     return;
+                    try {
+                        drain();
+                        out.flush();
+                    } catch (IOException e) {
+                        // the writer will see the problem on its next write
+                        LOGGER.log(Level.FINE, "Failed to flush the console output", e);
+                    }
+                }
+            }
+        }, maxLatency, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of bytes written to this stream.
+     */
+    public synchronized long getBytesWritten() {
+        return bytes;
+    }
+
+    /**
+     * Number of writes made to the underlying stream.
+     */
+    public synchronized long getFlushCount() {
+        return flushes;
+    }
+
+    public synchronized double getBytesPerSecond() {
+        return perSecond(bytes);
+    }
+
+    public synchronized double getFlushesPerSecond() {
+        return perSecond(flushes);
+    }
+
+    private double perSecond(long n) {
+        long elapsed = System.currentTimeMillis()-startTime;
+        return elapsed>0 ? n*1000.0/elapsed : 0;
+    }
+
+    /**
+     * Maximum time the console output can be held in the buffer, in milliseconds.
+     * 0 or less disables the buffering of the console output.
+     */
+    public static long MAX_LATENCY = Long.getLong(CoalescingOutputStream.class.getName()+".maxLatency",100);
+
+    public static int BUFFER_SIZE = Integer.getInteger(CoalescingOutputStream.class.getName()+".bufferSize",8192);
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+
+    private static final Logger LOGGER = Logger.getLogger(CoalescingOutputStream.class.getName());
+}
@@ -52,6 +52,10 @@ public class ConsoleAnnotationOutputStream<T> extends LineTransformationOutputSt
     private final Writer out;
     private final T context;
     private ConsoleAnnotator<T> ann;
+    /**
+     * Dictionary to resolve note references against. Can be null.
+     */
+    private final ConsoleNoteDictionary dictionary;
 
     /**
      * Reused buffer that stores char representation of a single line.
@@ -66,7 +70,17 @@ public class ConsoleAnnotationOutputStream<T> extends LineTransformationOutputSt
      *
      */
     public ConsoleAnnotationOutputStream(Writer out, ConsoleAnnotator<? super T> ann, T context, Charset charset) {
+        this(out,ann,context,charset,null);
+    }
+
+    /**
+     * @param dictionary
+     *      {@link ConsoleNoteDictionary} of the log being annotated, if any.
+     * @since 1.475
+     */
+    public ConsoleAnnotationOutputStream(Writer out, ConsoleAnnotator<? super T> ann, T context, Charset charset, ConsoleNoteDictionary dictionary) {
         this.out = out;
+        this.dictionary = dictionary;
         this.ann = ConsoleAnnotator.cast(ann);
         this.context = context;
         this.lineOut = new WriterOutputStream(line,charset);
@@ -106,7 +120,7 @@ public class ConsoleAnnotationOutputStream<T> extends LineTransformationOutputSt
                 ByteArrayInputStream b = new ByteArrayInputStream(in, next, rest);
 
                 try {
-                    final ConsoleNote a = ConsoleNote.readFrom(new DataInputStream(b));
+                    final ConsoleNote a = ConsoleNote.readFrom(new DataInputStream(b),dictionary);
                     if (a!=null) {
                         if (annotators==null)
                             annotators = new ArrayList<ConsoleAnnotator<T>>();
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.PluginWrapper;
+import hudson.Util;
+import hudson.tasks.Mailer;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+/**
+ * Annotated HTML rendering of a completed log, computed once and then served as-is.
+ *
+ * <p>
+ * The whole log is run through {@link ConsoleAnnotationOutputStream} the first time someone
+ * asks for the HTML of a completed log. The result is stored next to the log as a sequence of
+ * gzip members, each of which covers roughly {@link #CHUNK_SIZE} bytes of the original log, so that
+ * rendering a huge log doesn't need to hold its HTML in memory. A separate index file records
+ * where each member starts in the cache file.
+ *
+ * <p>
+ * Console annotators carry state from one line to the next, and a request that starts in the
+ * middle of the log begins with the initial state at that point. The result of such a request
+ * differs from the corresponding part of the whole rendering, so only requests for the whole log
+ * are served from the cache. Those are the expensive ones anyway, as the console page otherwise
+ * starts from near the end of a big log.
+ *
+ * <p>
+ * Annotations can contain absolute URLs, such as those of {@link HyperlinkNote}, so the cache is only used
+ * once the root URL is configured, and not taken from the request of whoever happens to look first.
+ * The rendering is discarded when the root URL changes, or when the annotators are upgraded or removed.
+ *
+ * @see AnnotatedLargeText#writeHtmlTo(long, Writer)
+ * @since 1.475
+ */
+final class ConsoleHtmlCache {
+    private final File log;
+    private final File data;
+    private final File index;
+
+    /**
+     * Offsets of the gzip members in {@link #data}. Null if not loaded yet.
+     */
+    private long[] dataOffsets;
+    /**
+     * Length and timestamp of the log when the cache was rendered, to detect stale cache.
+     */
+    private long logLength, logTimestamp;
+    /**
+     * {@link #getRenderingKey()} when the cache was rendered.
+     */
+    private String renderingKey;
+
+    /**
+     * Number of threads using this instance. While it's in use, this instance stays in {@link #CACHE},
+     * so that there's only one instance, and hence one renderer, per log. Guarded by {@link #CACHE}.
+     */
+    private int users;
+
+    private ConsoleHtmlCache(File log) {
+        this.log = log;
+        this.data = new File(log.getParentFile(),log.getName()+".html.gz");
+        this.index = new File(log.getParentFile(),log.getName()+".html.idx");
+    }
+
+    /**
+     * Writes the annotated HTML of the whole log.
+     *
+     * @return
+     *      the offset in the log up to which the output was written.
+     */
+    private long writeHtmlTo(Writer w, Charset charset, Object context) throws IOException {
+        long[] offsets;
+        String key = getRenderingKey();
+        synchronized (this) {
+            // only one thread renders, everyone else waits for the result instead of rendering the same thing
+            if (!isUpToDate(key))
+                render(charset,context,key);
+            offsets = dataOffsets;
+        }
+
+        if (offsets.length>0) {
+            RandomAccessFile in = new RandomAccessFile(data,"r");
+            try {
+                char[] buf = new char[8192];
+                for (int i=0; i<offsets.length; i++) {
+                    // read each member on its own, as not every GZIPInputStream reads past the first one
+                    long end = i+1<offsets.length ? offsets[i+1] : in.length();
+                    byte[] member = new byte[(int)(end-offsets[i])];
+                    in.seek(offsets[i]);
+                    in.readFully(member);
+                    Reader r = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(member)),"UTF-8");
+                    int len;
+                    while ((len=r.read(buf))>=0)
+                        w.write(buf,0,len);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return logLength;
+    }
+
+    private boolean isUpToDate(String key) {
+        if (dataOffsets==null) {
+            try {
+                loadIndex();
+            } catch (IOException e) {
+                // missing or corrupt index
+                return false;
+            }
+        }
+        return logLength==log.length() && logTimestamp==log.lastModified() && key.equals(renderingKey) && data.exists();
+    }
+
+    private void loadIndex() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+        try {
+            if (in.readInt()!=VERSION)
+                throw new IOException("Unexpected version in "+index);
+            long length = in.readLong();
+            long timestamp = in.readLong();
+            String key = in.readUTF();
+            int n = in.readInt();
+            long[] offsets = new long[n];
+            for (int i=0; i<n; i++)
+                offsets[i] = in.readLong();
+
+            this.logLength = length;
+            this.logTimestamp = timestamp;
+            this.renderingKey = key;
+            this.dataOffsets = offsets;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Annotates the whole log and writes the cache files.
+     */
+    private void render(Charset charset, Object context, String key) throws IOException {
+        long start = System.currentTimeMillis();
+        long length = log.length();
+        long timestamp = log.lastModified();
+
+        long[] offsets = new long[16];
+        int n = 0;
+
+        File tmpData = new File(data.getPath()+".tmp");
+        File tmpIndex = new File(index.getPath()+".tmp");
+
+        FileOutputStream out = new FileOutputStream(tmpData);
+        InputStream in = new FileInputStream(log);
+        try {
+            ByteArrayOutputStream html = new ByteArrayOutputStream();
+            Writer w = new OutputStreamWriter(html,"UTF-8");
+            ConsoleAnnotationOutputStream caw = new ConsoleAnnotationOutputStream(
+                    w, ConsoleAnnotator.initial(context==null ? null : context.getClass()), context, charset,
+                    ConsoleNoteDictionary.of(log));
+
+            long pos = 0;           // position in the log
+            long chunkStart = 0;    // position in the log where the current chunk started
+            long dataPos = 0;       // position in the cache file
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len=in.read(buf))>=0 && pos<length) {
+                len = (int)Math.min(len,length-pos);    // ignore anything written after we started
+                int s=0;
+                for (int i=0; i<len; i++) {
+                    if (buf[i]=='\n' && pos+i+1-chunkStart>=CHUNK_SIZE) {
+                        caw.write(buf,s,i+1-s);
+                        s = i+1;
+
+                        if (n==offsets.length)
+                            offsets = resize(offsets,n*2);
+                        offsets[n++] = dataPos;
+                        w.flush();
+                        dataPos += writeChunk(html,out);
+                        chunkStart = pos+i+1;
+                    }
+                }
+                caw.write(buf,s,len-s);
+                pos += len;
+            }
+            caw.forceEol();
+            w.flush();
+            if (html.size()>0) {
+                if (n==offsets.length)
+                    offsets = resize(offsets,n+1);
+                offsets[n++] = dataPos;
+                writeChunk(html,out);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        DataOutputStream idx = new DataOutputStream(new FileOutputStream(tmpIndex));
+        try {
+            idx.writeInt(VERSION);
+            idx.writeLong(length);
+            idx.writeLong(timestamp);
+            idx.writeUTF(key);
+            idx.writeInt(n);
+            for (int i=0; i<n; i++)
+                idx.writeLong(offsets[i]);
+        } finally {
+            idx.close();
+        }
+
+        // the index is renamed last, as its presence signals that the data is complete
+        index.delete();
+        data.delete();
+        if (!tmpData.renameTo(data) || !tmpIndex.renameTo(index))
+            throw new IOException("Failed to rename "+tmpData+" and "+tmpIndex);
+
+        this.logLength = length;
+        this.logTimestamp = timestamp;
+        this.renderingKey = key;
+        this.dataOffsets = resize(offsets,n);
+
+        LOGGER.log(Level.FINE, "Rendered {0} in {1}ms", new Object[]{log,System.currentTimeMillis()-start});
+    }
+
+    /**
+     * Compresses the HTML accumulated so far as one gzip member.
+     *
+     * @return number of bytes written.
+     */
+    private static long writeChunk(ByteArrayOutputStream html, FileOutputStream out) throws IOException {
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        GZIPOutputStream z = new GZIPOutputStream(gz);
+        html.writeTo(z);
+        z.close();
+        html.reset();
+        gz.writeTo(out);
+        return gz.size();
+    }
+
+    private static long[] resize(long[] a, int size) {
+        long[] r = new long[size];
+        System.arraycopy(a,0,r,0,Math.min(a.length,size));
+        return r;
+    }
+
+    /**
+     * Is the given log a candidate for caching?
+     */
+    static boolean isApplicable(File log) {
+        return !DISABLED && log.length()>=MIN_SIZE && Mailer.descriptor().getUrl()!=null;
+    }
+
+    /**
+     * Identifies everything other than the log itself that the rendering depends on:
+     * the root URL, and the annotators along with the versions of the plugins they come from.
+     */
+    private static String getRenderingKey() {
+        StringBuilder buf = new StringBuilder(Mailer.descriptor().getUrl()).append('\n').append(Jenkins.VERSION);
+        for (ConsoleAnnotatorFactory f : ConsoleAnnotatorFactory.all())
+            appendClass(buf,f.getClass());
+        for (ConsoleAnnotationDescriptor d : ConsoleAnnotationDescriptor.all())
+            appendClass(buf,d.clazz);
+        return Util.getDigestOf(buf.toString());
+    }
+
+    private static void appendClass(StringBuilder buf, Class<?> c) {
+        buf.append('\n').append(c.getName());
+        PluginWrapper p = Jenkins.getInstance().getPluginManager().whichPlugin(c);
+        if (p!=null)
+            buf.append(':').append(p.getVersion());
+    }
+
+    /**
+     * Writes the annotated HTML of the whole log, which needs to be complete, using the cached rendering.
+     *
+     * @return
+     *      the offset in the log up to which the output was written.
+     */
+    static long writeHtmlTo(File log, Writer w, Charset charset, Object context) throws IOException {
+        ConsoleHtmlCache c;
+        synchronized (CACHE) {
+            c = CACHE.get(log);
+            if (c==null)
+                CACHE.put(log, c=new ConsoleHtmlCache(log));
+            c.users++;
+        }
+        try {
+            return c.writeHtmlTo(w,charset,context);
+        } finally {
+            synchronized (CACHE) {
+                c.users--;
+            }
+        }
+    }
+
+    /**
+     * Recently used caches, so that concurrent viewers of the same log share one instance.
+     * Instances in use are never evicted, so the instance also serves as the lock of its log.
+     */
+    private static final Map<File,ConsoleHtmlCache> CACHE = new LinkedHashMap<File,ConsoleHtmlCache>(16,0.75f,true) {
+        @Override
+        protected boolean removeEldestEntry(Entry<File,ConsoleHtmlCache> eldest) {
+            return size()>64 && eldest.getValue().users==0;
+        }
+    };
+
+    private static final int VERSION = 3;
+
+    /**
+     * Approximate number of bytes of the log covered by a single chunk.
+     */
+    public static int CHUNK_SIZE = Integer.getInteger(ConsoleHtmlCache.class.getName()+".chunkSize",64*1024);
+
+    /**
+     * Logs smaller than this are cheap enough to annotate on every request.
+     */
+    public static long MIN_SIZE = Long.getLong(ConsoleHtmlCache.class.getName()+".minSize",1024*1024);
+
+    /**
+     * Escape hatch to always annotate on the fly.
+     */
+    public static boolean DISABLED = Boolean.getBoolean(ConsoleHtmlCache.class.getName()+".disabled");
+
+    private static final Logger LOGGER = Logger.getLogger(ConsoleHtmlCache.class.getName());
+}
@@ -94,6 +94,12 @@ import java.util.zip.GZIPOutputStream;
  * {@link ConsoleNote} always sticks to a particular point in the console output.
  *
  * <p>
+ * When a build log is written with {@link ConsoleNoteDictionaryOutputStream}, the encoded notes are moved
+ * into a {@link ConsoleNoteDictionary} next to the log, and the log itself only contains a short reference
+ * to the dictionary entry. This keeps logs small when the same note is emitted over and over, and lets
+ * readers decode each distinct note only once.
+ *
+ * <p>
  * This design allows descendant processes of Hudson to emit {@link ConsoleNote}s. For example, Ant forked
  * by a shell forked by Hudson can put an encoded note in its stdout, and Hudson will correctly understands that.
  * The preamble and postamble includes a certain ANSI escape sequence designed in such a way to minimize garbage
@@ -192,6 +198,23 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
         return encodeToBytes().toString();
     }
 
+    /**
+     * Produces the encoded form of a reference to the given {@link ConsoleNoteDictionary} entry.
+     *
+     * <p>
+     * References use the same preamble and postamble as regular notes, so tools that strip
+     * notes keep working, but the encoded size is negative and points into the dictionary.
+     */
+    /*package*/ static byte[] encodeReference(int id) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        buf.write(PREAMBLE);
+        DataOutputStream dos = new DataOutputStream(new Base64OutputStream(buf,true,-1,null));
+        dos.writeInt(-(id+1));
+        dos.close();
+        buf.write(POSTAMBLE);
+        return buf.toByteArray();
+    }
+
     /**
      * Reads a note back from {@linkplain #encodeTo(OutputStream) its encoded form}.
      *
@@ -201,6 +224,21 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
      * @return null if the encoded form is malformed.
      */
     public static ConsoleNote readFrom(DataInputStream in) throws IOException, ClassNotFoundException {
+        return readFrom(in,null);
+    }
+
+    /**
+     * Reads a note back from its encoded form, resolving references against the given dictionary.
+     *
+     * @param in
+     *      Must point to the beginning of a preamble.
+     * @param dictionary
+     *      Dictionary of the log that's being read. If null, references are ignored.
+     *
+     * @return null if the encoded form is malformed or refers to an unknown dictionary entry.
+     * @since 1.475
+     */
+    public static ConsoleNote readFrom(DataInputStream in, ConsoleNoteDictionary dictionary) throws IOException, ClassNotFoundException {
         try {
             byte[] preamble = new byte[PREAMBLE.length];
             in.readFully(preamble);
@@ -209,6 +247,15 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
 
             DataInputStream decoded = new DataInputStream(new UnbufferedBase64InputStream(in));
             int sz = decoded.readInt();
+            if (sz<0) {
+                // reference to a dictionary entry
+                byte[] postamble = new byte[POSTAMBLE.length];
+                in.readFully(postamble);
+                if (!Arrays.equals(postamble,POSTAMBLE) || dictionary==null)
+                    return null;
+                return dictionary.get(-sz-1);
+            }
+
             byte[] buf = new byte[sz];
             decoded.readFully(buf);
 
@@ -242,7 +289,8 @@ public abstract class ConsoleNote<T> implements Serializable, Describable<Consol
 
         DataInputStream decoded = new DataInputStream(new UnbufferedBase64InputStream(in));
         int sz = decoded.readInt();
-        IOUtils.skip(decoded,sz);
+        if (sz>0)   // negative size is a dictionary reference, which has no body
+            IOUtils.skip(decoded,sz);
 
         byte[] postamble = new byte[POSTAMBLE.length];
         in.readFully(postamble);
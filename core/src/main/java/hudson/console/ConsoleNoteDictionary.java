@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Per-log dictionary of encoded {@link ConsoleNote}s.
+ *
+ * <p>
+ * {@link ConsoleNoteDictionaryOutputStream} moves the encoded form of each distinct note
+ * into this dictionary and replaces it in the log with a short reference. The dictionary file
+ * has one entry per line, each line being the Base64 payload that would have otherwise appeared
+ * between {@link ConsoleNote#PREAMBLE} and {@link ConsoleNote#POSTAMBLE}. The n-th line is the entry
+ * for ID n.
+ *
+ * <p>
+ * Decoded notes are cached, so a note that's referenced from thousands of lines is only
+ * deserialized once. For this reason, {@link ConsoleNote#annotate(Object, hudson.MarkupText, int)}
+ * implementations shouldn't modify the state of the note.
+ *
+ * @since 1.475
+ */
+public final class ConsoleNoteDictionary {
+    private final File file;
+
+    /**
+     * Encoded entries loaded so far.
+     */
+    private final List<String> entries = new ArrayList<String>();
+    /**
+     * Decoded form of {@link #entries}, lazily filled.
+     */
+    private final List<ConsoleNote> notes = new ArrayList<ConsoleNote>();
+    /**
+     * Entries that failed to decode, so that we don't keep retrying.
+     */
+    private final BitSet failed = new BitSet();
+    /**
+     * Number of bytes of {@link #file} that's parsed into {@link #entries}.
+     */
+    private long loaded;
+
+    private ConsoleNoteDictionary(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the decoded note for the given ID.
+     *
+     * @return null if no such entry exists or it failed to decode.
+     */
+    public synchronized ConsoleNote get(int id) throws IOException {
+        if (id>=entries.size())
+            load(); // the dictionary is still being written to
+        if (id<0 || id>=entries.size() || failed.get(id))
+            return null;
+
+        ConsoleNote n = notes.get(id);
+        if (n==null) {
+            try {
+                byte[] payload = entries.get(id).getBytes("US-ASCII");
+                byte[] encoded = new byte[ConsoleNote.PREAMBLE.length+payload.length+ConsoleNote.POSTAMBLE.length];
+                System.arraycopy(ConsoleNote.PREAMBLE,0,encoded,0,ConsoleNote.PREAMBLE.length);
+                System.arraycopy(payload,0,encoded,ConsoleNote.PREAMBLE.length,payload.length);
+                System.arraycopy(ConsoleNote.POSTAMBLE,0,encoded,ConsoleNote.PREAMBLE.length+payload.length,ConsoleNote.POSTAMBLE.length);
+
+                n = ConsoleNote.readFrom(new DataInputStream(new ByteArrayInputStream(encoded)));
+            } catch (ClassNotFoundException e) {
+                n = null;
+            } catch (IOException e) {
+                n = null;
+            }
+            if (n==null)
+                failed.set(id);
+            notes.set(id,n);
+        }
+        return n;
+    }
+
+    /**
+     * Number of entries currently known.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reads entries that are added since we last looked at the file.
+     */
+    private void load() throws IOException {
+        long len = file.length();
+        if (len<loaded) {
+            // the file was rewritten
+            entries.clear();
+            notes.clear();
+            failed.clear();
+            loaded = 0;
+        }
+        if (len==loaded)    return;
+
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            raf.seek(loaded);
+            byte[] buf = new byte[(int)(len-loaded)];
+            raf.readFully(buf);
+
+            int start=0;
+            for (int i=0; i<buf.length; i++) {
+                if (buf[i]=='\n') {
+                    entries.add(new String(buf,start,i-start,"US-ASCII"));
+                    notes.add(null);
+                    start = i+1;
+                }
+            }
+            // the last line might be incomplete if the writer is still working on it. we'll pick it up next time
+            loaded += start;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Gets the dictionary file that goes with the given log file.
+     */
+    public static File getFileFor(File log) {
+        return new File(log.getParentFile(),log.getName()+".notes");
+    }
+
+    /**
+     * Obtains the dictionary of the given log file.
+     *
+     * <p>
+     * Instances are cached, so that repeated viewing of the same log do not decode the same notes again.
+     *
+     * @return
+     *      null if the log doesn't have a dictionary, for example because it was written
+     *      by an older version.
+     */
+    public static ConsoleNoteDictionary of(File log) {
+        File f = getFileFor(log);
+        if (!f.exists())    return null;
+
+        synchronized (CACHE) {
+            ConsoleNoteDictionary d = CACHE.get(f);
+            if (d==null)
+                CACHE.put(f, d=new ConsoleNoteDictionary(f));
+            return d;
+        }
+    }
+
+    /**
+     * Recently used dictionaries.
+     */
+    private static final Map<File,ConsoleNoteDictionary> CACHE = new LinkedHashMap<File,ConsoleNoteDictionary>(16,0.75f,true) {
+        @Override
+        protected boolean removeEldestEntry(Entry<File,ConsoleNoteDictionary> eldest) {
+            return size()>CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Number of dictionaries to keep in memory.
+     */
+    public static int CACHE_SIZE = Integer.getInteger(ConsoleNoteDictionary.class.getName()+".cacheSize",32);
+
+    /**
+     * Escape hatch to go back to the inline encoding for newly written build logs.
+     */
+    public static boolean DISABLED = Boolean.getBoolean(ConsoleNoteDictionary.class.getName()+".disabled");
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.util.ByteArrayOutputStream2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static hudson.console.ConsoleNote.*;
+
+/**
+ * Filtering {@link OutputStream} that moves encoded {@link ConsoleNote}s into a {@link ConsoleNoteDictionary}
+ * and replaces them with references.
+ *
+ * <p>
+ * Bytes that are not a part of a note are passed through as soon as they are written, so that
+ * the progressive console output stays as fresh as it is without this filter. Only the bytes
+ * that look like the beginning of a note are held back until the note is complete.
+ *
+ * @since 1.475
+ */
+public class ConsoleNoteDictionaryOutputStream extends FilterOutputStream {
+    private final OutputStream dictionary;
+
+    /**
+     * Encoded payload to dictionary ID.
+     */
+    private final Map<String,Integer> ids = new HashMap<String,Integer>();
+
+    /**
+     * Bytes of a note (or what looks like one) that we are still receiving.
+     */
+    private final ByteArrayOutputStream2 note = new ByteArrayOutputStream2();
+
+    public ConsoleNoteDictionaryOutputStream(OutputStream out, File dictionaryFile) throws IOException {
+        super(out);
+        this.dictionary = new FileOutputStream(dictionaryFile);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        byte c = (byte)b;
+        int sz = note.size();
+
+        if (sz==0) {
+            if (c==PREAMBLE[0]) note.write(c);
+            else                out.write(c);
+            return;
+        }
+
+        if (sz<PREAMBLE.length) {
+            if (c==PREAMBLE[sz]) {
+                note.write(c);
+            } else {
+                // false alarm
+                flushNote();
+                write(b);
+            }
+            return;
+        }
+
+        if (c=='\n' || c=='\r' || sz>MAX_NOTE_SIZE) {
+            // notes never span multiple lines. this is not a note
+            flushNote();
+            out.write(c);
+            return;
+        }
+
+        note.write(c);
+        if (c==POSTAMBLE[POSTAMBLE.length-1] && endsWithPostamble())
+            encodeNote();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off+len;
+        while (off<end) {
+            if (note.size()==0) {
+                // fast path. pass through everything up to the next possible preamble
+                int i=off;
+                while (i<end && b[i]!=PREAMBLE[0])
+                    i++;
+                if (i>off)
+                    out.write(b,off,i-off);
+                off = i;
+                if (off==end)   break;
+            }
+            write(b[off++]);
+        }
+    }
+
+    private boolean endsWithPostamble() {
+        int sz = note.size();
+        if (sz<PREAMBLE.length+POSTAMBLE.length)    return false;
+        byte[] buf = note.getBuffer();
+        for (int i=0; i<POSTAMBLE.length; i++)
+            if (buf[sz-POSTAMBLE.length+i]!=POSTAMBLE[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Replaces the complete note in {@link #note} by a dictionary reference.
+     */
+    private void encodeNote() throws IOException {
+        byte[] buf = note.getBuffer();
+        int len = note.size()-PREAMBLE.length-POSTAMBLE.length;
+        String payload = new String(buf,PREAMBLE.length,len,"US-ASCII");
+
+        Integer id = ids.get(payload);
+        if (id==null) {
+            if (len<=REFERENCE_SIZE || ids.size()>=MAX_ENTRIES) {
+                // already a reference, too small to be worth it, or we are tracking too many notes
+                flushNote();
+                return;
+            }
+
+            id = ids.size();
+            ids.put(payload,id);
+
+            // write the entry in one go, so that readers never see a partial line except at the end
+            byte[] entry = new byte[len+1];
+            System.arraycopy(buf,PREAMBLE.length,entry,0,len);
+            entry[len] = '\n';
+            dictionary.write(entry);
+        }
+
+        note.reset();
+        out.write(encodeReference(id));
+    }
+
+    /**
+     * Passes the buffered bytes through as-is.
+     */
+    private void flushNote() throws IOException {
+        note.writeTo(out);
+        note.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushNote();
+        dictionary.close();
+        super.close();
+    }
+
+    /**
+     * Length of the Base64 payload of a reference.
+     */
+    private static final int REFERENCE_SIZE = 8;
+
+    /**
+     * Notes that are bigger than this are left inline.
+     */
+    private static final int MAX_NOTE_SIZE = 1024*1024;
+
+    /**
+     * Caps the memory used for tracking distinct notes. Notes beyond this are left inline.
+     */
+    public static int MAX_ENTRIES = Integer.getInteger(ConsoleNoteDictionaryOutputStream.class.getName()+".maxEntries",10000);
+}
@@ -46,9 +46,12 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
 
 /**
  * Records a selected set of logs so that the system administrator
@@ -68,18 +71,35 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
 
     public final CopyOnWriteList<Target> targets = new CopyOnWriteList<Target>();
 
+    /**
+     * True to also write the recorded logs to rotated files in <tt>$JENKINS_HOME/log</tt>.
+     */
+    private volatile boolean saveToDisk;
+
     private transient /*almost final*/ RingBufferLogHandler handler = new RingBufferLogHandler() {
         @Override
         public void publish(LogRecord record) {
-            for (Target t : targets) {
-                if(t.includes(record)) {
-                    super.publish(record);
-                    return;
-                }
-            }
+            if (!getIndex().includes(record))
+                return;
+            super.publish(record);
+            Handler f = fileHandler;
+            if (f!=null)
+                f.publish(record);
         }
     };
 
+    /**
+     * Compiled form of {@link #targets}. Null when it needs to be recomputed.
+     */
+    private transient volatile TargetIndex index;
+
+    /**
+     * Writes to the log files if {@link #saveToDisk}.
+     */
+    private transient volatile FileHandler fileHandler;
+
+    private transient final long createdAt = System.currentTimeMillis();
+
     /**
      * Logger that this recorder monitors, and its log level.
      * Just a pair of (logger name,level) with convenience methods.
@@ -177,6 +197,9 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
         for (Target t : newTargets)
             t.enable();
         targets.replaceBy(newTargets);
+        index = null;
+        saveToDisk = src.optBoolean("saveToDisk");
+        updateFileHandler();
 
         save();
         if (oldFile!=null) oldFile.delete();
@@ -190,6 +213,60 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
         getConfigFile().unmarshal(this);
         for (Target t : targets)
             t.enable();
+        index = null;
+        updateFileHandler();
+    }
+
+    private TargetIndex getIndex() {
+        TargetIndex i = index;
+        if (i==null)
+            index = i = new TargetIndex(targets);
+        return i;
+    }
+
+    /**
+     * Opens or closes the log files to match {@link #saveToDisk} and the current name.
+     */
+    private synchronized void updateFileHandler() {
+        FileHandler old = fileHandler;
+        fileHandler = null;
+        if (old!=null)
+            old.close();
+        if (!saveToDisk)    return;
+
+        try {
+            File dir = new File(Jenkins.getInstance().getRootDir(),"log");
+            dir.mkdirs();
+            FileHandler f = new FileHandler(new File(dir,name+".%g.log").getPath(),FILE_SIZE,FILE_COUNT,true);
+            f.setFormatter(new SimpleFormatter());
+            f.setEncoding("UTF-8");
+            fileHandler = f;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to open the log files of "+name, e);
+        }
+    }
+
+    public boolean isSaveToDisk() {
+        return saveToDisk;
+    }
+
+    /**
+     * Number of log records recorded so far, including those no longer kept in memory.
+     *
+     * @since 1.475
+     */
+    public long getRecordCount() {
+        return handler.getPublishedCount();
+    }
+
+    /**
+     * Average number of log records recorded per second, since this recorder was created.
+     *
+     * @since 1.475
+     */
+    public double getRecordsPerSecond() {
+        long elapsed = System.currentTimeMillis()-createdAt;
+        return elapsed>0 ? getRecordCount()*1000.0/elapsed : 0;
     }
 
     /**
@@ -208,6 +285,8 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
     public synchronized void doDoDelete(StaplerResponse rsp) throws IOException, ServletException {
         getConfigFile().delete();
         getParent().logRecorders.remove(name);
+        saveToDisk = false;
+        updateFileHandler();
         // Disable logging for all our targets,
         // then reenable all other loggers in case any also log the same targets
         for (Target t : targets)
@@ -249,6 +328,18 @@ public class LogRecorder extends AbstractModelObject implements Saveable {
         XSTREAM.alias("target",Target.class);
     }
 
+    /**
+     * Maximum size in bytes of a log file before it's rotated, when {@link #isSaveToDisk()}.
+     */
+    public static int FILE_SIZE = Integer.getInteger(LogRecorder.class.getName()+".fileSize",10*1024*1024);
+
+    /**
+     * Number of rotated log files to keep.
+     */
+    public static int FILE_COUNT = Integer.getInteger(LogRecorder.class.getName()+".fileCount",5);
+
+    private static final Logger LOGGER = Logger.getLogger(LogRecorder.class.getName());
+
     /**
      * Log levels that can be configured for {@link Target}.
      */
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.logging;
+
+import hudson.logging.LogRecorder.Target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.LogRecord;
+
+/**
+ * Decides which log records the {@link Target}s of a {@link LogRecorder} include,
+ * with the same outcome as asking each {@link Target#includes(LogRecord)}.
+ *
+ * <p>
+ * Records below the level of every target are rejected right away. For the rest, the threshold of
+ * a logger is found by looking up its name and the names of its parents, and it's remembered,
+ * as there are only so many loggers in the system.
+ *
+ * @since 1.475
+ */
+final class TargetIndex {
+    /**
+     * Target logger name to the lowest level recorded from it.
+     */
+    private final Map<String,Integer> levels = new HashMap<String,Integer>();
+
+    /**
+     * Lowest level of all the targets.
+     */
+    private final int minLevel;
+
+    /**
+     * Logger name to the lowest level recorded from it, or {@link #NONE}.
+     */
+    private final Map<String,Long> thresholds = new ConcurrentHashMap<String,Long>();
+
+    TargetIndex(Iterable<Target> targets) {
+        int min = Integer.MAX_VALUE;
+        for (Target t : targets) {
+            int lv = t.getLevel().intValue();
+            Integer cur = levels.get(t.name);
+            if (cur==null || lv<cur)
+                levels.put(t.name,lv);
+            min = Math.min(min,lv);
+        }
+        minLevel = min;
+    }
+
+    boolean includes(LogRecord r) {
+        if (levels.isEmpty())   return false;
+        int level = r.getLevel().intValue();
+        if (level<minLevel)     return false;
+
+        String name = r.getLoggerName();
+        if (name==null)     return false;
+        Long t = thresholds.get(name);
+        if (t==null) {
+            t = computeThreshold(name);
+            if (thresholds.size()<MAX_LOGGERS)
+                thresholds.put(name,t);
+        }
+        return level>=t;
+    }
+
+    private long computeThreshold(String name) {
+        long t = NONE;
+        while (true) {
+            Integer lv = levels.get(name);
+            if (lv!=null)
+                t = Math.min(t,lv);
+            int idx = name.lastIndexOf('.');
+            if (idx<0)  return t;
+            name = name.substring(0,idx);
+        }
+    }
+
+    /**
+     * Threshold of loggers that no target covers. Above any level.
+     */
+    private static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * Upper bound of the number of loggers whose thresholds are remembered.
+     */
+    private static final int MAX_LOGGERS = 4096;
+}
@@ -18,9 +18,12 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 
 /**
@@ -135,38 +138,37 @@ public class DefaultMatrixExecutionStrategyImpl extends MatrixExecutionStrategy
             delayedConfigurations    = createTreeSet(delayedConfigurations,sorter);
         }
 
-        if(!runSequentially)
-            for(MatrixConfiguration c : touchStoneConfigurations)
-                scheduleConfigurationBuild(execution, c);
+        MatrixRunTracker tracker = new MatrixRunTracker(build);
+        try {
+            Result r = runConfigurations(execution, tracker, touchStoneConfigurations, false);
 
-        Result r = Result.SUCCESS;
-        for (MatrixConfiguration c : touchStoneConfigurations) {
-            if(runSequentially)
-                scheduleConfigurationBuild(execution, c);
-            MatrixRun run = waitForCompletion(execution, c);
-            notifyEndBuild(run,execution.getAggregators());
-            r = r.combine(getResult(run));
+            if (touchStoneResultCondition != null && r.isWorseThan(touchStoneResultCondition)) {
+                logger.printf("Touchstone configurations resulted in %s, so aborting...%n", r);
+                return r;
+            }
+
+            return r.combine(runConfigurations(execution, tracker, delayedConfigurations, true));
+        } finally {
+            tracker.close();
         }
-        
-        if (touchStoneResultCondition != null && r.isWorseThan(touchStoneResultCondition)) {
-            logger.printf("Touchstone configurations resulted in %s, so aborting...%n", r);
+    }
+
+    /**
+     * Builds the given configurations, either all at once or one by one, and waits for them to complete.
+     */
+    private Result runConfigurations(MatrixBuildExecution exec, MatrixRunTracker tracker, Collection<MatrixConfiguration> configurations, boolean reportCompletion) throws InterruptedException, IOException {
+        if (runSequentially) {
+            Result r = Result.SUCCESS;
+            for (MatrixConfiguration c : configurations) {
+                scheduleConfigurationBuild(exec, tracker, c);
+                r = r.combine(waitForCompletion(exec, tracker, Collections.singleton(c), reportCompletion));
+            }
             return r;
+        } else {
+            for (MatrixConfiguration c : configurations)
+                scheduleConfigurationBuild(exec, tracker, c);
+            return waitForCompletion(exec, tracker, configurations, reportCompletion);
         }
-        
-        if(!runSequentially)
-            for(MatrixConfiguration c : delayedConfigurations)
-                scheduleConfigurationBuild(execution, c);
-
-        for (MatrixConfiguration c : delayedConfigurations) {
-            if(runSequentially)
-                scheduleConfigurationBuild(execution, c);
-            MatrixRun run = waitForCompletion(execution, c);
-            notifyEndBuild(run,execution.getAggregators());
-            logger.println(Messages.MatrixBuild_Completed(ModelHyperlinkNote.encodeTo(c), getResult(run)));
-            r = r.combine(getResult(run));
-        }
-
-        return r;
     }
 
     private Result getResult(@Nullable MatrixRun run) {
@@ -194,59 +196,54 @@ public class DefaultMatrixExecutionStrategyImpl extends MatrixExecutionStrategy
         return r;
     }
 
-    private void scheduleConfigurationBuild(MatrixBuildExecution exec, MatrixConfiguration c) {
+    private void scheduleConfigurationBuild(MatrixBuildExecution exec, MatrixRunTracker tracker, MatrixConfiguration c) {
         MatrixBuild build = exec.getBuild();
         exec.getListener().getLogger().println(Messages.MatrixBuild_Triggering(ModelHyperlinkNote.encodeTo(c)));
-        c.scheduleBuild(build.getAction(ParametersAction.class), new UpstreamCause((Run)build));
+        tracker.schedule(c, build.getAction(ParametersAction.class), new UpstreamCause((Run)build));
     }
 
-    private MatrixRun waitForCompletion(MatrixBuildExecution exec, MatrixConfiguration c) throws InterruptedException, IOException {
+    /**
+     * Waits for the given configurations to complete, handling each one as soon as it completes.
+     */
+    private Result waitForCompletion(MatrixBuildExecution exec, MatrixRunTracker tracker, Collection<MatrixConfiguration> configurations, boolean reportCompletion) throws InterruptedException, IOException {
         BuildListener listener = exec.getListener();
+        Set<MatrixConfiguration> pending = new LinkedHashSet<MatrixConfiguration>(configurations);
+        int total = pending.size();
+        Result r = Result.SUCCESS;
+
         String whyInQueue = "";
         long startTime = System.currentTimeMillis();
 
-        // wait for the completion
-        int appearsCancelledCount = 0;
-        while(true) {
-            MatrixRun b = c.getBuildByNumber(exec.getBuild().getNumber());
-
-            // two ways to get beyond this. one is that the build starts and gets done,
-            // or the build gets cancelled before it even started.
-            if(b!=null && !b.isBuilding()) {
-                Result buildResult = b.getResult();
-                if(buildResult!=null)
-                    return b;
-            }
-            Queue.Item qi = c.getQueueItem();
-            if(b==null && qi==null)
-                appearsCancelledCount++;
-            else
-                appearsCancelledCount = 0;
-
-            if(appearsCancelledCount>=5) {
-                // there's conceivably a race condition in computating b and qi, as their computation
-                // are not synchronized. There are indeed several reports of Hudson incorrectly assuming
-                // builds being cancelled. See
-                // http://www.nabble.com/Master-slave-problem-tt14710987.html and also
-                // http://www.nabble.com/Anyone-using-AccuRev-plugin--tt21634577.html#a21671389
-                // because of this, we really make sure that the build is cancelled by doing this 5
-                // times over 5 seconds
-                listener.getLogger().println(Messages.MatrixBuild_AppearsCancelled(ModelHyperlinkNote.encodeTo(c)));
-                return null;
+        while (!pending.isEmpty()) {
+            MatrixConfiguration c = tracker.waitForAny(pending, 1000);
+            if (c==null) {
+                // nothing completed yet. if the first configuration we are waiting for seems to be stuck in the queue, display why
+                MatrixConfiguration first = pending.iterator().next();
+                Queue.Item qi = first.getQueueItem();
+                if (qi!=null) {
+                    String why = qi.getWhy();
+                    if(!why.equals(whyInQueue) && System.currentTimeMillis()-startTime>5000) {
+                        listener.getLogger().print("Configuration " + ModelHyperlinkNote.encodeTo(first)+" is still in the queue: ");
+                        qi.getCauseOfBlockage().print(listener); //this is still shown on the same line
+                        whyInQueue = why;
+                    }
+                }
+                continue;
             }
 
-            if(qi!=null) {
-                // if the build seems to be stuck in the queue, display why
-                String why = qi.getWhy();
-                if(!why.equals(whyInQueue) && System.currentTimeMillis()-startTime>5000) {
-                    listener.getLogger().print("Configuration " + ModelHyperlinkNote.encodeTo(c)+" is still in the queue: ");
-                    qi.getCauseOfBlockage().print(listener); //this is still shown on the same line
-                    whyInQueue = why;
-                }
+            pending.remove(c);
+            MatrixRun run = tracker.getRun(c);
+            if (run==null)
+                listener.getLogger().println(Messages.MatrixBuild_AppearsCancelled(ModelHyperlinkNote.encodeTo(c)));
+            notifyEndBuild(run,exec.getAggregators());
+            if (reportCompletion) {
+                listener.getLogger().println(Messages.MatrixBuild_Completed(ModelHyperlinkNote.encodeTo(c), getResult(run)));
+                if (total>1)
+                    listener.getLogger().printf("%d/%d configurations completed%n", total-pending.size(), total);
             }
-            
-            Thread.sleep(1000);
+            r = r.combine(getResult(run));
         }
+        return r;
     }
 
     @Extension
@@ -193,6 +193,7 @@ public class MatrixConfiguration extends Project<MatrixConfiguration,MatrixRun>
     protected MatrixRun newBuild() throws IOException {
         // for every MatrixRun there should be a parent MatrixBuild
         MatrixBuild lb = getParent().getLastBuild();
+        loadDeferredBuilds();
         MatrixRun lastBuild = new MatrixRun(this, lb.getTimestamp());
         lastBuild.number = lb.getNumber();
 
@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.matrix;
+
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.ParametersAction;
+import hudson.model.Queue.WaitingItem;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the {@link MatrixRun}s that a {@link MatrixBuild} is waiting for.
+ *
+ * <p>
+ * Completions are pushed to the tracker by {@link RunListener}, so the waiting thread wakes up
+ * as soon as any one of the configurations completes, in whatever order they complete, instead of
+ * polling each configuration in turn. Configurations that never get to run (such as ones that are
+ * cancelled while in the queue) do not produce such events, and those are detected from the
+ * {@link Future} of their queue items.
+ *
+ * <p>
+ * The waiting thread is still the flyweight executor of the {@link MatrixBuild}, which is held until
+ * all the configurations complete, since {@link hudson.model.Executor} and {@link hudson.model.Run#execute}
+ * assume a thread per running build. It just sleeps on {@link #events} in the mean time.
+ *
+ * @since 1.475
+ */
+final class MatrixRunTracker {
+    private final MatrixBuild build;
+    private final String key;
+
+    /**
+     * Futures of the queue items we've scheduled. A null value means we failed to obtain one,
+     * and we have to check the state of the configuration ourselves.
+     */
+    private final Map<MatrixConfiguration,Future<?>> futures = new HashMap<MatrixConfiguration,Future<?>>();
+
+    /**
+     * Completed configurations. A null value means the configuration was cancelled before it started.
+     */
+    private final Map<MatrixConfiguration,MatrixRun> completed = new HashMap<MatrixConfiguration,MatrixRun>();
+
+    /**
+     * When a configuration without a future was first seen with neither a queue item nor a build.
+     */
+    private final Map<MatrixConfiguration,Long> appearsCancelledSince = new HashMap<MatrixConfiguration,Long>();
+
+    /**
+     * Completions notified by {@link ListenerImpl} but not yet picked up by the waiting thread.
+     */
+    private final BlockingQueue<MatrixRun> events = new LinkedBlockingQueue<MatrixRun>();
+
+    MatrixRunTracker(MatrixBuild build) {
+        this.build = build;
+        this.key = keyOf(build.getParent(),build.getNumber());
+        TRACKERS.put(key,this);
+    }
+
+    /**
+     * Schedules a build of the given configuration, the same way {@link MatrixConfiguration#scheduleBuild(ParametersAction, Cause)} does.
+     */
+    void schedule(MatrixConfiguration c, ParametersAction parameters, Cause cause) {
+        WaitingItem i = Jenkins.getInstance().getQueue().schedule(c, c.getQuietPeriod(), parameters, new CauseAction(cause));
+        // if the configuration was already in the queue, the existing item might be for a different build,
+        // so its future doesn't tell us anything
+        futures.put(c, i!=null ? i.getFuture() : null);
+    }
+
+    /**
+     * Waits until one of the given configurations completes.
+     *
+     * @return
+     *      the configuration that has completed, or null if none did within the timeout.
+     *      {@link #getRun(MatrixConfiguration)} gives the result.
+     */
+    MatrixConfiguration waitForAny(Collection<MatrixConfiguration> pending, long timeout) throws InterruptedException {
+        MatrixConfiguration c = findCompleted(pending);
+        if (c!=null)    return c;
+
+        MatrixRun r = events.poll(timeout, TimeUnit.MILLISECONDS);
+        if (r!=null)
+            completed.put(r.getParent(),r);
+        return findCompleted(pending);
+    }
+
+    private MatrixConfiguration findCompleted(Collection<MatrixConfiguration> pending) {
+        for (MatrixRun r=events.poll(); r!=null; r=events.poll())
+            completed.put(r.getParent(),r);
+
+        for (MatrixConfiguration c : pending) {
+            if (isCompleted(c))
+                return c;
+        }
+        return null;
+    }
+
+    private boolean isCompleted(MatrixConfiguration c) {
+        if (completed.containsKey(c))
+            return true;
+
+        Future<?> f = futures.get(c);
+        if (f!=null) {
+            if (!f.isDone())
+                return false;
+            // normally we hear from ListenerImpl before we get here,
+            // but the build might have failed to start, or the item might have been cancelled.
+            completed.put(c, f.isCancelled() ? null : getCompletedBuild(c));
+            return true;
+        }
+
+        // no future to rely on. fall back to looking at the state of the configuration
+        MatrixRun b = c.getBuildByNumber(build.getNumber());
+        if (b!=null && !b.isBuilding() && b.getResult()!=null) {
+            completed.put(c,b);
+            return true;
+        }
+
+        if (b!=null || c.getQueueItem()!=null) {
+            appearsCancelledSince.remove(c);
+            return false;
+        }
+        // there's conceivably a race condition in computing b and the queue item, as their computation
+        // is not synchronized, so we make sure that the build is really cancelled by seeing it for a while
+        Long since = appearsCancelledSince.get(c);
+        long now = System.currentTimeMillis();
+        if (since==null) {
+            appearsCancelledSince.put(c,now);
+        } else if (now-since>=5000) {
+            completed.put(c,null);
+            return true;
+        }
+        return false;
+    }
+
+    private MatrixRun getCompletedBuild(MatrixConfiguration c) {
+        MatrixRun b = c.getBuildByNumber(build.getNumber());
+        return b!=null && !b.isBuilding() ? b : null;
+    }
+
+    /**
+     * Gets the build of a completed configuration.
+     *
+     * @return null if the configuration was cancelled before it even got going.
+     */
+    MatrixRun getRun(MatrixConfiguration c) {
+        return completed.get(c);
+    }
+
+    /**
+     * Stops receiving notifications.
+     */
+    void close() {
+        TRACKERS.remove(key);
+    }
+
+    private static String keyOf(MatrixProject p, int number) {
+        return p.getFullName()+'#'+number;
+    }
+
+    /**
+     * Trackers of the {@link MatrixBuild}s in progress, keyed by the project name and the build number.
+     */
+    private static final Map<String,MatrixRunTracker> TRACKERS = new ConcurrentHashMap<String,MatrixRunTracker>();
+
+    @Extension
+    public static class ListenerImpl extends RunListener<MatrixRun> {
+        public ListenerImpl() {
+            super(MatrixRun.class);
+        }
+
+        @Override
+        public void onFinalized(MatrixRun r) {
+            if (TRACKERS.isEmpty())     return;
+            MatrixRunTracker t = TRACKERS.get(keyOf(r.getParent().getParent(),r.getNumber()));
+            if (t!=null)
+                t.events.add(r);
+        }
+    }
+}
@@ -42,6 +42,7 @@ import hudson.model.listeners.SCMListener;
 import hudson.scm.ChangeLogParser;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
+import hudson.scm.ChangeLogSummary;
 import hudson.scm.NullChangeLogParser;
 import hudson.scm.SCM;
 import hudson.slaves.NodeProperty;
@@ -73,6 +74,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.StringWriter;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.text.MessageFormat;
 import java.util.AbstractSet;
@@ -132,6 +134,11 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
      */
     private volatile transient WeakReference<ChangeLogSet<? extends Entry>> changeSet;
 
+    /**
+     * @see #getChangeLogSummary()
+     */
+    private volatile transient SoftReference<ChangeLogSummary> changeLogSummary;
+
     /**
      * Cumulative list of people who contributed to the build problem.
      *
@@ -296,49 +303,25 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
      * This list at least always include people who made changes in this build, but
      * if the previous build was a failure it also includes the culprit list from there.
      *
+     * <p>
+     * The list is determined when the build completes, from the culprits of the previous build and
+     * the changes of this build, and it's recorded in <tt>build.xml</tt>. Builds from before
+     * the culprits were recorded get theirs recorded in the background by {@link BuildRecordBackfill},
+     * and computed on the fly until then.
+     *
      * @return
      *      can be empty but never null.
      */
     @Exported
     public Set<User> getCulprits() {
-        if (culprits==null) {
-            Set<User> r = new HashSet<User>();
-            R p = getPreviousCompletedBuild();
-            if (p !=null && isBuilding()) {
-                Result pr = p.getResult();
-                if (pr!=null && pr.isWorseThan(Result.SUCCESS)) {
-                    // we are still building, so this is just the current latest information,
-                    // but we seems to be failing so far, so inherit culprits from the previous build.
-                    // isBuilding() check is to avoid recursion when loading data from old Hudson, which doesn't record
-                    // this information
-                    r.addAll(p.getCulprits());
-                }
-            }
-            for (Entry e : getChangeSet())
-                r.add(e.getAuthor());
-
-            if (upstreamCulprits) {
-                // If we have dependencies since the last successful build, add their authors to our list
-                if (getPreviousNotFailedBuild() != null) {
-                    Map <AbstractProject,AbstractBuild.DependencyChange> depmap = getDependencyChanges(getPreviousSuccessfulBuild());
-                    for (AbstractBuild.DependencyChange dep : depmap.values()) {
-                        for (AbstractBuild<?,?> b : dep.getBuilds()) {
-                            for (Entry entry : b.getChangeSet()) {
-                                r.add(entry.getAuthor());
-                            }
-                        }
-                    }
-                }
-            }
-
-            return r;
-        }
+        if (culprits==null)
+            return computeCulprits();
 
         return new AbstractSet<User>() {
             public Iterator<User> iterator() {
                 return new AdaptedIterator<String,User>(culprits.iterator()) {
                     protected User adapt(String id) {
-                        return User.get(id);
+                        return User.getById(id,true);
                     }
                 };
             }
@@ -349,21 +332,83 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
         };
     }
 
+    private void recordCulprits(Set<User> users) {
+        HashSet<String> r = new HashSet<String>();
+        for (User u : users)
+            r.add(u.getId());
+        culprits = ImmutableSortedSet.copyOf(r);
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        if (culprits==null && !isBuilding())
+            BuildRecordBackfill.schedule(this);
+    }
+
+    /**
+     * Records what builds from older versions didn't, called for such builds by {@link BuildRecordBackfill}.
+     */
+    /*package*/ void backfill() {
+        if (isBuilding() || !getRootDir().isDirectory())
+            return;     // deleted in the mean time
+        if (!ChangeLogSummary.exists(this))
+            getChangeLogSummary().save(this);
+        if (culprits==null) {
+            recordCulprits(computeCulprits());
+            try {
+                save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to record the culprits of "+this, e);
+            }
+        }
+    }
+
+    /**
+     * Computes the culprits from the culprits of the previous build (if it's broken) and the changes of this build.
+     */
+    private Set<User> computeCulprits() {
+        Set<User> r = new HashSet<User>();
+        R p = getPreviousCompletedBuild();
+        if (p !=null && isBuilding()) {
+            Result pr = p.getResult();
+            if (pr!=null && pr.isWorseThan(Result.SUCCESS)) {
+                // we are still building, so this is just the current latest information,
+                // but we seems to be failing so far, so inherit culprits from the previous build.
+                // isBuilding() check is to avoid recursion when loading data from old Hudson, which doesn't record
+                // this information
+                r.addAll(p.getCulprits());
+            }
+        }
+        for (String id : getChangeLogSummary().getAuthorIds())
+            r.add(User.getById(id,true));
+
+        if (upstreamCulprits) {
+            // If we have dependencies since the last successful build, add their authors to our list
+            if (getPreviousNotFailedBuild() != null) {
+                Map <AbstractProject,AbstractBuild.DependencyChange> depmap = getDependencyChanges(getPreviousSuccessfulBuild());
+                for (AbstractBuild.DependencyChange dep : depmap.values()) {
+                    for (AbstractBuild<?,?> b : dep.getBuilds()) {
+                        for (String id : b.getChangeLogSummary().getAuthorIds()) {
+                            r.add(User.getById(id,true));
+                        }
+                    }
+                }
+            }
+        }
+
+        return r;
+    }
+
     /**
      * Returns true if this user has made a commit to this build.
      *
      * @since 1.191
      */
     public boolean hasParticipant(User user) {
-        for (ChangeLogSet.Entry e : getChangeSet())
-            try{
-                if (e.getAuthor()==user)
-                    return true;
-            } catch (RuntimeException re) {
-                // no-op, just remove exception thrown e.g. from git plugin. 
-                // It there's some problem to determine committer, user probably doesn't participate in the build.
-            }
-        return false;
+        // if there's some problem to determine committer (such as an exception thrown from the git plugin),
+        // the summary doesn't have the author, and the user probably doesn't participate in the build.
+        return getChangeLogSummary().hasAuthor(user.getId());
     }
 
     /**
@@ -591,7 +636,11 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
                         SCM scm = project.getScm();
 
                         build.scm = scm.createChangeLogParser();
-                        build.changeSet = new WeakReference<ChangeLogSet<? extends Entry>>(build.calcChangeSet());
+                        ChangeLogSet<? extends Entry> cs = build.calcChangeSet();
+                        build.changeSet = new WeakReference<ChangeLogSet<? extends Entry>>(cs);
+                        ChangeLogSummary summary = ChangeLogSummary.of(cs);
+                        summary.save(build);
+                        build.changeLogSummary = new SoftReference<ChangeLogSummary>(summary);
 
                         for (SCMListener l : Jenkins.getInstance().getSCMListeners())
                             try {
@@ -645,10 +694,7 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
                     createSymlink(listener, "lastStable");
             } finally {
                 // update the culprit list
-                HashSet<String> r = new HashSet<String>();
-                for (User u : getCulprits())
-                    r.add(u.getId());
-                culprits = ImmutableSortedSet.copyOf(r);
+                recordCulprits(computeCulprits());
                 CheckPoint.CULPRITS_DETERMINED.report();
             }
         }
@@ -815,6 +861,33 @@ public abstract class AbstractBuild<P extends AbstractProject<P,R>,R extends Abs
         return cs;
     }
 
+    /**
+     * Gets the digest of {@link #getChangeSet()}, which doesn't require the change log to be parsed again.
+     *
+     * <p>
+     * The summary is written when the change log is obtained. For builds from before then,
+     * it's computed from {@link #getChangeSet()} the first time it's needed, and written
+     * later by {@link BuildRecordBackfill}, so that requests that look at many builds don't write them all.
+     *
+     * @return never null.
+     * @since 1.475
+     */
+    public ChangeLogSummary getChangeLogSummary() {
+        SoftReference<ChangeLogSummary> ref = changeLogSummary;
+        ChangeLogSummary s = ref!=null ? ref.get() : null;
+        if (s!=null)    return s;
+
+        s = ChangeLogSummary.load(this);
+        if (s==null) {
+            s = ChangeLogSummary.of(getChangeSet());
+            // while building, the change log may not be there yet
+            if (!isBuilding())
+                BuildRecordBackfill.schedule(this);
+        }
+        changeLogSummary = new SoftReference<ChangeLogSummary>(s);
+        return s;
+    }
+
     /**
      * Returns true if the changelog is already computed.
      */
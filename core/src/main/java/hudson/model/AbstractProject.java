@@ -39,6 +39,7 @@ import hudson.Util;
 import hudson.cli.declarative.CLIMethod;
 import hudson.cli.declarative.CLIResolver;
 import hudson.diagnosis.OldDataMonitor;
+import hudson.init.InitMilestone;
 import hudson.model.Cause.LegacyCodeCause;
 import hudson.model.Cause.RemoteCause;
 import hudson.model.Cause.UserIdCause;
@@ -64,6 +65,7 @@ import hudson.scm.SCM;
 import hudson.scm.SCMRevisionState;
 import hudson.scm.SCMS;
 import hudson.search.SearchIndexBuilder;
+import hudson.security.ACL;
 import hudson.security.Permission;
 import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStep;
@@ -87,6 +89,8 @@ import jenkins.scm.DefaultSCMCheckoutStrategyImpl;
 import jenkins.scm.SCMCheckoutStrategy;
 import jenkins.scm.SCMCheckoutStrategyDescriptor;
 import net.sf.json.JSONObject;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.args4j.Argument;
@@ -162,6 +166,18 @@ public abstract class AbstractProject<P extends AbstractProject<P,R>,R extends A
     @Restricted(NoExternalUse.class)
     protected transient /*almost final*/ RunMap<R> builds = new RunMap<R>();
 
+    /**
+     * True if the build records are not loaded into {@link #builds} yet.
+     *
+     * @see Jenkins#DEFERRED_BUILD_LOAD
+     */
+    private transient volatile boolean buildsDeferred;
+
+    /**
+     * The thread loading the deferred build records, if any. Guarded by {@link #builds}.
+     */
+    private transient Thread buildsLoader;
+
     /**
      * The quiet period. Null to delegate to the system default.
      */
@@ -271,11 +287,14 @@ public abstract class AbstractProject<P extends AbstractProject<P,R>,R extends A
 
         if (this.builds==null)
             this.builds = new RunMap<R>();
-        this.builds.load(this,new Constructor<R>() {
-            public R create(File dir) throws IOException {
-                return loadBuild(dir);
-            }
-        });
+        Jenkins j = Jenkins.getInstance();
+        if (Jenkins.DEFERRED_BUILD_LOAD && j!=null && j.getInitLevel().compareTo(InitMilestone.COMPLETED)<0) {
+            buildsDeferred = true;
+            DeferredBuildLoader.schedule(this);
+        } else {
+            buildsDeferred = false;
+            loadBuilds();
+        }
 
         if(triggers==null) {
             // it didn't exist in < 1.28
@@ -935,13 +954,54 @@ public abstract class AbstractProject<P extends AbstractProject<P,R>,R extends A
         return authToken;
     }
 
+    private void loadBuilds() {
+        this.builds.load(this,new Constructor<R>() {
+            public R create(File dir) throws IOException {
+                return loadBuild(dir);
+            }
+        });
+    }
+
+    /**
+     * Loads the build records if {@link Jenkins#DEFERRED_BUILD_LOAD} has left them for later.
+     *
+     * @return true if the build records were loaded by this call.
+     * @since 1.475
+     */
+    protected final boolean loadDeferredBuilds() {
+        if (!buildsDeferred)    return false;
+        synchronized (builds) {
+            // other threads wait here until the loading completes, but the loading thread itself sees
+            // the records loaded so far, such as when a build being loaded looks at its predecessor
+            if (!buildsDeferred || buildsLoader==Thread.currentThread())    return false;
+            if (!getRootDir().isDirectory()) {
+                buildsDeferred = false;
+                return false;   // deleted in the mean time
+            }
+            buildsLoader = Thread.currentThread();
+            // loading the builds shouldn't depend on who happens to need them first
+            SecurityContext orig = ACL.impersonate(ACL.SYSTEM);
+            try {
+                loadBuilds();
+            } finally {
+                SecurityContextHolder.setContext(orig);
+                buildsLoader = null;
+                // only now can others skip the lock and use the records
+                buildsDeferred = false;
+            }
+            return true;
+        }
+    }
+
     @Override
     public SortedMap<Integer, ? extends R> _getRuns() {
+        loadDeferredBuilds();
         return builds.getView();
     }
 
     @Override
     public void removeRun(R run) {
+        loadDeferredBuilds();
         this.builds.remove(run);
     }
 
@@ -968,6 +1028,7 @@ public abstract class AbstractProject<P extends AbstractProject<P,R>,R extends A
     	}
     	lastBuildStartTime = System.currentTimeMillis();
         try {
+            loadDeferredBuilds();
             R lastBuild = getBuildClass().getConstructor(getClass()).newInstance(this);
             builds.put(lastBuild);
             return lastBuild;
@@ -1616,7 +1677,7 @@ public abstract class AbstractProject<P extends AbstractProject<P,R>,R extends A
 
     @Override
     protected HistoryWidget createHistoryWidget() {
-        return new BuildHistoryWidget<R>(this,getBuilds(),HISTORY_ADAPTER);
+        return new BuildHistoryWidget<R>(this,getBuildsPaged(HISTORY_PAGE_SIZE),HISTORY_ADAPTER);
     }
     
     public boolean isParameterized() {
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static hudson.init.InitMilestone.COMPLETED;
+
+/**
+ * Fills in what builds from older versions didn't record, such as their culprits and their
+ * {@link hudson.scm.ChangeLogSummary}, in the background once the start up is complete,
+ * so that neither the start up nor the page renders end up writing to build records.
+ *
+ * <p>
+ * A single thread does this, as it's one-time work that shouldn't compete with the builds and requests.
+ *
+ * @since 1.475
+ */
+public final class BuildRecordBackfill {
+    private BuildRecordBackfill() {}
+
+    /**
+     * Builds waiting for the start up to complete.
+     */
+    private static final List<AbstractBuild<?,?>> PENDING = new ArrayList<AbstractBuild<?,?>>();
+
+    /**
+     * Null until the start up completes.
+     */
+    private static ExecutorService executor;
+
+    static synchronized void schedule(AbstractBuild<?,?> b) {
+        if (executor!=null)
+            executor.submit(new Backfill(b));
+        else
+            PENDING.add(b);
+    }
+
+    @Initializer(after=COMPLETED)
+    public static synchronized void start() {
+        if (executor==null)
+            executor = Executors.newSingleThreadExecutor(
+                    new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+        for (AbstractBuild<?,?> b : PENDING)
+            executor.submit(new Backfill(b));
+        PENDING.clear();
+    }
+
+    /**
+     * Waits for the builds scheduled so far to be backfilled. For tests.
+     */
+    public static void waitForCompletion() throws Exception {
+        ExecutorService e;
+        synchronized (BuildRecordBackfill.class) {
+            e = executor;
+        }
+        if (e!=null)
+            e.submit(new Runnable() {
+                public void run() {}
+            }).get(60, TimeUnit.SECONDS);
+    }
+
+    private static final class Backfill implements Runnable {
+        private final AbstractBuild<?,?> build;
+
+        Backfill(AbstractBuild<?,?> build) {
+            this.build = build;
+        }
+
+        public void run() {
+            build.backfill();
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.AtomicFileWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact summary of all the builds of a {@link Job}, for listing builds
+ * without going through the whole {@link Job#getBuilds()}.
+ *
+ * <p>
+ * The summaries of the completed builds are kept in the job directory as a text file, one line per build.
+ * A line is appended whenever a build completes, changes, or is deleted, and the file is rewritten
+ * once it accumulates too many stale lines. When the index is first needed, the file is
+ * reconciled with the builds that actually exist, so only the builds that are missing from
+ * the file (such as the ones in progress) are looked at.
+ *
+ * <p>
+ * The index is then kept up to date by listening to the life cycle of the builds. Listings page through it
+ * by using the build number as a cursor, so the cost of rendering a page depends on the
+ * size of the page, and not on the number of builds the job has.
+ *
+ * @see Job#getBuildSummaryIndex()
+ * @since 1.475
+ */
+public final class BuildSummaryIndex {
+    /**
+     * Summary of a single build.
+     */
+    public static final class Summary {
+        public final int number;
+        /**
+         * When the build was scheduled, in the format of {@link System#currentTimeMillis()}.
+         */
+        public final long timestamp;
+        /**
+         * Duration of the build in milliseconds. 0 if the build is in progress.
+         */
+        public final long duration;
+        /**
+         * Result of the build, or null if the build is in progress.
+         */
+        public final Result result;
+        public final String displayName;
+
+        public Summary(int number, long timestamp, long duration, Result result, String displayName) {
+            this.number = number;
+            this.timestamp = timestamp;
+            this.duration = duration;
+            this.result = result;
+            this.displayName = displayName;
+        }
+
+        Summary(Run<?,?> r) {
+            this(r.getNumber(), r.timestamp, r.getDuration(),
+                    r.isBuilding() ? null : r.getResult(), r.getDisplayName());
+        }
+
+        public boolean isBuilding() {
+            return result==null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Summary))    return false;
+            Summary that = (Summary) o;
+            return number==that.number && timestamp==that.timestamp && duration==that.duration
+                && result==that.result && displayName.equals(that.displayName);
+        }
+
+        @Override
+        public int hashCode() {
+            return number;
+        }
+
+        /**
+         * Line in the summary file.
+         */
+        @Override
+        public String toString() {
+            return number+"\t"+timestamp+"\t"+duration+"\t"+result+"\t"+displayName.replaceAll("[\t\r\n]"," ");
+        }
+
+        static Summary parse(String line) {
+            String[] tokens = line.split("\t",5);
+            Result r = Result.fromString(tokens[3]);
+            return new Summary(Integer.parseInt(tokens[0]), Long.parseLong(tokens[1]), Long.parseLong(tokens[2]),
+                    r, tokens[4]);
+        }
+    }
+
+    private final Job<?,?> job;
+
+    /**
+     * Build number to its summary, newer builds first.
+     */
+    private final SortedMap<Integer,Summary> summaries = new TreeMap<Integer,Summary>(Collections.reverseOrder());
+
+    /**
+     * Summaries in the order of the build number, oldest first.
+     * Recomputed lazily after the index is modified.
+     */
+    private Summary[] sorted;
+
+    /**
+     * Number of lines in the summary file, which includes the lines of the builds that
+     * have been updated or deleted since.
+     */
+    private int lines;
+
+    /**
+     * Set once the index is populated. Until then, the index is empty.
+     */
+    private boolean loaded;
+
+    BuildSummaryIndex(Job<?,?> job) {
+        this.job = job;
+    }
+
+    /**
+     * Populates the index upon the first use. Everything that touches {@link #summaries} calls this first,
+     * so a build event that arrives while the index is being populated is applied after it, and not lost.
+     */
+    private void ensureLoaded() {
+        if (loaded)     return;
+        boolean dirty = !load();
+
+        // reconcile with the builds that actually exist
+        SortedMap<Integer,? extends Run<?,?>> runs = job._getRuns();
+        Set<Integer> numbers = new HashSet<Integer>(runs.keySet());
+        if (summaries.keySet().retainAll(numbers))
+            dirty = true;
+        for (Integer n : numbers) {
+            if (summaries.containsKey(n))   continue;
+            Run<?,?> r = runs.get(n);
+            if (r==null)    continue;
+            Summary s = new Summary(r);
+            summaries.put(n,s);
+            if (!s.isBuilding())
+                dirty = true;
+        }
+
+        if (dirty)
+            save();
+        loaded = true;
+    }
+
+    /**
+     * Loads the summary file.
+     *
+     * @return false if the file needs to be recreated.
+     */
+    private boolean load() {
+        File f = getFile();
+        if (!f.exists())    return false;
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f),"UTF-8"));
+            try {
+                String line;
+                while ((line=in.readLine())!=null) {
+                    if (line.length()==0)   continue;
+                    lines++;
+                    if (line.charAt(0)=='-') {
+                        summaries.remove(Integer.parseInt(line.substring(1)));
+                    } else {
+                        Summary s = Summary.parse(line);
+                        summaries.put(s.number,s);
+                    }
+                }
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load "+f+". Recomputing", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load "+f+". Recomputing", e);
+        }
+        summaries.clear();
+        return false;
+    }
+
+    /**
+     * Rewrites the summary file from scratch.
+     */
+    private void save() {
+        File f = getFile();
+        try {
+            AtomicFileWriter w = new AtomicFileWriter(f,"UTF-8");
+            try {
+                int n=0;
+                for (Summary s : getSorted()) {
+                    if (s.isBuilding())     continue;
+                    w.write(s.toString()+'\n');
+                    n++;
+                }
+                w.commit();
+                lines = n;
+            } finally {
+                w.abort();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the build summaries of "+job, e);
+        }
+    }
+
+    private void append(String line) {
+        if (lines>summaries.size()*2+COMPACTION_THRESHOLD) {
+            // more stale lines than live ones. rewrite the file, which includes this change
+            save();
+            return;
+        }
+        try {
+            Writer w = new OutputStreamWriter(new FileOutputStream(getFile(),true),"UTF-8");
+            try {
+                w.write(line+'\n');
+                lines++;
+            } finally {
+                w.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to record the build summary of "+job, e);
+        }
+    }
+
+    private File getFile() {
+        return new File(job.getRootDir(),"buildSummaries.txt");
+    }
+
+    public Job<?,?> getJob() {
+        return job;
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return summaries.size();
+    }
+
+    /**
+     * Gets the summary of the given build.
+     *
+     * @return null if no such build exists.
+     */
+    public synchronized Summary get(int number) {
+        ensureLoaded();
+        return summaries.get(number);
+    }
+
+    /**
+     * Gets a page of builds, newer builds first.
+     *
+     * @param before
+     *      The cursor. Only the builds whose numbers are smaller than this number are returned.
+     *      Use {@link Integer#MAX_VALUE} to get the newest builds.
+     * @param limit
+     *      The maximum number of builds to return.
+     */
+    public synchronized List<Summary> getPage(int before, int limit) {
+        ensureLoaded();
+        List<Summary> r = new ArrayList<Summary>(Math.min(limit,summaries.size()));
+        // the map is in the reverse order, so the tail map is the older part
+        for (Summary s : summaries.tailMap(before-1).values()) {
+            if (r.size()>=limit)    break;
+            r.add(s);
+        }
+        return r;
+    }
+
+    /**
+     * Gets all the builds whose numbers are equal to or greater than the given number, newer builds first.
+     */
+    public synchronized List<Summary> getSince(int number) {
+        ensureLoaded();
+        return new ArrayList<Summary>(summaries.headMap(number-1).values());
+    }
+
+    /**
+     * Gets the builds that started within the given time range, newer builds first.
+     * Like {@link hudson.util.RunList#byTimestamp(long, long)}, this assumes that newer builds
+     * have newer timestamps.
+     *
+     * @param start
+     *      Inclusive lower bound of the timestamp.
+     * @param end
+     *      Exclusive upper bound of the timestamp.
+     */
+    public synchronized List<Summary> byTimestamp(long start, long end) {
+        ensureLoaded();
+        Summary[] s = getSorted();
+        int lo = lowerBound(s, start);
+        int hi = lowerBound(s, end);
+        List<Summary> r = new ArrayList<Summary>(Math.max(hi-lo,0));
+        for (int i=hi-1; i>=lo; i--)
+            r.add(s[i]);
+        return r;
+    }
+
+    /**
+     * Gets the newest completed builds whose results are equal to or better than the given threshold,
+     * newer builds first.
+     *
+     * @see Job#getLastBuildsOverThreshold(int, Result)
+     */
+    public synchronized List<Summary> getLastOverThreshold(int numberOfBuilds, Result threshold) {
+        ensureLoaded();
+        List<Summary> r = new ArrayList<Summary>(numberOfBuilds);
+        for (Summary s : summaries.values()) {
+            if (r.size()>=numberOfBuilds)   break;
+            if (!s.isBuilding() && s.result.isBetterOrEqualTo(threshold))
+                r.add(s);
+        }
+        return r;
+    }
+
+    /**
+     * Gets the result of the last completed build before the given one, which is what
+     * {@link Run#getIconColor()} of an in-progress build is based on.
+     *
+     * @return null if there's no such build.
+     */
+    public synchronized Result getPreviousResult(int number) {
+        ensureLoaded();
+        for (Summary s : summaries.tailMap(number-1).values()) {
+            if (!s.isBuilding())
+                return s.result;
+        }
+        return null;
+    }
+
+    /**
+     * Index of the first element whose timestamp is equal to or greater than the given time.
+     */
+    private static int lowerBound(Summary[] s, long time) {
+        int lo=0, hi=s.length;
+        while (lo<hi) {
+            int mid = (lo+hi)>>>1;
+            if (s[mid].timestamp<time)  lo=mid+1;
+            else                        hi=mid;
+        }
+        return lo;
+    }
+
+    private Summary[] getSorted() {
+        if (sorted==null) {
+            Summary[] s = summaries.values().toArray(new Summary[summaries.size()]);
+            Collections.reverse(Arrays.asList(s));
+            sorted = s;
+        }
+        return sorted;
+    }
+
+    synchronized void put(Run<?,?> r) {
+        ensureLoaded();
+        Summary s = new Summary(r);
+        Summary old = summaries.put(s.number,s);
+        sorted = null;
+        // builds in progress are not persisted, as they'll be recorded again once completed
+        if (!s.isBuilding() && !s.equals(old))
+            append(s.toString());
+    }
+
+    synchronized void remove(Run<?,?> r) {
+        ensureLoaded();
+        Summary old = summaries.remove(r.getNumber());
+        sorted = null;
+        if (old!=null && !old.isBuilding())
+            append("-"+r.getNumber());
+    }
+
+    private static void update(Run<?,?> r) {
+        BuildSummaryIndex index = r.getParent().peekBuildSummaryIndex();
+        if (index!=null)
+            index.put(r);
+    }
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<Run> {
+        public RunListenerImpl() {
+            super(Run.class);
+        }
+
+        @Override
+        public void onStarted(Run r, TaskListener listener) {
+            update(r);
+        }
+
+        @Override
+        public void onCompleted(Run r, TaskListener listener) {
+            update(r);
+        }
+
+        @Override
+        public void onFinalized(Run r) {
+            update(r);
+        }
+
+        @Override
+        public void onDeleted(Run r) {
+            BuildSummaryIndex index = r.getParent().peekBuildSummaryIndex();
+            if (index!=null)
+                index.remove(r);
+        }
+    }
+
+    /**
+     * The display name of a build can be changed after it's completed.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Run) {
+                Run<?,?> r = (Run<?,?>)o;
+                BuildSummaryIndex index = r.getParent().peekBuildSummaryIndex();
+                // only update the builds that are already there, or else we might
+                // resurrect a build that's being deleted
+                if (index!=null && index.get(r.getNumber())!=null)
+                    index.put(r);
+            }
+        }
+    }
+
+    /**
+     * Number of stale lines the summary file can have on top of one per build, before it gets rewritten.
+     */
+    public static int COMPACTION_THRESHOLD = Integer.getInteger(BuildSummaryIndex.class.getName()+".compactionThreshold",64);
+
+    private static final Logger LOGGER = Logger.getLogger(BuildSummaryIndex.class.getName());
+}
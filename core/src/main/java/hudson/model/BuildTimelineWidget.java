@@ -42,21 +42,46 @@ import java.util.Date;
  * @since 1.372
  */
 public class BuildTimelineWidget {
+    /**
+     * Builds to show. Null if this widget shows the builds of {@link #job}.
+     */
     protected final RunList<?> builds;
 
+    /**
+     * If non-null, this widget shows the builds of this job from its {@link BuildSummaryIndex},
+     * without loading the builds themselves.
+     *
+     * @since 1.475
+     */
+    protected final Job<?,?> job;
+
     public BuildTimelineWidget(RunList<?> builds) {
         this.builds = builds;
+        this.job = null;
+    }
+
+    /**
+     * Shows all the builds of the given job.
+     *
+     * @since 1.475
+     */
+    public BuildTimelineWidget(Job<?,?> job) {
+        this.builds = null;
+        this.job = job;
     }
 
     public Run<?, ?> getFirstBuild() {
-        return builds.getFirstBuild();
+        return job!=null ? job.getFirstBuild() : builds.getFirstBuild();
     }
 
     public Run<?, ?> getLastBuild() {
-        return builds.getLastBuild();
+        return job!=null ? job.getLastBuild() : builds.getLastBuild();
     }
 
     public TimelineEventList doData(StaplerRequest req, @QueryParameter long min, @QueryParameter long max) throws IOException {
+        if (job!=null)
+            return getData(req, job.getBuildSummaryIndex(), min, max);
+
         TimelineEventList result = new TimelineEventList();
         for (Run r : builds.byTimestamp(min,max)) {
             Event e = new Event();
@@ -75,4 +100,31 @@ public class BuildTimelineWidget {
         return result;
     }
 
+    /**
+     * Computes the same events as {@link #doData(StaplerRequest, long, long)} does from {@link Run}s,
+     * but only from the build summaries.
+     */
+    private TimelineEventList getData(StaplerRequest req, BuildSummaryIndex index, long min, long max) {
+        TimelineEventList result = new TimelineEventList();
+        String base = req.getContextPath()+'/'+job.getUrl();
+        String jobName = job.getFullDisplayName();
+        for (BuildSummaryIndex.Summary s : index.byTimestamp(min,max)) {
+            Event e = new Event();
+            e.start = new Date(s.timestamp);
+            e.end   = new Date(s.timestamp+s.duration);
+            e.title = jobName+' '+s.displayName;
+            e.link = base+s.number+'/';
+            BallColor c;
+            if (s.isBuilding()) {
+                Result prev = index.getPreviousResult(s.number);
+                c = (prev!=null ? prev.color : BallColor.GREY).anime();
+            } else {
+                c = s.result.color;
+            }
+            e.color = String.format("#%06X",c.getBaseColor().darker().getRGB()&0xFFFFFF);
+            e.classname = "event-"+c.noAnime().toString()+" " + (c.isAnimated()?"animated":"");
+            result.add(e);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.model.StartupProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static hudson.init.InitMilestone.COMPLETED;
+
+/**
+ * Loads the build records that {@link Jenkins#DEFERRED_BUILD_LOAD} has left for later,
+ * in the background once the start up is complete.
+ *
+ * @since 1.475
+ */
+public final class DeferredBuildLoader {
+    private DeferredBuildLoader() {}
+
+    /**
+     * Projects waiting for the start up to complete.
+     */
+    private static final List<AbstractProject<?,?>> PENDING = new ArrayList<AbstractProject<?,?>>();
+
+    /**
+     * Null until the start up completes.
+     */
+    private static ExecutorService executor;
+
+    static synchronized void schedule(AbstractProject<?,?> p) {
+        if (executor!=null)
+            executor.submit(new Load(p));
+        else
+            PENDING.add(p);
+    }
+
+    @Initializer(after=COMPLETED)
+    public static synchronized void start() {
+        if (executor==null)
+            executor = Executors.newFixedThreadPool(CONCURRENCY,
+                    new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+        for (AbstractProject<?,?> p : PENDING)
+            executor.submit(new Load(p));
+        PENDING.clear();
+    }
+
+    private static final class Load implements Runnable {
+        private final AbstractProject<?,?> project;
+
+        Load(AbstractProject<?,?> project) {
+            this.project = project;
+        }
+
+        public void run() {
+            long start = System.currentTimeMillis();
+            // no-op if someone needed the builds before we got here
+            if (project.loadDeferredBuilds())
+                StartupProfile.recordBackgroundTask("Loading builds of "+project.getFullName(),start);
+        }
+    }
+
+    /**
+     * Number of threads that load build records.
+     */
+    public static int CONCURRENCY = Integer.getInteger(DeferredBuildLoader.class.getName()+".concurrency",
+            Math.max(1,Runtime.getRuntime().availableProcessors()/2));
+}
@@ -130,6 +130,11 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     private transient Integer cachedBuildHealthReportsBuildNumber = null;
     private transient List<HealthReport> cachedBuildHealthReports = null;
 
+    /**
+     * Lazily computed by {@link #getBuildSummaryIndex()}.
+     */
+    private transient volatile BuildSummaryIndex buildSummaryIndex;
+
     private boolean keepDependencies;
 
     /**
@@ -152,6 +157,7 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     public void onLoad(ItemGroup<? extends Item> parent, String name)
             throws IOException {
         super.onLoad(parent, name);
+        buildSummaryIndex = null; // builds are about to be reloaded
 
         TextFile f = getNextBuildNumberFile();
         if (f.exists()) {
@@ -467,9 +473,15 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     }
 
     protected HistoryWidget createHistoryWidget() {
-        return new HistoryWidget<Job, RunT>(this, getBuilds(), HISTORY_ADAPTER);
+        return new HistoryWidget<Job, RunT>(this, getBuildsPaged(HISTORY_PAGE_SIZE), HISTORY_ADAPTER);
     }
 
+    /**
+     * Number of builds {@link #getBuildsPaged(int)} fetches at once for the build history widget,
+     * which is enough to render the widget in its trimmed form with a single page.
+     */
+    protected static final int HISTORY_PAGE_SIZE = 32;
+
     protected static final HistoryWidget.Adapter<Run> HISTORY_ADAPTER = new Adapter<Run>() {
         public int compare(Run record, String key) {
             try {
@@ -523,6 +535,84 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
         return RunList.fromRuns(_getRuns().values());
     }
 
+    /**
+     * Gets the summary of all the builds of this job, for listings that only need
+     * the build number, the timestamp, the duration, the result, and the display name.
+     *
+     * @since 1.475
+     */
+    public BuildSummaryIndex getBuildSummaryIndex() {
+        BuildSummaryIndex index = buildSummaryIndex;
+        if (index==null) {
+            // finish loading the build records before the index becomes visible, so that
+            // the index is never populated from a partially loaded set of builds
+            _getRuns();
+            synchronized (this) {
+                index = buildSummaryIndex;
+                if (index==null)
+                    buildSummaryIndex = index = new BuildSummaryIndex(this);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the index only if it's already computed.
+     */
+    /*package*/ BuildSummaryIndex peekBuildSummaryIndex() {
+        return buildSummaryIndex;
+    }
+
+    /**
+     * Iterates all the builds, newer ones first, just like {@link #getBuilds()} does.
+     * But instead of copying all the builds upfront, builds are fetched through
+     * {@link #getBuildSummaryIndex()} a page at a time, so callers that only look at
+     * the newest few builds only pay for those.
+     *
+     * @param pageSize
+     *      Number of builds to fetch at once.
+     * @since 1.475
+     */
+    public Iterable<RunT> getBuildsPaged(final int pageSize) {
+        return new Iterable<RunT>() {
+            public Iterator<RunT> iterator() {
+                return new Iterator<RunT>() {
+                    private Iterator<BuildSummaryIndex.Summary> page = Collections.<BuildSummaryIndex.Summary>emptyList().iterator();
+                    private int cursor = Integer.MAX_VALUE;
+                    private boolean exhausted;
+                    private RunT next;
+
+                    public boolean hasNext() {
+                        while (next==null) {
+                            if (!page.hasNext()) {
+                                if (exhausted)  return false;
+                                List<BuildSummaryIndex.Summary> p = getBuildSummaryIndex().getPage(cursor,pageSize);
+                                exhausted = p.size()<pageSize;
+                                if (p.isEmpty())    return false;
+                                cursor = p.get(p.size()-1).number;
+                                page = p.iterator();
+                            }
+                            // the build might have been deleted since we got the page
+                            next = getBuildByNumber(page.next().number);
+                        }
+                        return true;
+                    }
+
+                    public RunT next() {
+                        if (!hasNext())     throw new NoSuchElementException();
+                        RunT r = next;
+                        next = null;
+                        return r;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
     /**
      * Obtains all the {@link Run}s whose build numbers matches the given {@link RangeSet}.
      */
@@ -577,7 +667,20 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
      */
     @WithBridgeMethods(List.class)
     public RunList<RunT> getBuildsByTimestamp(long start, long end) {
-        return getBuilds().byTimestamp(start,end);
+        return RunList.fromRuns(getBuildsOf(getBuildSummaryIndex().byTimestamp(start,end)));
+    }
+
+    /**
+     * Fetches the builds of the given summaries, skipping the ones that no longer exist.
+     */
+    private List<RunT> getBuildsOf(List<BuildSummaryIndex.Summary> summaries) {
+        List<RunT> r = new ArrayList<RunT>(summaries.size());
+        for (BuildSummaryIndex.Summary s : summaries) {
+            RunT b = getBuildByNumber(s.number);
+            if (b!=null)
+                r.add(b);
+        }
+        return r;
     }
 
     @CLIResolver
@@ -789,29 +892,17 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
      *   if not enough builds satisfying the threshold have been found. Never null.
      */
     public List<RunT> getLastBuildsOverThreshold(int numberOfBuilds, Result threshold) {
-        
-        List<RunT> result = new ArrayList<RunT>(numberOfBuilds);
-        
-        RunT r = getLastBuild();
-        while (r != null && result.size() < numberOfBuilds) {
-            if (!r.isBuilding() && 
-                 (r.getResult() != null && r.getResult().isBetterOrEqualTo(threshold))) {
-                result.add(r);
-            }
-            r = r.getPreviousBuild();
-        }
-        
-        return result;
+        return getBuildsOf(getBuildSummaryIndex().getLastOverThreshold(numberOfBuilds, threshold));
     }
     
     public long getEstimatedDuration() {
-        List<RunT> builds = getLastBuildsOverThreshold(3, Result.UNSTABLE);
+        List<BuildSummaryIndex.Summary> builds = getBuildSummaryIndex().getLastOverThreshold(3, Result.UNSTABLE);
         
         if(builds.isEmpty())     return -1;
 
         long totalDuration = 0;
-        for (RunT b : builds) {
-            totalDuration += b.getDuration();
+        for (BuildSummaryIndex.Summary b : builds) {
+            totalDuration += b.duration;
         }
         if(totalDuration==0) return -1;
 
@@ -1196,6 +1287,13 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
 
                 return chart;
             }
+
+            @Override
+            protected String getCacheKey() {
+                // the timestamp of the last build doesn't change when it completes, nor when old builds are deleted
+                RunT lastCompleted = getLastCompletedBuild();
+                return getFullName()+"/buildTimeTrend/"+(lastCompleted!=null ? lastCompleted.getNumber() : 0)+'/'+_getRuns().size();
+            }
         };
     }
 
@@ -1253,6 +1351,6 @@ public abstract class Job<JobT extends Job<JobT, RunT>, RunT extends Run<JobT, R
     }
 
     public BuildTimelineWidget getTimeline() {
-        return new BuildTimelineWidget(getBuilds());
+        return new BuildTimelineWidget(this);
     }
 }
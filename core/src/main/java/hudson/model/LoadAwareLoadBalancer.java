@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.model.MultiStageTimeSeries.TimeScale;
+import hudson.model.Queue.Task;
+import hudson.model.queue.MappingWorksheet;
+import hudson.model.queue.MappingWorksheet.ExecutorChunk;
+import hudson.model.queue.MappingWorksheet.Mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link LoadBalancer} that prefers nodes that are less loaded and that already have the workspace of the task.
+ *
+ * <p>
+ * Each candidate node is scored from:
+ * <ul>
+ * <li>The load predicted for the duration of the task. {@link MappingWorksheet} already discounts
+ *     executors that {@link hudson.model.queue.LoadPredictor}s expect to be busy, so the fraction of
+ *     the executors that remain in the worksheet tells how busy the node is going to be.
+ * <li>The recent utilization of the executors of the node, as tracked by {@link LoadStatistics}.
+ * <li>Whether the last build of the task ran on the node, in which case the workspace and the SCM checkout
+ *     are most likely still there.
+ * </ul>
+ * The longer the task is expected to take, the more the load matters relative to the workspace, so that
+ * long builds spread out instead of piling up on the same busy nodes. Nodes with equal scores are ordered
+ * by a hash of the task and the node names, which keeps the assignment stable just like
+ * {@link LoadBalancer#CONSISTENT_HASH} does.
+ *
+ * <p>
+ * All the inputs are either already computed by the worksheet or maintained in the background,
+ * so the cost of scoring is constant for each node.
+ *
+ * @since 1.475
+ */
+public class LoadAwareLoadBalancer extends LoadBalancer {
+    @Override
+    public Mapping map(Task task, MappingWorksheet ws) {
+        Node lastBuiltOn = task instanceof AbstractProject ? ((AbstractProject)task).getLastBuiltOn() : null;
+        String lastBuiltOnName = lastBuiltOn!=null ? lastBuiltOn.getNodeName() : null;
+        double loadWeight = 1 + (double)Math.min(Math.max(task.getEstimatedDuration(),0),LONG_TASK)/LONG_TASK;
+
+        // score every executor chunk once, as the same chunk can be a candidate for multiple work chunks
+        final double[] scores = new double[ws.executors.size()];
+        for (ExecutorChunk ec : ws.executors)
+            scores[ec.index] = score(ec,lastBuiltOnName,loadWeight);
+
+        List<List<ExecutorChunk>> candidates = new ArrayList<List<ExecutorChunk>>(ws.works.size());
+        for (int i=0; i<ws.works.size(); i++) {
+            final String key = task.getFullDisplayName() + (i>0 ? String.valueOf(i) : "");
+            List<ExecutorChunk> list = ws.works(i).applicableExecutorChunks();
+            Collections.sort(list,new Comparator<ExecutorChunk>() {
+                public int compare(ExecutorChunk a, ExecutorChunk b) {
+                    int r = Double.compare(scores[a.index],scores[b.index]);
+                    if (r!=0)   return r;
+                    int ha = (key+a.getName()).hashCode(), hb = (key+b.getName()).hashCode();
+                    return ha<hb ? -1 : (ha==hb ? 0 : 1);
+                }
+            });
+            candidates.add(list);
+        }
+
+        Mapping m = ws.new Mapping();
+        if (assignGreedily(m,candidates,0)) {
+            assert m.isCompletelyValid();
+            return m;
+        } else
+            return null;
+    }
+
+    /**
+     * Computes the score of the given node. Lower is better.
+     */
+    protected double score(ExecutorChunk ec, String lastBuiltOn, double loadWeight) {
+        int total = ec.computer.countExecutors();
+        // executors predicted to be busy during the task have already been taken out of the chunk
+        double predicted = total>0 ? 1-(double)ec.capacity()/total : 1;
+
+        LoadStatistics stats = ec.computer.getLoadStatistics();
+        float recentTotal = stats.totalExecutors.getLatest(TimeScale.SEC10);
+        double recent = recentTotal>0 ? Math.min(stats.busyExecutors.getLatest(TimeScale.SEC10)/recentTotal,1) : 0;
+
+        double score = loadWeight*(predicted+recent)/2;
+        if (lastBuiltOn!=null && lastBuiltOn.equals(ec.getName()))
+            score -= WORKSPACE_AFFINITY;
+        return score;
+    }
+
+    private boolean assignGreedily(Mapping m, List<List<ExecutorChunk>> candidates, int i) {
+        if (i==candidates.size())   return true;    // fully assigned
+
+        for (ExecutorChunk ec : candidates.get(i)) {
+            m.assign(i,ec);
+            if (m.isPartiallyValid() && assignGreedily(m,candidates,i+1))
+                return true;
+        }
+
+        // every attempt failed
+        m.assign(i,null);
+        return false;
+    }
+
+    /**
+     * Tasks that take this long or longer get the highest weight on the load, in milliseconds.
+     */
+    private static final long LONG_TASK = 60*60*1000;
+
+    /**
+     * How much the presence of the workspace offsets the load. A node with the workspace wins
+     * over an idle node unless its own load is high enough, and that threshold goes down as the
+     * task gets longer.
+     */
+    private static final double WORKSPACE_AFFINITY = 0.5;
+}
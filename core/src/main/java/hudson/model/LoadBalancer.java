@@ -115,6 +115,14 @@ public abstract class LoadBalancer /*implements ExtensionPoint*/ {
         }
     };
 
+    /**
+     * Takes the load of the nodes and the location of the workspaces into account.
+     *
+     * @see LoadAwareLoadBalancer
+     * @since 1.475
+     */
+    public static final LoadBalancer LOAD_AWARE = new LoadAwareLoadBalancer();
+
     /**
      * Traditional implementation of this.
      *
@@ -242,6 +242,14 @@ public class Queue extends ResourceController implements Saveable {
 
     private volatile transient QueueSorter sorter;
 
+    /**
+     * Cached result of {@link #getFlyweightHash()}, along with the nodes and the number of executors
+     * it was computed from. Only accessed while holding the lock on the queue, as {@link #maintain()} does.
+     */
+    private transient ConsistentHash<Node> flyweightHash;
+    private transient Node[] flyweightHashNodes;
+    private transient int[] flyweightHashExecutors;
+
     public Queue(LoadBalancer loadBalancer) {
         this.loadBalancer =  loadBalancer.sanitize();
         // if all the executors are busy doing something, then the queue won't be maintained in
@@ -979,15 +987,7 @@ public class Queue extends ResourceController implements Saveable {
 
     private void makeBuildable(BuildableItem p) {
         if(Jenkins.FLYWEIGHT_SUPPORT && p.task instanceof FlyweightTask && !ifBlockedByHudsonShutdown(p.task)) {
-            ConsistentHash<Node> hash = new ConsistentHash<Node>(new Hash<Node>() {
-                public String hash(Node node) {
-                    return node.getNodeName();
-                }
-            });
-            Jenkins h = Jenkins.getInstance();
-            hash.add(h, h.getNumExecutors()*100);
-            for (Node n : h.getNodes())
-                hash.add(n,n.getNumExecutors()*100);
+            ConsistentHash<Node> hash = getFlyweightHash();
 
             Label lbl = p.getAssignedLabel();
             for (Node n : hash.list(p.task.getFullDisplayName())) {
@@ -1006,6 +1006,54 @@ public class Queue extends ResourceController implements Saveable {
         buildables.put(p.task,p);
     }
 
+    /**
+     * Gets the consistent hash of all the nodes that's used to place flyweight tasks.
+     *
+     * <p>
+     * Computing this is expensive (each executor contributes 100 points, each of which is an MD5 digest),
+     * so the hash is reused until the set of nodes or their number of executors change.
+     */
+    /*package*/ ConsistentHash<Node> getFlyweightHash() {
+        Jenkins h = Jenkins.getInstance();
+        List<Node> nodes = h.getNodes();
+
+        int n = nodes.size()+1;
+        Node[] key = new Node[n];
+        int[] executors = new int[n];
+        key[0] = h;
+        executors[0] = h.getNumExecutors();
+        for (int i=1; i<n; i++) {
+            key[i] = nodes.get(i-1);
+            executors[i] = key[i].getNumExecutors();
+        }
+
+        if (flyweightHash==null || !isSameNodes(key,flyweightHashNodes) || !Arrays.equals(executors,flyweightHashExecutors)) {
+            ConsistentHash<Node> hash = new ConsistentHash<Node>(new Hash<Node>() {
+                public String hash(Node node) {
+                    return node.getNodeName();
+                }
+            });
+            for (int i=0; i<n; i++)
+                hash.add(key[i],executors[i]*100);
+
+            flyweightHash = hash;
+            flyweightHashNodes = key;
+            flyweightHashExecutors = executors;
+        }
+        return flyweightHash;
+    }
+
+    /**
+     * Compares by identity, as a reconfigured {@link Node} is a new object that's {@link Object#equals(Object)} to the old one.
+     */
+    private static boolean isSameNodes(Node[] a, Node[] b) {
+        if (a.length!=b.length)     return false;
+        for (int i=0; i<a.length; i++)
+            if (a[i]!=b[i])
+                return false;
+        return true;
+    }
+
     public static boolean ifBlockedByHudsonShutdown(Task task) {
         return Jenkins.getInstance().isQuietingDown() && !(task instanceof NonBlockingTask);
     }
@@ -37,7 +37,10 @@ import hudson.Util;
 import hudson.XmlFile;
 import hudson.cli.declarative.CLIMethod;
 import hudson.console.AnnotatedLargeText;
+import hudson.console.CoalescingOutputStream;
 import hudson.console.ConsoleNote;
+import hudson.console.ConsoleNoteDictionary;
+import hudson.console.ConsoleNoteDictionaryOutputStream;
 import hudson.matrix.MatrixBuild;
 import hudson.matrix.MatrixRun;
 import hudson.model.Descriptor.FormException;
@@ -239,6 +242,11 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
      */
     private volatile transient RunExecution runner;
 
+    /**
+     * Console output of the build in progress.
+     */
+    private volatile transient CoalescingOutputStream logStream;
+
     protected static final ThreadLocal<SimpleDateFormat> ID_FORMATTER =
             new ThreadLocal<SimpleDateFormat>() {
                 @Override
@@ -1141,6 +1149,17 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
         }
     }
 
+    /**
+     * Gets the stream the console output of this build is written to while it is building,
+     * to see how much output the build produces.
+     *
+     * @return null unless the build is in progress.
+     * @since 1.475
+     */
+    public CoalescingOutputStream getLogStream() {
+        return logStream;
+    }
+
     /**
      * Returns the log file.
      */
@@ -1457,10 +1476,9 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
                         this.charset = charset.name();
                     }
 
-                    // don't do buffering so that what's written to the listener
-                    // gets reflected to the file immediately, which can then be
-                    // served to the browser immediately
                     OutputStream logger = new FileOutputStream(getLogFile());
+                    if (!ConsoleNoteDictionary.DISABLED)
+                        logger = new ConsoleNoteDictionaryOutputStream(logger,ConsoleNoteDictionary.getFileFor(getLogFile()));
                     RunT build = job.getBuild();
 
                     // Global log filters
@@ -1476,6 +1494,9 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
                         }
                     }
 
+                    // coalesce small writes, but only for a bounded time so that what's written to the listener
+                    // still gets reflected to the file quickly, which can then be served to the browser
+                    logger = logStream = new CoalescingOutputStream(logger);
                     listener = new StreamBuildListener(logger,charset);
 
                     listener.started(getCauses());
@@ -1509,6 +1530,13 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
                     result = Result.FAILURE;
                 }
 
+                // post-build steps may read the log (such as to send it in an e-mail), so get it all on disk
+                if (listener!=null) {
+                    listener.getLogger().flush();
+                    if (logStream!=null)
+                        logStream.flushNow();
+                }
+
                 // even if the main build fails fatally, try to run post build processing
                 job.post(listener);
 
@@ -1541,6 +1569,7 @@ public abstract class Run <JobT extends Job<JobT,RunT>,RunT extends Run<JobT,Run
                     listener.finished(result);
                 if(listener!=null)
                     listener.closeQuietly();
+                logStream = null;
 
                 try {
                     save();
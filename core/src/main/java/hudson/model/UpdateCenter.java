@@ -23,6 +23,7 @@
  */
 package hudson.model;
 
+import com.trilead.ssh2.crypto.Base64;
 import hudson.BulkChange;
 import hudson.Extension;
 import hudson.ExtensionPoint;
@@ -66,6 +67,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -73,6 +77,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -120,6 +126,20 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
             }
         }));
 
+    /**
+     * {@link ExecutorService} that downloads files ahead of their installation by {@link #installerService}.
+     *
+     * @see #DOWNLOAD_CONCURRENCY
+     */
+    private final ExecutorService downloadService = Executors.newFixedThreadPool(Math.max(1,DOWNLOAD_CONCURRENCY),
+        new DaemonThreadFactory(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setName("Update center download thread");
+                return t;
+            }
+        }));
+
     /**
      * List of created {@link UpdateCenterJob}s. Access needs to be synchronized.
      */
@@ -641,16 +661,22 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
 
                 File dst = job.getDestination();
                 File tmp = new File(dst.getPath()+".tmp");
-                OutputStream out = new FileOutputStream(tmp);
+                // compute the checksum as we go, instead of reading the file again afterward
+                MessageDigest sha1 = getSHA1();
+                OutputStream out = new DigestOutputStream(new FileOutputStream(tmp),sha1);
 
                 LOGGER.info("Downloading "+job.getName());
+                job.downloadStarted = System.currentTimeMillis();
                 try {
                     while((len=in.read(buf))>=0) {
                         out.write(buf,0,len);
+                        job.downloadedBytes = in.getCount();
                         job.status = job.new Installing(total==-1 ? -1 : in.getCount()*100/total);
                     }
                 } catch (IOException e) {
                     throw new IOException2("Failed to load "+src+" to "+tmp,e);
+                } finally {
+                    job.downloadCompleted = System.currentTimeMillis();
                 }
 
                 in.close();
@@ -663,12 +689,29 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
                     throw new IOException("Inconsistent file length: expected "+total+" but only got "+tmp.length());
                 }
 
+                String expected = job.getExpectedSHA1();
+                if (expected!=null) {
+                    String actual = new String(Base64.encode(sha1.digest()));
+                    if (!expected.equals(actual)) {
+                        tmp.delete();
+                        throw new IOException("Downloaded file "+tmp+" does not match the expected SHA-1 checksum: expected "+expected+" but got "+actual);
+                    }
+                }
+
                 return tmp;
             } catch (IOException e) {
                 throw new IOException2("Failed to download from "+src,e);
             }
         }
 
+        private MessageDigest getSHA1() throws IOException {
+            try {
+                return MessageDigest.getInstance("SHA1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException2(e);
+            }
+        }
+
         /**
          * Connects to the given URL for downloading the binary. Useful for tweaking
          * how the connection gets established.
@@ -964,6 +1007,49 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
          */
         protected abstract void onSuccess();
 
+        /**
+         * Gets the expected SHA-1 checksum of the downloaded file, in Base64.
+         *
+         * @return null if not known, in which case the checksum isn't verified.
+         * @since 1.475
+         */
+        protected String getExpectedSHA1() {
+            return null;
+        }
+
+        /**
+         * Download started by {@link #startDownload()} ahead of {@link #run()}. Null if the file is
+         * to be downloaded when the job runs.
+         */
+        private volatile Future<File> download;
+
+        /*package*/ volatile long downloadedBytes;
+        /*package*/ volatile long downloadStarted, downloadCompleted;
+
+        /**
+         * Number of bytes downloaded so far.
+         *
+         * @since 1.475
+         */
+        @Exported
+        public long getDownloadedBytes() {
+            return downloadedBytes;
+        }
+
+        /**
+         * Download speed in bytes per second, or 0 if the download hasn't started yet.
+         *
+         * @since 1.475
+         */
+        @Exported
+        public long getThroughput() {
+            long start = downloadStarted;
+            if (start==0)   return 0;
+            long end = downloadCompleted;
+            long elapsed = (end!=0 ? end : System.currentTimeMillis())-start;
+            return elapsed>0 ? downloadedBytes*1000/elapsed : 0;
+        }
+
 
         private Authentication authentication;
 
@@ -1000,15 +1086,61 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
         }
 
         protected void _run() throws IOException, InstallationStatus {
+            File dst = getDestination();
+            File tmp = download!=null ? awaitDownload() : download();
+
+            config.install(this, tmp, dst);
+        }
+
+        /**
+         * Downloads and validates the file.
+         *
+         * @return the downloaded file, to be installed.
+         */
+        private File download() throws IOException {
             URL src = getURL();
 
             config.preValidate(this, src);
 
-            File dst = getDestination();
             File tmp = config.download(this, src);
 
             config.postValidate(this, tmp);
-            config.install(this, tmp, dst);
+            return tmp;
+        }
+
+        /**
+         * Starts downloading the file on {@link UpdateCenter#downloadService}, so that it can proceed
+         * in parallel with other downloads while this job waits for its turn on {@link UpdateCenter#installerService}.
+         * Jobs are still installed one by one, in the order they are submitted.
+         */
+        protected void startDownload() {
+            if (DOWNLOAD_CONCURRENCY<=1)    return;
+            final SecurityContext context = SecurityContextHolder.getContext();
+            download = downloadService.submit(new Callable<File>() {
+                public File call() throws Exception {
+                    SecurityContextHolder.setContext(context);
+                    try {
+                        return download();
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }
+            });
+        }
+
+        private File awaitDownload() throws IOException {
+            try {
+                return download.get();
+            } catch (InterruptedException e) {
+                download.cancel(true);
+                throw new IOException2("Interrupted while downloading "+getName(),e);
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                if (t instanceof IOException)   throw (IOException)t;
+                if (t instanceof RuntimeException)  throw (RuntimeException)t;
+                if (t instanceof Error)     throw (Error)t;
+                throw new IOException2("Failed to download "+getName(),t);
+            }
         }
 
         /**
@@ -1138,6 +1270,20 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
             return new URL(plugin.url);
         }
 
+        @Override
+        protected String getExpectedSHA1() {
+            return plugin.sha1;
+        }
+
+        /**
+         * Starts downloading right away, as plugins are often installed in bulk.
+         */
+        @Override
+        public Future<UpdateCenterJob> submit() {
+            startDownload();
+            return super.submit();
+        }
+
         protected File getDestination() {
             File baseDir = pm.rootDir;
             return new File(baseDir, plugin.name + ".jpi");
@@ -1310,6 +1456,11 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
             return new URL(site.getData().core.url);
         }
 
+        @Override
+        protected String getExpectedSHA1() {
+            return site.getData().core.sha1;
+        }
+
         protected File getDestination() {
             return Lifecycle.get().getHudsonWar();
         }
@@ -1413,6 +1564,14 @@ public class UpdateCenter extends AbstractModelObject implements Saveable {
      */
     private static final AtomicInteger iota = new AtomicInteger();
 
+    /**
+     * Maximum number of files downloaded at the same time. 1 or less to download each file when it's
+     * its turn to be installed.
+     *
+     * @since 1.475
+     */
+    public static int DOWNLOAD_CONCURRENCY = Integer.getInteger(UpdateCenter.class.getName()+".downloadConcurrency",4);
+
     private static final Logger LOGGER = Logger.getLogger(UpdateCenter.class.getName());
 
     /**
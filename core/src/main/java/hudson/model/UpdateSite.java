@@ -28,6 +28,7 @@ package hudson.model;
 import com.trilead.ssh2.crypto.Base64;
 import hudson.PluginManager;
 import hudson.PluginWrapper;
+import hudson.Util;
 import hudson.lifecycle.Lifecycle;
 import hudson.model.UpdateCenter.UpdateCenterJob;
 import hudson.util.FormValidation;
@@ -558,12 +559,20 @@ public class UpdateSite {
          */
         @Exported
         public final String url;
+        /**
+         * Base64-encoded SHA-1 checksum of the file at {@link #url}, or null if the update site doesn't provide one.
+         *
+         * @since 1.475
+         */
+        @Exported
+        public final String sha1;
 
         public Entry(String sourceId, JSONObject o) {
             this.sourceId = sourceId;
             this.name = o.getString("name");
             this.version = o.getString("version");
             this.url = o.getString("url");
+            this.sha1 = Util.fixEmpty(o.optString("sha1"));
         }
 
         /**
@@ -40,6 +40,7 @@ import hudson.security.SecurityRealm;
 import hudson.util.RunList;
 import hudson.util.XStream2;
 import jenkins.model.Jenkins;
+import jenkins.security.UserDetailsCache;
 import net.sf.json.JSONObject;
 
 import org.acegisecurity.Authentication;
@@ -252,7 +253,7 @@ public class User extends AbstractModelObject implements AccessControlled, Descr
      */
     public Authentication impersonate() {
         try {
-            UserDetails u = Jenkins.getInstance().getSecurityRealm().loadUserByUsername(id);
+            UserDetails u = UserDetailsCache.get().loadUserByUsername(id);
             return new UsernamePasswordAuthenticationToken(u.getUsername(), "", u.getAuthorities());
         } catch (AuthenticationException e) {
             // TODO: use the stored GrantedAuthorities
@@ -317,6 +318,29 @@ public class User extends AbstractModelObject implements AccessControlled, Descr
         return get(idOrFullName,true);
     }
 
+    /**
+     * Gets the {@link User} object by its {@link #getId() id}, such as one recorded earlier,
+     * without treating it as a name to be turned into an id.
+     *
+     * @param create
+     *      If false, this method returns null if the user doesn't exist.
+     * @since 1.475
+     */
+    public static User getById(String id, boolean create) {
+        if(id==null)
+            return null;
+        String idkey = id.toLowerCase(Locale.ENGLISH);
+
+        User u = byName.get(idkey);
+        if(u==null && (create || getConfigFileFor(id).exists())) {
+            User tmp = new User(id, id);
+            User prev = byName.putIfAbsent(idkey, u = tmp);
+            if (prev!=null)
+                u = prev;
+        }
+        return u;
+    }
+
     /**
      * Gets the {@link User} object representing the currently logged-in user, or null
      * if the current user is anonymous.
@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.User;
+import hudson.util.XStream2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SCM-independent digest of a {@link ChangeLogSet}, kept next to <tt>changelog.xml</tt>,
+ * so that the authors, messages and affected paths of a build can be looked at without
+ * asking the {@link ChangeLogParser} to parse the change log again.
+ *
+ * <p>
+ * This is what {@link AbstractBuild#getCulprits()} and {@link AbstractBuild#hasParticipant(User)}
+ * (and thus {@link User#getBuilds()}) use. The {@link ChangeLogSet} itself is still
+ * used to render the changes.
+ *
+ * @see AbstractBuild#getChangeLogSummary()
+ * @since 1.475
+ */
+public final class ChangeLogSummary {
+    /**
+     * Digest of a {@link ChangeLogSet.Entry}.
+     */
+    public static final class Entry {
+        /**
+         * {@link User#getId()} of the author, or null if the author couldn't be determined.
+         */
+        public final String author;
+        /**
+         * @see ChangeLogSet.Entry#getCommitId()
+         */
+        public final String commitId;
+        /**
+         * @see ChangeLogSet.Entry#getTimestamp()
+         */
+        public final long timestamp;
+        public final String msg;
+        private final List<String> paths;
+
+        public Entry(String author, String commitId, long timestamp, String msg, Collection<String> paths) {
+            this.author = author;
+            this.commitId = commitId;
+            this.timestamp = timestamp;
+            this.msg = msg;
+            this.paths = new ArrayList<String>(paths);
+        }
+
+        /**
+         * @see ChangeLogSet.Entry#getAffectedPaths()
+         */
+        public List<String> getAffectedPaths() {
+            return Collections.unmodifiableList(paths);
+        }
+    }
+
+    private final List<Entry> entries;
+
+    public ChangeLogSummary(List<Entry> entries) {
+        this.entries = new ArrayList<Entry>(entries);
+    }
+
+    /**
+     * Entries in the same order as the {@link ChangeLogSet}.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * IDs of the users who made the changes, without duplicates.
+     */
+    public Set<String> getAuthorIds() {
+        Set<String> r = new LinkedHashSet<String>();
+        for (Entry e : entries)
+            if (e.author!=null)
+                r.add(e.author);
+        return r;
+    }
+
+    public boolean hasAuthor(String id) {
+        for (Entry e : entries)
+            if (id.equals(e.author))
+                return true;
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Computes the summary of the given change log.
+     */
+    public static ChangeLogSummary of(ChangeLogSet<? extends ChangeLogSet.Entry> cs) {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (ChangeLogSet.Entry e : cs) {
+            String author = null;
+            try {
+                author = e.getAuthor().getId();
+            } catch (RuntimeException x) {
+                // some SCMs fail to determine the committer. same treatment as AbstractBuild.hasParticipant
+            }
+            Collection<String> paths;
+            try {
+                paths = e.getAffectedPaths();
+            } catch (RuntimeException x) {
+                paths = null;
+            }
+            entries.add(new Entry(author, e.getCommitId(), e.getTimestamp(), e.getMsg(),
+                    paths!=null ? paths : Collections.<String>emptyList()));
+        }
+        return new ChangeLogSummary(entries);
+    }
+
+    /**
+     * Loads the summary of the given build.
+     *
+     * @return null if the summary hasn't been written, or if it failed to load.
+     */
+    public static ChangeLogSummary load(AbstractBuild<?,?> build) {
+        XmlFile f = getFile(build);
+        if (!f.exists())    return null;
+        try {
+            return (ChangeLogSummary)f.read();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load "+f, e);
+            return null;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load "+f, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the summary of the given build has been written.
+     */
+    public static boolean exists(AbstractBuild<?,?> build) {
+        return getFile(build).exists();
+    }
+
+    public void save(AbstractBuild<?,?> build) {
+        XmlFile f = getFile(build);
+        try {
+            f.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save "+f, e);
+        }
+    }
+
+    private static XmlFile getFile(AbstractBuild<?,?> build) {
+        return new XmlFile(XSTREAM, new File(build.getRootDir(),"changelogSummary.xml"));
+    }
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("changelogSummary",ChangeLogSummary.class);
+        XSTREAM.alias("entry",Entry.class);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeLogSummary.class.getName());
+}
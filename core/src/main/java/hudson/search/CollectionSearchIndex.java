@@ -51,20 +51,39 @@ public abstract class CollectionSearchIndex<SMT extends SearchableModelObject> i
     }
 
     public void suggest(String token, List<SearchItem> result) {
-         Collection<SMT> items = all();
-        if(UserSearchProperty.isCaseInsensitive()){ 
+        boolean caseInsensitive = UserSearchProperty.isCaseInsensitive();
+        if(caseInsensitive){
           token = token.toLowerCase();
         }
+        Collection<SMT> items = candidates(token);
         if(items==null)     return;
         for (SMT o : items) {
+            if(o==null)     continue;
             String name = getName(o);
-            if(UserSearchProperty.isCaseInsensitive())
+            if(caseInsensitive)
                 name=name.toLowerCase();
-            if(o!=null && name.contains(token))
+            if(name.contains(token))
                 result.add(o);
         }
     }
 
+    /**
+     * Returns the items that need to be checked against the given token in {@link #suggest(String, List)}.
+     *
+     * <p>
+     * This defaults to {@link #all()}. Subtypes that maintain a {@link TrigramIndex} of their
+     * items can override this to narrow down the candidates.
+     *
+     * @param token
+     *      The token being searched, lower-cased if the search is case-insensitive.
+     * @return
+     *      The collection can include null items and items that don't actually match.
+     * @since 1.475
+     */
+    protected Collection<SMT> candidates(String token) {
+        return all();
+    }
+
     protected String getName(SMT o) {
         return o.getDisplayName();
     }
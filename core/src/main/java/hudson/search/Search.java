@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -127,10 +128,20 @@ public class Search {
      *      a certain threshold to avoid showing too many options. 
      */
     public List<SuggestedItem> getSuggestions(StaplerRequest req, String query) {
+        SearchIndex index = makeSuggestIndex(req);
+        // only rank as many as we need, plus some slack for duplicates
+        List<SuggestedItem> candidates = suggest(index, query, MAX_SUGGESTIONS*4);
+        List<SuggestedItem> r = pickSuggestions(candidates);
+        if (r.size()<=MAX_SUGGESTIONS && candidates.size()==MAX_SUGGESTIONS*4)
+            r = pickSuggestions(suggest(index, query)); // too many duplicates. rank everything
+        return r;
+    }
+
+    private List<SuggestedItem> pickSuggestions(List<SuggestedItem> candidates) {
         Set<String> paths = new HashSet<String>();  // paths already added, to control duplicates
         List<SuggestedItem> r = new ArrayList<SuggestedItem>();
-        for (SuggestedItem i : suggest(makeSuggestIndex(req), query)) {
-            if(r.size()>20) break;
+        for (SuggestedItem i : candidates) {
+            if(r.size()>MAX_SUGGESTIONS) break;
             if(paths.add(i.getPath()))
                 r.add(i);
         }
@@ -230,34 +241,74 @@ public class Search {
     }
 
     public static List<SuggestedItem> suggest(SearchIndex index, final String tokenList) {
+        return suggest(index, tokenList, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the suggestions for the given query, and returns the best ones in the order of relevance.
+     *
+     * <p>
+     * Computing the edit distance is the expensive part of the ranking, so it is skipped for items
+     * that can't possibly make it into the top {@code limit} items.
+     *
+     * @param limit
+     *      Maximum number of items to return.
+     * @since 1.475
+     */
+    public static List<SuggestedItem> suggest(SearchIndex index, final String tokenList, int limit) {
 
         class Tag implements Comparable<Tag>{
             final SuggestedItem item;
             final int distance;
             /** If the path to this suggestion starts with the token list, 1. Otherwise 0. */
             final int prefixMatch;
+            /** Position in the original list, so that the ties retain the original order. */
+            final int index;
 
-            Tag(SuggestedItem i) {
+            Tag(SuggestedItem i, int prefixMatch, int distance, int index) {
                 item = i;
-                distance = EditDistance.editDistance(i.getPath(),tokenList);
-                prefixMatch = i.getPath().startsWith(tokenList)?1:0;
+                this.distance = distance;
+                this.prefixMatch = prefixMatch;
+                this.index = index;
             }
 
             public int compareTo(Tag that) {
                 int r = this.prefixMatch -that.prefixMatch;
                 if(r!=0)    return -r;  // ones with head match should show up earlier
-                return this.distance-that.distance;
+                r = this.distance-that.distance;
+                if(r!=0)    return r;
+                return this.index-that.index;
             }
         }
 
-        List<Tag> buf = new ArrayList<Tag>();
         List<SuggestedItem> items = find(Mode.SUGGEST, index, tokenList);
+        if (limit<=0)   return new ArrayList<SuggestedItem>();
+
+        // keep the best 'limit' items, with the worst one at the head
+        PriorityQueue<Tag> best = new PriorityQueue<Tag>(Math.min(items.size(),limit)+1, Collections.reverseOrder());
+        int n=0;
+        for (SuggestedItem i : items) {
+            String path = i.getPath();
+            int prefixMatch = path.startsWith(tokenList)?1:0;
+            if (best.size()>=limit) {
+                // the edit distance is at least the difference in length.
+                // if that's already worse than the worst we are keeping, don't bother.
+                Tag worst = best.peek();
+                Tag bound = new Tag(i, prefixMatch, Math.abs(path.length()-tokenList.length()), n);
+                if (bound.compareTo(worst)>0) {
+                    n++;
+                    continue;
+                }
+            }
+            best.add(new Tag(i, prefixMatch, EditDistance.editDistance(path,tokenList), n++));
+            if (best.size()>limit)
+                best.poll();
+        }
 
         // sort them
-        for( SuggestedItem i : items)
-            buf.add(new Tag(i));
+        List<Tag> buf = new ArrayList<Tag>(best);
         Collections.sort(buf);
-        items.clear();
+        items = new ArrayList<SuggestedItem>(buf.size());
         for (Tag t : buf)
             items.add(t.item);
 
@@ -329,7 +380,8 @@ public class Search {
             m.find(index,token,items);
             for (SearchItem si : items) {
                 paths[w].add(new SuggestedItem(si));
-                LOGGER.info("found search item:" + si.getSearchName());
+                if(LOGGER.isLoggable(Level.FINER))
+                    LOGGER.finer("found search item:" + si.getSearchName());
             }
             w++;
         }
@@ -353,5 +405,10 @@ public class Search {
         return paths[tokens.length()];
     }
     
+    /**
+     * Suggestions beyond this are not shown in the search box.
+     */
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final static Logger LOGGER = Logger.getLogger(Search.class.getName());
 }
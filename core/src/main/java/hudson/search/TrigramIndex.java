@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Incrementally maintained index from names to objects, for finding objects
+ * whose names contain a given substring without looking at every single object.
+ *
+ * <p>
+ * Every three-character substring of a name is mapped to the objects that have it,
+ * so a query of three characters or more only needs to look at the objects that
+ * have all the trigrams of the query. Matching is case-insensitive, so callers
+ * that want case-sensitive matching need to check the returned objects again.
+ *
+ * @param <T>
+ *      Type of the indexed objects. Needs to be usable as a {@link HashMap} key.
+ * @see CollectionSearchIndex#candidates(String)
+ * @since 1.475
+ */
+public final class TrigramIndex<T> {
+    /**
+     * Normalized name of each indexed object.
+     */
+    private final Map<T,String> names = new HashMap<T,String>();
+
+    /**
+     * Trigram to the objects whose names contain it.
+     */
+    private final Map<String,Set<T>> grams = new HashMap<String,Set<T>>();
+
+    /**
+     * Adds the object to the index, or updates its name if it's already in the index.
+     */
+    public synchronized void put(T o, String name) {
+        remove(o);
+        name = normalize(name);
+        names.put(o,name);
+        for (int i=0; i+3<=name.length(); i++) {
+            String g = name.substring(i,i+3);
+            Set<T> s = grams.get(g);
+            if (s==null)
+                grams.put(g,s=new HashSet<T>());
+            s.add(o);
+        }
+    }
+
+    public synchronized void remove(T o) {
+        String name = names.remove(o);
+        if (name==null)     return;
+        for (int i=0; i+3<=name.length(); i++) {
+            String g = name.substring(i,i+3);
+            Set<T> s = grams.get(g);
+            if (s!=null) {
+                s.remove(o);
+                if (s.isEmpty())
+                    grams.remove(g);
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole content of the index.
+     */
+    public synchronized void reset(Map<? extends T,String> objects) {
+        names.clear();
+        grams.clear();
+        for (Entry<? extends T,String> e : objects.entrySet())
+            put(e.getKey(),e.getValue());
+    }
+
+    /**
+     * Returns the objects whose names contain the given token, ignoring the case.
+     */
+    public synchronized List<T> candidates(String token) {
+        token = normalize(token);
+
+        Set<T> smallest = null;
+        if (token.length()>=3) {
+            // narrow down by the rarest trigram of the token
+            for (int i=0; i+3<=token.length(); i++) {
+                Set<T> s = grams.get(token.substring(i,i+3));
+                if (s==null)    return Collections.emptyList();
+                if (smallest==null || s.size()<smallest.size())
+                    smallest = s;
+            }
+        }
+
+        List<T> r = new ArrayList<T>();
+        for (T o : smallest!=null ? smallest : names.keySet()) {
+            if (names.get(o).contains(token))
+                r.add(o);
+        }
+        return r;
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    private static String normalize(String name) {
+        return name!=null ? name.toLowerCase() : "";
+    }
+}
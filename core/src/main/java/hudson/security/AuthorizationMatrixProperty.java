@@ -83,6 +83,17 @@ public class AuthorizationMatrixProperty extends JobProperty<Job<?, ?>> {
 
 	private Set<String> sids = new HashSet<String>();
 
+    /**
+     * {@link #grantedPermissions} compiled for quick checks.
+     */
+    private transient CompiledPermissionMatrix compiled;
+
+    /**
+     * The last ACL returned from {@link #getInheritingACL(SidACL)} and its parent, so that repeated permission checks
+     * on the same job get the same ACL, which lets {@link SidACL} cache the results.
+     */
+    private transient volatile SidACL[] inheriting;
+
     private AuthorizationMatrixProperty() {
     }
 
@@ -133,8 +144,16 @@ public class AuthorizationMatrixProperty extends JobProperty<Job<?, ?>> {
 			grantedPermissions.put(p, set = new HashSet<String>());
 		set.add(sid);
 		sids.add(sid);
+		getCompiled().invalidate();
 	}
 
+    private CompiledPermissionMatrix getCompiled() {
+        // transient fields are not initialized when instantiated by XStream
+        if (compiled==null)
+            compiled = new CompiledPermissionMatrix(grantedPermissions,false);
+        return compiled;
+    }
+
     @Extension
     public static class DescriptorImpl extends JobPropertyDescriptor {
 		@Override
@@ -200,16 +219,26 @@ public class AuthorizationMatrixProperty extends JobProperty<Job<?, ?>> {
 		return acl;
 	}
 
+    /**
+     * Works like <tt>getACL().newInheritingACL(parent)</tt>, except that it returns the same instance
+     * as long as the parent stays the same.
+     *
+     * @since 1.475
+     */
+    public SidACL getInheritingACL(SidACL parent) {
+        SidACL[] pair = inheriting;
+        if (pair==null || pair[0]!=parent) {
+            pair = new SidACL[] {parent, getACL().newInheritingACL(parent)};
+            inheriting = pair;
+        }
+        return pair[1];
+    }
+
 	/**
 	 * Checks if the given SID has the given permission.
 	 */
 	public boolean hasPermission(String sid, Permission p) {
-		for (; p != null; p = p.impliedBy) {
-			Set<String> set = grantedPermissions.get(p);
-			if (set != null && set.contains(sid))
-				return true;
-		}
-		return false;
+		return getCompiled().hasPermission(sid,p);
 	}
 
     /**
@@ -278,8 +307,10 @@ public class AuthorizationMatrixProperty extends JobProperty<Job<?, ?>> {
                 reader.moveUp();
             }
 
-            if (GlobalMatrixAuthorizationStrategy.migrateHudson2324(as.grantedPermissions))
+            if (GlobalMatrixAuthorizationStrategy.migrateHudson2324(as.grantedPermissions)) {
+                as.getCompiled().invalidate();
                 OldDataMonitor.report(context, "1.301");
+            }
 
             return as;
         }
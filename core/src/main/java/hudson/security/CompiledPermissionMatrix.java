@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.security;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Permission matrix (a map from {@link Permission}s to the sids that are granted them) with
+ * {@link Permission#impliedBy} expanded, so that checking a permission is a single lookup
+ * instead of walking the implication chain and looking up every permission along the way.
+ *
+ * <p>
+ * The expansion of each permission is computed the first time it's checked,
+ * and discarded when the matrix is modified or when a permission is enabled or disabled.
+ *
+ * @since 1.475
+ */
+final class CompiledPermissionMatrix {
+    private final Map<Permission,Set<String>> granted;
+
+    /**
+     * Whether only enabled permissions grant access, as {@link GlobalMatrixAuthorizationStrategy} does.
+     */
+    private final boolean enabledOnly;
+
+    /**
+     * Expansions computed so far, along with what they were computed for.
+     * Replaced as a whole rather than cleared, so that an expansion computed from the old state
+     * by a thread that's still running can only ever end up in the discarded map.
+     */
+    private volatile Expansion expansion = new Expansion(Permission.ENABLED_CHANGES.get());
+
+    private static final class Expansion {
+        /**
+         * {@link Permission#ENABLED_CHANGES} as of when this was created.
+         */
+        final int enabledChanges;
+        /**
+         * Permission to all the sids that have it, either directly or through implication.
+         */
+        final Map<Permission,Set<String>> sids = new ConcurrentHashMap<Permission,Set<String>>();
+
+        Expansion(int enabledChanges) {
+            this.enabledChanges = enabledChanges;
+        }
+    }
+
+    CompiledPermissionMatrix(Map<Permission,Set<String>> granted, boolean enabledOnly) {
+        this.granted = granted;
+        this.enabledOnly = enabledOnly;
+    }
+
+    boolean hasPermission(String sid, Permission p) {
+        Expansion e = expansion;
+        // Permission.setEnabled updates the permission before the counter, so whatever we compute
+        // after seeing the current count reflects at least that change
+        int changes = Permission.ENABLED_CHANGES.get();
+        if (changes!=e.enabledChanges)
+            expansion = e = new Expansion(changes);
+
+        Set<String> sids = e.sids.get(p);
+        if (sids==null)
+            e.sids.put(p,sids=expand(p));
+        return sids.contains(sid);
+    }
+
+    private Set<String> expand(Permission p) {
+        Set<String> r = null;
+        for (; p!=null; p=p.impliedBy) {
+            Set<String> s = granted.get(p);
+            if (s==null || s.isEmpty() || (enabledOnly && !p.getEnabled()))
+                continue;
+            if (r==null)    r = new HashSet<String>();
+            r.addAll(s);
+        }
+        return r!=null ? r : Collections.<String>emptySet();
+    }
+
+    /**
+     * Discards the expansion after the underlying matrix is modified.
+     */
+    void invalidate() {
+        expansion = new Expansion(Permission.ENABLED_CHANGES.get());
+    }
+}
@@ -82,6 +82,11 @@ public class GlobalMatrixAuthorizationStrategy extends AuthorizationStrategy {
 
     private final Set<String> sids = new HashSet<String>();
 
+    /**
+     * {@link #grantedPermissions} compiled for quick checks.
+     */
+    private transient CompiledPermissionMatrix compiled;
+
     /**
      * Adds to {@link #grantedPermissions}.
      * Use of this method should be limited during construction,
@@ -95,6 +100,14 @@ public class GlobalMatrixAuthorizationStrategy extends AuthorizationStrategy {
             grantedPermissions.put(p,set = new HashSet<String>());
         set.add(sid);
         sids.add(sid);
+        getCompiled().invalidate();
+    }
+
+    private CompiledPermissionMatrix getCompiled() {
+        // transient fields are not initialized when instantiated by XStream
+        if (compiled==null)
+            compiled = new CompiledPermissionMatrix(grantedPermissions,true);
+        return compiled;
     }
 
     /**
@@ -145,12 +158,7 @@ public class GlobalMatrixAuthorizationStrategy extends AuthorizationStrategy {
      * Checks if the given SID has the given permission.
      */
     public boolean hasPermission(String sid, Permission p) {
-        for(; p!=null; p=p.impliedBy) {
-            Set<String> set = grantedPermissions.get(p);
-            if(set!=null && set.contains(sid) && p.getEnabled())
-                return true;
-        }
-        return false;
+        return getCompiled().hasPermission(sid,p);
     }
 
     /**
@@ -232,8 +240,10 @@ public class GlobalMatrixAuthorizationStrategy extends AuthorizationStrategy {
                 reader.moveUp();
             }
 
-            if (migrateHudson2324(as.grantedPermissions))
+            if (migrateHudson2324(as.grantedPermissions)) {
+                as.getCompiled().invalidate();
                 OldDataMonitor.report(context, "1.301");
+            }
 
             return as;
         }
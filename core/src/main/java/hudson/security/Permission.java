@@ -33,6 +33,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jvnet.localizer.Localizable;
 
@@ -245,6 +246,7 @@ public final class Permission {
 
     public void setEnabled(boolean enable) {
         enabled = enable;
+        ENABLED_CHANGES.incrementAndGet();
     }
 
     public boolean getEnabled() {
@@ -267,6 +269,12 @@ public final class Permission {
 
     private static final List<Permission> ALL_VIEW = Collections.unmodifiableList(ALL);
 
+    /**
+     * Counts the calls to {@link #setEnabled(boolean)}, so that computations that depend on
+     * {@link #enabled} can tell when they need to be redone.
+     */
+    /*package*/ static final AtomicInteger ENABLED_CHANGES = new AtomicInteger();
+
 //
 //
 // Because of the initialization order issue, these two fields need to be defined here,
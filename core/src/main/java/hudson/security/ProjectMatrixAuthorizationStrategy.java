@@ -52,7 +52,7 @@ public class ProjectMatrixAuthorizationStrategy extends GlobalMatrixAuthorizatio
     public ACL getACL(Job<?,?> project) {
         AuthorizationMatrixProperty amp = project.getProperty(AuthorizationMatrixProperty.class);
         if (amp != null) {
-            return amp.getACL().newInheritingACL(getACL(project.getParent()));
+            return amp.getInheritingACL(getACL(project.getParent()));
         } else {
             return getACL(project.getParent());
         }
@@ -28,7 +28,12 @@ import org.acegisecurity.GrantedAuthority;
 import org.acegisecurity.acls.sid.PrincipalSid;
 import org.acegisecurity.acls.sid.GrantedAuthoritySid;
 import org.acegisecurity.acls.sid.Sid;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.FINER;
@@ -48,15 +53,74 @@ public abstract class SidACL extends ACL {
                 LOGGER.fine("hasPermission("+a+","+permission+")=>SYSTEM user has full access");
             return true;
         }
+
+        EffectivePermissions cache = EffectivePermissions.of(a);
+        if (cache!=null) {
+            Boolean cached = cache.get(this,permission);
+            if (cached!=null)   return cached;
+        }
+
         Boolean b = _hasPermission(a,permission);
 
         if(LOGGER.isLoggable(FINE))
             LOGGER.fine("hasPermission("+a+","+permission+")=>"+(b==null?"null, thus false":b));
 
         if(b==null) b=false;    // default to rejection
+        if (cache!=null)
+            cache.put(this,permission,b);
         return b;
     }
 
+    /**
+     * Results of the permission checks made during the current HTTP request.
+     *
+     * <p>
+     * Rendering a page can check the same permissions against the same {@link SidACL} many times over
+     * (think of a view with thousands of jobs), and each check goes through every {@link GrantedAuthority}
+     * of the user. So we remember the results for the rest of the request. ACLs are not supposed to change
+     * once created (a configuration change creates new ones), so the results are keyed by the ACL instance.
+     */
+    private static final class EffectivePermissions {
+        private final Authentication authentication;
+        private final Map<SidACL,Map<Permission,Boolean>> results = new IdentityHashMap<SidACL,Map<Permission,Boolean>>();
+
+        private EffectivePermissions(Authentication authentication) {
+            this.authentication = authentication;
+        }
+
+        synchronized Boolean get(SidACL acl, Permission p) {
+            Map<Permission,Boolean> m = results.get(acl);
+            return m!=null ? m.get(p) : null;
+        }
+
+        synchronized void put(SidACL acl, Permission p, Boolean b) {
+            Map<Permission,Boolean> m = results.get(acl);
+            if (m==null)
+                results.put(acl,m=new HashMap<Permission,Boolean>());
+            m.put(p,b);
+        }
+
+        /**
+         * Gets the cache of the current request for the given user.
+         *
+         * @return null if we are not processing a request.
+         */
+        static EffectivePermissions of(Authentication a) {
+            if (!CACHE_PER_REQUEST)     return null;
+            StaplerRequest req = Stapler.getCurrentRequest();
+            if (req==null)  return null;
+            Object o = req.getAttribute(KEY);
+            // the authentication can change in the middle of a request, as in ACL.impersonate
+            if (o instanceof EffectivePermissions && ((EffectivePermissions)o).authentication==a)
+                return (EffectivePermissions)o;
+            EffectivePermissions e = new EffectivePermissions(a);
+            req.setAttribute(KEY,e);
+            return e;
+        }
+
+        private static final String KEY = EffectivePermissions.class.getName();
+    }
+
     /**
      * Implementation that backs up {@link #hasPermission(Authentication, Permission)}.
      *
@@ -145,5 +209,10 @@ public abstract class SidACL extends ACL {
         };
     }
 
+    /**
+     * Set to false to disable the caching of permission checks within a request.
+     */
+    public static boolean CACHE_PER_REQUEST = !Boolean.getBoolean(SidACL.class.getName()+".disableCache");
+
     private static final Logger LOGGER = Logger.getLogger(SidACL.class.getName());
 }
@@ -27,7 +27,6 @@ import hudson.Functions;
 import hudson.model.*;
 import hudson.tasks.junit.CaseResult;
 import hudson.util.*;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
@@ -49,6 +48,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -202,19 +203,30 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
             return;
         }
 
-        if(req.checkIfModified(owner.getTimestamp(),rsp))
-            return;
-
-        ChartUtil.generateGraph(req,rsp,createChart(req,buildDataSet(req)),calcDefaultSize());
+        getTrendGraph(req).doPng(req,rsp);
     }
 
     /**
      * Generates a clickable map HTML for {@link #doGraph(StaplerRequest, StaplerResponse)}.
      */
     public void doGraphMap( StaplerRequest req, StaplerResponse rsp) throws IOException {
-        if(req.checkIfModified(owner.getTimestamp(),rsp))
-            return;
-        ChartUtil.generateClickableMap(req,rsp,createChart(req,buildDataSet(req)),calcDefaultSize());
+        getTrendGraph(req).doMap(req,rsp);
+    }
+
+    private Graph getTrendGraph(final StaplerRequest req) {
+        Area size = calcDefaultSize();
+        return new Graph(owner.getTimestamp(),size.width,size.height) {
+            protected JFreeChart createGraph() {
+                return createChart(req,buildDataSet(req,getTrendPoints()));
+            }
+
+            @Override
+            protected String getCacheKey() {
+                // everything that createChart and buildDataSet look at
+                return owner.getParent().getFullName()+'#'+owner.getNumber()+'/'+getUrlName()
+                        +'/'+Boolean.valueOf(req.getParameter("failureOnly"))+'/'+getRelPath(req);
+            }
+        };
     }
 
     /**
@@ -238,21 +250,64 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
             return new Area(500,200);
     }
     
-    private CategoryDataset buildDataSet(StaplerRequest req) {
+    private CategoryDataset buildDataSet(StaplerRequest req, Map<Integer,TestResultTrend.Point> points) {
         boolean failureOnly = Boolean.valueOf(req.getParameter("failureOnly"));
 
-        DataSetBuilder<String,NumberOnlyBuildLabel> dsb = new DataSetBuilder<String,NumberOnlyBuildLabel>();
+        DataSetBuilder<String,PointLabel> dsb = new DataSetBuilder<String,PointLabel>();
 
-        for( AbstractTestResultAction<?> a=this; a!=null; a=a.getPreviousResult(AbstractTestResultAction.class) ) {
-            dsb.add( a.getFailCount(), "failed", new NumberOnlyBuildLabel(a.owner));
+        // the previous builds are drawn from the recorded series alone, so that we don't have to load every build
+        for (TestResultTrend.Point pt : points.values()) {
+            PointLabel label = new PointLabel(pt);
+            dsb.add( pt.failed, "failed", label);
             if(!failureOnly) {
-                dsb.add( a.getSkipCount(), "skipped", new NumberOnlyBuildLabel(a.owner));
-                dsb.add( a.getTotalCount()-a.getFailCount()-a.getSkipCount(),"total", new NumberOnlyBuildLabel(a.owner));
+                dsb.add( pt.skipped, "skipped", label);
+                dsb.add( pt.total-pt.failed-pt.skipped,"total", label);
             }
         }
         return dsb.build();
     }
 
+    /**
+     * Column of the trend graph, which is a {@link TestResultTrend.Point} ordered by the build number.
+     */
+    private static final class PointLabel implements Comparable<PointLabel> {
+        private final TestResultTrend.Point pt;
+
+        PointLabel(TestResultTrend.Point pt) {
+            this.pt = pt;
+        }
+
+        public int compareTo(PointLabel that) {
+            return this.pt.number-that.pt.number;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PointLabel && ((PointLabel)o).pt.number==pt.number;
+        }
+
+        @Override
+        public int hashCode() {
+            return pt.number;
+        }
+
+        @Override
+        public String toString() {
+            return pt.displayName;
+        }
+    }
+
+    /**
+     * Gets the test result counts of this build and the earlier builds.
+     */
+    private SortedMap<Integer,TestResultTrend.Point> getTrendPoints() {
+        SortedMap<Integer,TestResultTrend.Point> points = new TreeMap<Integer,TestResultTrend.Point>(
+                TestResultTrend.of(owner.getProject()).getPoints().headMap(owner.getNumber()));
+        // this build might be still in progress, hence not recorded yet
+        points.put(owner.getNumber(), new TestResultTrend.Point(owner.getNumber(), getTotalCount(), getFailCount(), getSkipCount(), owner.getDuration(), owner.getDisplayName()));
+        return points;
+    }
+
     private JFreeChart createChart(StaplerRequest req,CategoryDataset dataset) {
 
         final String relPath = getRelPath(req);
@@ -301,21 +356,20 @@ public abstract class AbstractTestResultAction<T extends AbstractTestResultActio
         StackedAreaRenderer ar = new StackedAreaRenderer2() {
             @Override
             public String generateURL(CategoryDataset dataset, int row, int column) {
-                NumberOnlyBuildLabel label = (NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                return relPath+label.build.getNumber()+"/testReport/";
+                PointLabel label = (PointLabel) dataset.getColumnKey(column);
+                return relPath+label.pt.number+"/testReport/";
             }
 
             @Override
             public String generateToolTip(CategoryDataset dataset, int row, int column) {
-                NumberOnlyBuildLabel label = (NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                AbstractTestResultAction a = label.build.getAction(AbstractTestResultAction.class);
+                PointLabel label = (PointLabel) dataset.getColumnKey(column);
                 switch (row) {
                     case 0:
-                        return String.valueOf(Messages.AbstractTestResultAction_fail(label.build.getDisplayName(), a.getFailCount()));
+                        return String.valueOf(Messages.AbstractTestResultAction_fail(label.pt.displayName, label.pt.failed));
                     case 1:
-                        return String.valueOf(Messages.AbstractTestResultAction_skip(label.build.getDisplayName(), a.getSkipCount()));
+                        return String.valueOf(Messages.AbstractTestResultAction_skip(label.pt.displayName, label.pt.skipped));
                     default:
-                        return String.valueOf(Messages.AbstractTestResultAction_test(label.build.getDisplayName(), a.getTotalCount()));
+                        return String.valueOf(Messages.AbstractTestResultAction_test(label.pt.displayName, label.pt.total));
                 }
             }
         };
@@ -74,6 +74,17 @@ public class TestResultProjectAction implements Action {
     public AbstractTestResultAction getLastTestResultAction() {
         final AbstractBuild<?,?> tb = project.getLastSuccessfulBuild();
 
+        // the recorded series tells us which build to look at without walking the builds
+        TestResultTrend.Point last = TestResultTrend.of(project).getLast();
+        if (last!=null) {
+            int n = last.number;
+            if (tb!=null && n<tb.getNumber())
+                return null;    // even the last successful build didn't produce the test result
+            AbstractBuild<?,?> b = project.getBuildByNumber(n);
+            AbstractTestResultAction a = b!=null ? b.getTestResultAction() : null;
+            if (a!=null)    return a;
+        }
+
         AbstractBuild<?,?> b=project.getLastBuild();
         while(b!=null) {
             AbstractTestResultAction a = b.getTestResultAction();
@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.tasks.test;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.listeners.RunListener;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Test result counts of all the builds of a project, so that the trend can be drawn
+ * without going through every build and its {@link AbstractTestResultAction}.
+ *
+ * <p>
+ * The series is stored in the project directory as a text file, one line per build,
+ * and a line is appended whenever a build with test results completes. The file is created
+ * from the existing builds the first time the series of a project is needed.
+ *
+ * @since 1.475
+ */
+public final class TestResultTrend {
+    /**
+     * Test result counts of a single build.
+     */
+    public static final class Point {
+        public final int number;
+        public final int total;
+        public final int failed;
+        public final int skipped;
+        /**
+         * Duration of the build in milliseconds.
+         */
+        public final long duration;
+        /**
+         * {@link AbstractBuild#getDisplayName()} of the build at the time it was recorded,
+         * so that the trend can be labelled without loading the build.
+         */
+        public final String displayName;
+
+        public Point(int number, int total, int failed, int skipped, long duration, String displayName) {
+            this.number = number;
+            this.total = total;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.duration = duration;
+            // the name is the rest of the line in the file
+            this.displayName = displayName!=null ? displayName.replace('\n',' ').replace('\r',' ') : "#"+number;
+        }
+
+        public Point(int number, int total, int failed, int skipped, long duration) {
+            this(number, total, failed, skipped, duration, null);
+        }
+
+        Point(AbstractBuild<?,?> b, AbstractTestResultAction<?> a) {
+            this(b.getNumber(), a.getTotalCount(), a.getFailCount(), a.getSkipCount(), b.getDuration(), b.getDisplayName());
+        }
+
+        @Override
+        public String toString() {
+            return number+" "+total+" "+failed+" "+skipped+" "+duration+" "+displayName;
+        }
+
+        static Point parse(String line) {
+            String[] tokens = line.split(" ",6);
+            return new Point(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+                    Integer.parseInt(tokens[3]), Long.parseLong(tokens[4]), tokens.length>5 ? tokens[5] : null);
+        }
+    }
+
+    private final WeakReference<AbstractProject<?,?>> project;
+
+    /**
+     * Build number to its point. Null until loaded.
+     */
+    private SortedMap<Integer,Point> points;
+
+    private TestResultTrend(AbstractProject<?,?> project) {
+        this.project = new WeakReference<AbstractProject<?,?>>(project);
+    }
+
+    /**
+     * Gets a snapshot of all the recorded points, keyed by the build number.
+     */
+    public synchronized SortedMap<Integer,Point> getPoints() {
+        if (!ensureLoaded())    return new TreeMap<Integer,Point>();
+        return new TreeMap<Integer,Point>(points);
+    }
+
+    /**
+     * Gets the point of the last build that has test results.
+     *
+     * @return null if no build has test results.
+     */
+    public synchronized Point getLast() {
+        if (!ensureLoaded() || points.isEmpty())    return null;
+        return points.get(points.lastKey());
+    }
+
+    private boolean ensureLoaded() {
+        if (points==null) {
+            AbstractProject<?,?> p = project.get();
+            if (p==null)    return false;
+            points = load(p);
+        }
+        return true;
+    }
+
+    private SortedMap<Integer,Point> load(AbstractProject<?,?> p) {
+        SortedMap<Integer,Point> r = new TreeMap<Integer,Point>();
+        File f = getFile(p);
+        if (f.exists()) {
+            try {
+                BufferedReader in = new BufferedReader(new FileReader(f));
+                try {
+                    String line;
+                    while ((line=in.readLine())!=null) {
+                        if (line.length()==0)   continue;
+                        Point pt = Point.parse(line);
+                        r.put(pt.number,pt);
+                    }
+                    // builds deleted while the series wasn't loaded are still in the file
+                    if (r.keySet().retainAll(p._getRuns().keySet()))
+                        save(p,r);
+                    return r;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load "+f+". Recomputing", e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to load "+f+". Recomputing", e);
+            }
+            r.clear();
+        }
+
+        // compute the series from existing builds. this is the one time cost of looking at every build
+        for (AbstractBuild<?,?> b : p.getBuilds()) {
+            if (b.isBuilding())     continue;
+            AbstractTestResultAction<?> a = b.getAction(AbstractTestResultAction.class);
+            if (a!=null)
+                r.put(b.getNumber(), new Point(b,a));
+        }
+        save(p,r);
+        return r;
+    }
+
+    private synchronized void record(AbstractProject<?,?> p, Point pt) {
+        if (!ensureLoaded())    return;
+        points.put(pt.number,pt);
+        try {
+            Writer w = new OutputStreamWriter(new FileOutputStream(getFile(p),true),"UTF-8");
+            try {
+                w.write(pt.toString()+'\n');
+            } finally {
+                w.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to record the test result trend of "+p, e);
+        }
+    }
+
+    private synchronized void remove(AbstractProject<?,?> p, int number) {
+        if (points==null)   return; // nothing loaded yet. load() drops the points of deleted builds
+        if (points.remove(number)!=null)
+            save(p,points);
+    }
+
+    private void save(AbstractProject<?,?> p, SortedMap<Integer,Point> points) {
+        File f = getFile(p);
+        File tmp = new File(f.getPath()+".tmp");
+        try {
+            Writer w = new OutputStreamWriter(new FileOutputStream(tmp),"UTF-8");
+            try {
+                for (Point pt : points.values())
+                    w.write(pt.toString()+'\n');
+            } finally {
+                w.close();
+            }
+            f.delete();
+            if (!tmp.renameTo(f))
+                throw new IOException("Failed to rename "+tmp+" to "+f);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the test result trend of "+p, e);
+        }
+    }
+
+    private static File getFile(AbstractProject<?,?> p) {
+        return new File(p.getRootDir(),"testResultTrend.txt");
+    }
+
+    /**
+     * Gets the series of the given project.
+     */
+    public static TestResultTrend of(AbstractProject<?,?> p) {
+        synchronized (TRENDS) {
+            TestResultTrend t = TRENDS.get(p);
+            if (t==null)
+                TRENDS.put(p, t=new TestResultTrend(p));
+            return t;
+        }
+    }
+
+    private static final Map<AbstractProject<?,?>,TestResultTrend> TRENDS = new WeakHashMap<AbstractProject<?,?>,TestResultTrend>();
+
+    @Extension
+    public static class RunListenerImpl extends RunListener<AbstractBuild> {
+        public RunListenerImpl() {
+            super(AbstractBuild.class);
+        }
+
+        @Override
+        public void onFinalized(AbstractBuild r) {
+            AbstractTestResultAction<?> a = r.getAction(AbstractTestResultAction.class);
+            if (a!=null)
+                of(r.getProject()).record(r.getProject(), new Point(r,a));
+        }
+
+        @Override
+        public void onDeleted(AbstractBuild r) {
+            of(r.getProject()).remove(r.getProject(), r.getNumber());
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TestResultTrend.class.getName());
+}
@@ -26,6 +26,7 @@ package hudson.triggers;
 import antlr.ANTLRException;
 import hudson.Util;
 import hudson.Extension;
+import hudson.ParallelDependencyRunner;
 import hudson.console.AnnotatedLargeText;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
@@ -146,6 +147,20 @@ public class SCMTrigger extends Trigger<SCMedItem> {
          */
         public boolean synchronousPolling = false;
 
+        /**
+         * When {@link #synchronousPolling} is on, whether projects that don't depend on each other
+         * should be polled concurrently on the polling thread pool, instead of one by one.
+         * Upstream projects are still polled before their downstream projects.
+         *
+         * @since 1.475
+         */
+        public boolean parallelSynchronousPolling = false;
+
+        /**
+         * The latest round of {@link #parallelSynchronousPolling}.
+         */
+        /*package*/ transient volatile ParallelDependencyRunner lastParallelPolling;
+
         /**
          * Max number of threads for SCM polling.
          * 0 for unbounded.
@@ -165,6 +180,17 @@ public class SCMTrigger extends Trigger<SCMedItem> {
             return queue.getExecutors();
         }
 
+        /**
+         * Gets the latest round of {@link #parallelSynchronousPolling}, which tells
+         * how long it took and how many projects were polled concurrently.
+         *
+         * @return null if no such round has run yet.
+         * @since 1.475
+         */
+        public ParallelDependencyRunner getLastParallelPolling() {
+            return lastParallelPolling;
+        }
+
         /**
          * Returns true if the SCM polling thread queue has too many jobs
          * than it can handle.
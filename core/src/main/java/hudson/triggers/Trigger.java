@@ -29,6 +29,7 @@ import hudson.DependencyRunner.ProjectRunnable;
 import hudson.DescriptorExtensionList;
 import hudson.Extension;
 import hudson.ExtensionPoint;
+import hudson.ParallelDependencyRunner;
 import hudson.init.Initializer;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
@@ -57,6 +58,7 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Timer;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -227,21 +229,14 @@ public abstract class Trigger<J extends Item> implements Describable<Trigger<?>>
             LOGGER.fine("using synchronous polling");
 
             // Check that previous synchronous polling job is done to prevent piling up too many jobs
-            if (previousSynchronousPolling == null || previousSynchronousPolling.isDone()) {
+            if (scmd.parallelSynchronousPolling) {
+                startParallelPolling(scmd);
+            } else if (previousSynchronousPolling == null || previousSynchronousPolling.isDone()) {
                 // Process SCMTriggers in the order of dependencies. Note that the crontab spec expressed per-project is
                 // ignored, only the global setting is honored. The polling job is submitted only if the previous job has
                 // terminated.
                 // FIXME allow to set a global crontab spec
-                previousSynchronousPolling = scmd.getExecutor().submit(new DependencyRunner(new ProjectRunnable() {
-                    public void run(AbstractProject p) {
-                        for (Trigger t : (Collection<Trigger>) p.getTriggers().values()) {
-                            if (t instanceof SCMTrigger) {
-                                LOGGER.fine("synchronously triggering SCMTrigger for project " + t.job.getName());
-                                t.run();
-                            }
-                        }
-                    }
-                }));
+                previousSynchronousPolling = scmd.getExecutor().submit(new DependencyRunner(SCM_POLLER));
             } else {
                 LOGGER.fine("synchronous polling has detected unfinished jobs, will not trigger additional jobs.");
             }
@@ -268,6 +263,40 @@ public abstract class Trigger<J extends Item> implements Describable<Trigger<?>>
         }
     }
 
+    /**
+     * Like the synchronous polling, but polls projects that don't depend on each other concurrently.
+     */
+    private static void startParallelPolling(final SCMTrigger.DescriptorImpl scmd) {
+        ParallelDependencyRunner previous = scmd.lastParallelPolling;
+        if (previous != null && !previous.isDone()) {
+            LOGGER.fine("synchronous polling has detected unfinished jobs, will not trigger additional jobs.");
+            return;
+        }
+
+        ParallelDependencyRunner r = new ParallelDependencyRunner(SCM_POLLER, new Executor() {
+            public void execute(Runnable command) {
+                // look up the pool every time, as it's replaced when the thread count is changed
+                scmd.getExecutor().execute(command);
+            }
+        });
+        scmd.lastParallelPolling = r;
+        r.start();
+    }
+
+    /**
+     * Runs the {@link SCMTrigger}s of a project, for synchronous polling.
+     */
+    private static final ProjectRunnable SCM_POLLER = new ProjectRunnable() {
+        public void run(AbstractProject p) {
+            for (Trigger t : (Collection<Trigger>) p.getTriggers().values()) {
+                if (t instanceof SCMTrigger) {
+                    LOGGER.fine("synchronously triggering SCMTrigger for project " + t.job.getName());
+                    t.run();
+                }
+            }
+        }
+    };
+
     private static final Logger LOGGER = Logger.getLogger(Trigger.class.getName());
 
     /**
@@ -33,6 +33,10 @@ import javax.servlet.ServletOutputStream;
 import javax.imageio.ImageIO;
 import java.io.IOException;
 import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.awt.image.BufferedImage;
 import java.awt.*;
 
@@ -78,14 +82,86 @@ public abstract class Graph {
      */
     protected abstract JFreeChart createGraph();
 
-    private BufferedImage render(StaplerRequest req, ChartRenderingInfo info) {
+    /**
+     * Identifies this graph for the purpose of caching its rendering.
+     *
+     * <p>
+     * If this method returns non-null, the PNG image and the clickable map are rendered together
+     * in one pass, then kept in memory and served to all the requests for the same key, size, locale, and
+     * {@linkplain #Graph(long, int, int) timestamp}. So the key needs to capture everything that affects
+     * the chart other than those, such as the owner of the graph, the kind of the graph, and
+     * the request parameters that it looks at.
+     *
+     * @return
+     *      null to disable caching, which is the default. Graphs without a timestamp are never cached.
+     * @since 1.475
+     */
+    protected String getCacheKey() {
+        return null;
+    }
+
+    private int getWidth(StaplerRequest req) {
         String w = req.getParameter("width");
-        if(w==null)     w=String.valueOf(defaultW);
+        return w!=null ? Integer.parseInt(w) : defaultW;
+    }
+
+    private int getHeight(StaplerRequest req) {
         String h = req.getParameter("height");
-        if(h==null)     h=String.valueOf(defaultH);
+        return h!=null ? Integer.parseInt(h) : defaultH;
+    }
 
+    private BufferedImage render(StaplerRequest req, ChartRenderingInfo info) {
         if (graph==null)    graph = createGraph();
-        return graph.createBufferedImage(Integer.parseInt(w),Integer.parseInt(h),info);
+        return graph.createBufferedImage(getWidth(req),getHeight(req),info);
+    }
+
+    /**
+     * Finds the cached rendering, or renders the graph and caches it.
+     *
+     * @return null if this graph isn't cacheable.
+     */
+    private Rendering getRendering(StaplerRequest req) throws IOException {
+        String key = timestamp!=-1 ? getCacheKey() : null;
+        if (key==null || CACHE_SIZE<=0)     return null;
+
+        int w = getWidth(req), h = getHeight(req);
+        // charts contain localized text, so each language gets its own rendering
+        key = getClass().getName()+':'+key+':'+w+'x'+h+':'+req.getLocale();
+
+        Rendering r;
+        synchronized (CACHE) {
+            r = CACHE.get(key);
+            if (r==null || r.timestamp!=timestamp) {
+                if (r!=null && r.accounted)     cacheBytes -= r.size;
+                CACHE.put(key, r=new Rendering(timestamp));
+            }
+        }
+
+        synchronized (r) {
+            // if someone else is rendering the same graph, we wait for them instead of doing it again
+            if (r.png==null) {
+                cacheMisses.incrementAndGet();
+                ChartRenderingInfo info = new ChartRenderingInfo();
+                BufferedImage image = render(req,info);
+                ByteArrayOutputStream2 png = new ByteArrayOutputStream2();
+                ImageIO.write(image, "PNG", png);
+                r.map = ChartUtilities.getImageMap("map", info);
+                r.png = png.toByteArray();
+                r.size = r.png.length + r.map.length()*2;
+
+                synchronized (CACHE) {
+                    // if it has been replaced or evicted while we were rendering, it's not counted at all
+                    if (CACHE.get(key)==r) {
+                        r.accounted = true;
+                        cacheBytes += r.size;
+                        evict();
+                    }
+                }
+            } else {
+                cacheHits.incrementAndGet();
+            }
+        }
+        return r;
     }
 
     /**
@@ -95,10 +171,13 @@ public abstract class Graph {
         if (req.checkIfModified(timestamp, rsp)) return;
 
         try {
-            BufferedImage image = render(req,null);
+            Rendering r = getRendering(req);
             rsp.setContentType("image/png");
             ServletOutputStream os = rsp.getOutputStream();
-            ImageIO.write(image, "PNG", os);
+            if (r!=null)
+                os.write(r.png);
+            else
+                ImageIO.write(render(req,null), "PNG", os);
             os.close();
         } catch(Error e) {
             /* OpenJDK on ARM produces an error like this in case of headless error
@@ -148,10 +227,89 @@ public abstract class Graph {
     public void doMap(StaplerRequest req, StaplerResponse rsp) throws IOException {
         if (req.checkIfModified(timestamp, rsp)) return;
 
-        ChartRenderingInfo info = new ChartRenderingInfo();
-        render(req,info);
+        String map;
+        Rendering r = getRendering(req);
+        if (r!=null) {
+            map = r.map;
+        } else {
+            ChartRenderingInfo info = new ChartRenderingInfo();
+            render(req,info);
+            map = ChartUtilities.getImageMap( "map", info );
+        }
 
         rsp.setContentType("text/plain;charset=UTF-8");
-        rsp.getWriter().println(ChartUtilities.getImageMap( "map", info ));
+        rsp.getWriter().println(map);
+    }
+
+    /**
+     * Number of requests served from the rendering cache.
+     * @since 1.475
+     */
+    public static long getCacheHitCount() {
+        return cacheHits.get();
     }
+
+    /**
+     * Number of times a cacheable graph had to be rendered.
+     * @since 1.475
+     */
+    public static long getCacheMissCount() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * PNG image and clickable map of a graph, rendered in one pass.
+     */
+    private static final class Rendering {
+        final long timestamp;
+        volatile byte[] png;
+        volatile String map;
+        /**
+         * Approximate memory footprint in bytes.
+         */
+        long size;
+        /**
+         * True once {@link #size} is added to {@link Graph#cacheBytes}. Guarded by {@link Graph#CACHE}.
+         */
+        boolean accounted;
+
+        Rendering(long timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Removes the least recently used renderings until we are within {@link #CACHE_SIZE}.
+     */
+    private static void evict() {
+        Iterator<Rendering> itr = CACHE.values().iterator();
+        while (cacheBytes>CACHE_SIZE && itr.hasNext()) {
+            Rendering r = itr.next();
+            if (r.accounted)    cacheBytes -= r.size;
+            itr.remove();
+        }
+    }
+
+    /**
+     * Recently used renderings, in the access order. Guarded by itself, along with {@link #cacheBytes}.
+     */
+    private static final Map<String,Rendering> CACHE = new LinkedHashMap<String,Rendering>(16,0.75f,true);
+    private static long cacheBytes;
+
+    /**
+     * Number of bytes currently used by the cached renderings.
+     */
+    /*package*/ static long getCacheBytes() {
+        synchronized (CACHE) {
+            return cacheBytes;
+        }
+    }
+
+    private static final AtomicLong cacheHits = new AtomicLong();
+    private static final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Maximum number of bytes used by the cached renderings. 0 to disable the cache.
+     */
+    public static long CACHE_SIZE = Long.getLong(Graph.class.getName()+".cacheSize",16*1024*1024);
 }
@@ -25,36 +25,49 @@ package hudson.util;
 
 import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
 
 /**
  * Log {@link Handler} that stores the log records into a ring buffer.
  *
+ * <p>
+ * {@link #publish(LogRecord)} doesn't lock, so that threads logging at the same time don't contend with each other.
+ * In return, the view can miss a record that's being written at the same time.
+ *
  * @author Kohsuke Kawaguchi
  */
 public class RingBufferLogHandler extends Handler {
 
-    private int start = 0;
-    private final LogRecord[] records;
-    private volatile int size = 0;
+    private final AtomicReferenceArray<LogRecord> records;
+    /**
+     * Number of records ever published. The next record goes to <tt>count%records.length()</tt>.
+     */
+    private final AtomicLong count = new AtomicLong();
 
     public RingBufferLogHandler() {
         this(256);
     }
 
     public RingBufferLogHandler(int ringSize) {
-        records = new LogRecord[ringSize];
+        records = new AtomicReferenceArray<LogRecord>(ringSize);
+    }
+
+    public void publish(LogRecord record) {
+        long n = count.getAndIncrement();
+        records.set((int)(n%records.length()),record);
     }
 
-    public synchronized void publish(LogRecord record) {
-        int len = records.length;
-        records[(start+size)%len]=record;
-        if(size==len) {
-            start++;
-        } else {
-            size++;
-        }
+    /**
+     * Number of records published to this handler so far, including those that have already
+     * fallen off the ring buffer.
+     *
+     * @since 1.475
+     */
+    public long getPublishedCount() {
+        return count.get();
     }
 
     /**
@@ -67,13 +80,22 @@ public class RingBufferLogHandler extends Handler {
         return new AbstractList<LogRecord>() {
             public LogRecord get(int index) {
                 // flip the order
-                synchronized (RingBufferLogHandler.this) {
-                    return records[(start+(size-(index+1)))%records.length];
+                long n = count.get();
+                int len = records.length();
+                if (index<0 || index>=Math.min(n,len))
+                    throw new IndexOutOfBoundsException(String.valueOf(index));
+                int i = (int)((n-1-index)%len);
+                LogRecord r = records.get(i);
+                while (r==null) {
+                    // the slot is claimed but the record is not stored yet. it's only a matter of time
+                    Thread.yield();
+                    r = records.get(i);
                 }
+                return r;
             }
 
             public int size() {
-                return size;
+                return (int)Math.min(count.get(),records.length());
             }
         };
     }
@@ -44,14 +44,19 @@ import com.thoughtworks.xstream.mapper.CannotResolveClassException;
 import hudson.diagnosis.OldDataMonitor;
 import hudson.model.Saveable;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.WARNING;
@@ -73,11 +78,32 @@ public class RobustReflectionConverter implements Converter {
     protected final Mapper mapper;
     protected transient SerializationMethodInvoker serializationMethodInvoker;
     private transient ReflectionProvider pureJavaReflectionProvider;
+    /**
+     * Fields of each class by their names, as found by {@link ReflectionProvider#getFieldOrNull(Class, String)},
+     * with {@link #NO_SUCH_FIELD} for names that aren't fields.
+     *
+     * <p>
+     * Every element of every object being unmarshalled needs its field, so this saves
+     * repeated reflective lookups when thousands of records of the same classes are loaded.
+     * Only the reflection is cached, and not the decisions of {@link #mapper}, as mappers
+     * can be added later.
+     *
+     * <p>
+     * Converters live as long as {@link XStream2} instances held in static fields, so classes are
+     * only weakly referenced, like XStream's own {@code FieldDictionary} does, to let plugin class loaders go.
+     * The fields of a class refer back to it, hence the {@link SoftReference}.
+     */
+    private transient Map<Class,SoftReference<ConcurrentMap<String,Object>>> fields;
 
     public RobustReflectionConverter(Mapper mapper, ReflectionProvider reflectionProvider) {
         this.mapper = mapper;
         this.reflectionProvider = reflectionProvider;
         serializationMethodInvoker = new SerializationMethodInvoker();
+        fields = createFieldCache();
+    }
+
+    private static Map<Class,SoftReference<ConcurrentMap<String,Object>>> createFieldCache() {
+        return Collections.synchronizedMap(new WeakHashMap<Class,SoftReference<ConcurrentMap<String,Object>>>());
     }
 
     public boolean canConvert(Class type) {
@@ -194,9 +220,8 @@ public class RobustReflectionConverter implements Converter {
             String attrAlias = (String) it.next();
             String attrName = mapper.attributeForAlias(attrAlias);
             Class classDefiningField = determineWhichClassDefinesField(reader);
-            boolean fieldExistsInClass = fieldDefinedInClass(result, attrName);
-            if (fieldExistsInClass) {
-                Field field = reflectionProvider.getField(result.getClass(), attrName);
+            Field field = getFieldOrNull(result.getClass(), attrName);
+            if (field!=null) {
                 SingleValueConverter converter = mapper.getConverterFromAttribute(field.getDeclaringClass(),attrName,field.getType());
                 Class type = field.getType();
                 if (converter == null) {
@@ -225,15 +250,15 @@ public class RobustReflectionConverter implements Converter {
                 boolean implicitCollectionHasSameName = mapper.getImplicitCollectionDefForFieldName(result.getClass(), reader.getNodeName()) != null;
 
                 Class classDefiningField = determineWhichClassDefinesField(reader);
-                boolean fieldExistsInClass = !implicitCollectionHasSameName && fieldDefinedInClass(result,fieldName);
+                Field field = implicitCollectionHasSameName ? null : getFieldOrNull(result.getClass(),fieldName);
+                boolean fieldExistsInClass = field!=null;
 
-                Class type = determineType(reader, fieldExistsInClass, result, fieldName, classDefiningField);
+                Class type = determineType(reader, field, result, fieldName, classDefiningField);
                 final Object value;
                 if (fieldExistsInClass) {
-                    Field field = reflectionProvider.getField(result.getClass(),fieldName);
                     value = unmarshalField(context, result, type, field);
                     // TODO the reflection provider should have returned the proper field in first place ....
-                    Class definedType = reflectionProvider.getFieldType(result, fieldName, classDefiningField);
+                    Class definedType = getFieldType(field, result, fieldName, classDefiningField);
                     if (!definedType.isPrimitive()) {
                         type = definedType;
                     }
@@ -281,10 +306,31 @@ public class RobustReflectionConverter implements Converter {
         list.add(e);
     }
 
-    private boolean fieldDefinedInClass(Object result, String attrName) {
-        // during unmarshalling, unmarshal into transient fields like XStream 1.1.3
-        //boolean fieldExistsInClass = reflectionProvider.fieldDefinedInClass(attrName, result.getClass());
-        return reflectionProvider.getFieldOrNull(result.getClass(),attrName)!=null;
+    private Field getFieldOrNull(Class cls, String name) {
+        SoftReference<ConcurrentMap<String,Object>> ref = fields.get(cls);
+        ConcurrentMap<String,Object> m = ref!=null ? ref.get() : null;
+        if (m==null) {
+            // racing threads may each put their own map, which only costs a few extra lookups
+            m = new ConcurrentHashMap<String,Object>();
+            fields.put(cls,new SoftReference<ConcurrentMap<String,Object>>(m));
+        }
+        Object f = m.get(name);
+        if (f==null) {
+            // during unmarshalling, unmarshal into transient fields like XStream 1.1.3
+            f = reflectionProvider.getFieldOrNull(cls,name);
+            m.put(name, f!=null ? f : NO_SUCH_FIELD);
+        }
+        return f==NO_SUCH_FIELD ? null : (Field)f;
+    }
+
+    /**
+     * Same as {@link ReflectionProvider#getFieldType(Object, String, Class)}, except that
+     * the field we already know about is used when it's the one being asked for.
+     */
+    private Class getFieldType(Field field, Object result, String fieldName, Class definedIn) {
+        if (field!=null && definedIn==null)
+            return field.getType();
+        return reflectionProvider.getFieldType(result, fieldName, definedIn);
     }
 
     protected Object unmarshalField(final UnmarshallingContext context, final Object result, Class type, Field field) {
@@ -353,9 +399,9 @@ public class RobustReflectionConverter implements Converter {
 
     }
 
-    private Class determineType(HierarchicalStreamReader reader, boolean validField, Object result, String fieldName, Class definedInCls) {
+    private Class determineType(HierarchicalStreamReader reader, Field field, Object result, String fieldName, Class definedInCls) {
         String classAttribute = reader.getAttribute(mapper.aliasForAttribute("class"));
-        Class fieldType = reflectionProvider.getFieldType(result, fieldName, definedInCls);
+        Class fieldType = getFieldType(field, result, fieldName, definedInCls);
         if (classAttribute != null) {
             Class specifiedType = mapper.realClass(classAttribute);
             if(fieldType.isAssignableFrom(specifiedType))
@@ -363,7 +409,7 @@ public class RobustReflectionConverter implements Converter {
                 // this allows the code to evolve in more flexible way.
                 return specifiedType;
         }
-        if (!validField) {
+        if (field==null) {
             Class itemType = mapper.getItemTypeForItemFieldName(result.getClass(), fieldName);
             if (itemType != null) {
                 return itemType;
@@ -377,6 +423,7 @@ public class RobustReflectionConverter implements Converter {
 
     private Object readResolve() {
         serializationMethodInvoker = new SerializationMethodInvoker();
+        fields = createFieldCache();
         return this;
     }
 
@@ -387,5 +434,10 @@ public class RobustReflectionConverter implements Converter {
         }
     }
 
+    /**
+     * Marks names in {@link #fields} that aren't fields, as {@link ConcurrentHashMap} doesn't take null.
+     */
+    private static final Object NO_SUCH_FIELD = new Object();
+
     private static final Logger LOGGER = Logger.getLogger(RobustReflectionConverter.class.getName());
 }
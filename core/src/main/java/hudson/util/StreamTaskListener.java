@@ -24,6 +24,7 @@
 package hudson.util;
 
 import hudson.CloseProofOutputStream;
+import hudson.console.CoalescingOutputStream;
 import hudson.console.ConsoleNote;
 import hudson.console.HudsonExceptionNote;
 import hudson.model.TaskListener;
@@ -160,12 +161,18 @@ public class StreamTaskListener extends AbstractTaskListener implements Serializ
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.writeObject(new RemoteOutputStream(new CloseProofOutputStream(this.out)));
         out.writeObject(charset==null? null : charset.name());
+        out.writeBoolean(REMOTE_BUFFERING);
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        out = new PrintStream((OutputStream)in.readObject(),true);
+        OutputStream remote = (OutputStream)in.readObject();
         String name = (String)in.readObject();
         charset = name==null ? null : Charset.forName(name);
+        boolean buffering = in.readBoolean();
+        if (buffering)
+            remote = new CoalescingOutputStream(remote);
+        // flushing every line would defeat the buffering, which sends the data within its latency anyway
+        out = new PrintStream(remote,!buffering);
     }
 
     public void close() throws IOException {
@@ -187,5 +194,15 @@ public class StreamTaskListener extends AbstractTaskListener implements Serializ
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * If true, the console output written on the other side of the channel (such as on slaves) is
+     * buffered by {@link CoalescingOutputStream} before it's sent back, which reduces the number of
+     * remote calls. Off by default, as the output still in the buffer when a remote call returns
+     * can arrive after the master has moved on and written something else.
+     *
+     * @since 1.475
+     */
+    public static boolean REMOTE_BUFFERING = Boolean.getBoolean(StreamTaskListener.class.getName()+".remoteBuffering");
+
     private static final Logger LOGGER = Logger.getLogger(StreamTaskListener.class.getName());
 }
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util.xstream;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+import com.thoughtworks.xstream.io.xml.XppReader;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * {@link XppDriver} that reuses the XML pull parser among the documents read by the same thread,
+ * instead of allocating a new one with its buffers for every single document.
+ *
+ * <p>
+ * The parser goes back to the pool when {@link HierarchicalStreamReader#close()} is called,
+ * so callers need to close the reader once they are done with it. A reader that's not closed
+ * just means the next document gets a new parser. Parsers that grew their buffer beyond
+ * {@link #MAX_BUFFER_SIZE} for a large document are not kept.
+ *
+ * @since 1.475
+ */
+public class ReusingXppDriver extends XppDriver {
+    /**
+     * The parser available to the current thread, if any.
+     */
+    private final ThreadLocal<ReusableParser> pool = new ThreadLocal<ReusableParser>();
+
+    @Override
+    public HierarchicalStreamReader createReader(Reader xml) {
+        return new ReaderImpl(xml);
+    }
+
+    @Override
+    public HierarchicalStreamReader createReader(InputStream in) {
+        return createReader(new InputStreamReader(in));
+    }
+
+    private final class ReaderImpl extends XppReader {
+        /**
+         * Not initialized by an initializer, as this is set from the super constructor.
+         */
+        private ReusableParser parser;
+
+        ReaderImpl(Reader reader) {
+            super(reader, xmlFriendlyReplacer());
+        }
+
+        @Override
+        protected XmlPullParser createParser() {
+            parser = pool.get();
+            if (parser!=null)
+                pool.remove(); // documents read while reading this one get their own parser
+            else
+                parser = new ReusableParser();
+            return parser;
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                if (parser!=null && parser.isReusable()) {
+                    try {
+                        // drop the reference to the document we've just read
+                        parser.setInput(null);
+                        pool.set(parser);
+                    } catch (Exception e) {
+                        // just don't reuse it
+                    }
+                }
+                parser = null;
+            }
+        }
+    }
+
+    private static final class ReusableParser extends MXParser {
+        boolean isReusable() {
+            return buf.length<=MAX_BUFFER_SIZE;
+        }
+    }
+
+    /**
+     * Parsers whose buffer is bigger than this number of characters are discarded after use.
+     */
+    public static int MAX_BUFFER_SIZE = Integer.getInteger(ReusingXppDriver.class.getName()+".maxBufferSize",16*1024);
+}
@@ -32,6 +32,12 @@ public abstract class AgentProtocol implements ExtensionPoint {
 
     /**
      * Called by the connection handling thread to execute the protocol.
+     *
+     * <p>
+     * The socket comes with a read timeout of {@link TcpSlaveAgentListener#HANDSHAKE_TIMEOUT}, so that a client
+     * that stops talking in the middle of the handshake doesn't hold on to the thread. Protocols that keep
+     * the connection open afterward need to call {@link Socket#setSoTimeout(int) setSoTimeout(0)} once
+     * the handshake is complete.
      */
     public abstract void handle(Socket socket) throws IOException, InterruptedException;
 
@@ -115,6 +115,7 @@ import static hudson.Util.fixEmpty;
 import static hudson.Util.fixNull;
 import hudson.WebAppMain;
 import hudson.XmlFile;
+import hudson.XmlFileWriteQueue;
 import hudson.cli.CLICommand;
 import hudson.cli.CliEntryPoint;
 import hudson.cli.CliManagerImpl;
@@ -134,6 +135,7 @@ import hudson.scm.SCM;
 import hudson.search.CollectionSearchIndex;
 import hudson.search.SearchIndexBuilder;
 import hudson.search.SearchItem;
+import hudson.search.TrigramIndex;
 import hudson.security.ACL;
 import hudson.security.AccessControlled;
 import hudson.security.AuthorizationStrategy;
@@ -417,6 +419,13 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
      */
     /*package*/ transient final Map<String,TopLevelItem> items = new CopyOnWriteMap.Tree<String,TopLevelItem>(CaseInsensitiveComparator.INSTANCE);
 
+    /**
+     * Display names of {@link #items} and {@link #computers}, for search suggestions.
+     * Kept up to date by {@link SuggestIndexUpdater}.
+     */
+    /*package*/ transient final TrigramIndex<TopLevelItem> itemSuggestIndex = new TrigramIndex<TopLevelItem>();
+    /*package*/ transient final TrigramIndex<Computer> computerSuggestIndex = new TrigramIndex<Computer>();
+
     /**
      * The sole instance.
      */
@@ -753,7 +762,7 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
             final InitStrategy is = InitStrategy.get(Thread.currentThread().getContextClassLoader());
 
             Trigger.timer = new Timer("Jenkins cron thread");
-            queue = new Queue(CONSISTENT_HASH?LoadBalancer.CONSISTENT_HASH:LoadBalancer.DEFAULT);
+            queue = new Queue(LOAD_AWARE_BALANCING?LoadBalancer.LOAD_AWARE:CONSISTENT_HASH?LoadBalancer.CONSISTENT_HASH:LoadBalancer.DEFAULT);
 
             try {
                 dependencyGraph = DependencyGraph.EMPTY;
@@ -838,6 +847,7 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
             for (ItemListener l : ItemListener.all()) {
                 long itemListenerStart = System.currentTimeMillis();
                 l.onLoaded();
+                StartupProfile.recordTask("Item listener "+l.getClass().getName(),itemListenerStart);
                 if (LOG_STARTUP_PERFORMANCE)
                     LOGGER.info(String.format("Took %dms for item listener %s startup",
                             System.currentTimeMillis()-itemListenerStart,l.getClass().getName()));
@@ -858,6 +868,7 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
      *      If non-null, this can be consulted for ignoring some tasks. Only used during the initialization of Hudson.
      */
     private void executeReactor(final InitStrategy is, TaskBuilder... builders) throws IOException, InterruptedException, ReactorException {
+        StartupProfile.reset();
         Reactor reactor = new Reactor(builders) {
             /**
              * Sets the thread name to the task for better diagnostics.
@@ -873,8 +884,8 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
                 String name = t.getName();
                 if (taskName !=null)
                     t.setName(taskName);
+                long start = System.currentTimeMillis();
                 try {
-                    long start = System.currentTimeMillis();
                     super.runTask(task);
                     if(LOG_STARTUP_PERFORMANCE)
                         LOGGER.info(String.format("Took %dms for %s by %s",
@@ -882,6 +893,7 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
                 } finally {
                     t.setName(name);
                     SecurityContextHolder.clearContext();
+                    StartupProfile.recordTask(taskName,start);
                 }
             }
         };
@@ -890,6 +902,7 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
             @Override
             protected void onInitMilestoneAttained(InitMilestone milestone) {
                 initLevel = milestone;
+                StartupProfile.recordMilestone(milestone.toString());
             }
         }.run(reactor);
     }
@@ -1765,11 +1778,21 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
             .add(new CollectionSearchIndex<TopLevelItem>() {
                 protected SearchItem get(String key) { return getItem(key); }
                 protected Collection<TopLevelItem> all() { return getItems(); }
+                @Override
+                protected Collection<TopLevelItem> candidates(String token) {
+                    List<TopLevelItem> r = new ArrayList<TopLevelItem>();
+                    for (TopLevelItem item : itemSuggestIndex.candidates(token))
+                        if (item.hasPermission(Item.READ))
+                            r.add(item);
+                    return r;
+                }
             })
             .add(getPrimaryView().makeSearchIndex())
-            .add(new CollectionSearchIndex() {// for computers
+            .add(new CollectionSearchIndex<Computer>() {// for computers
                 protected Computer get(String key) { return getComputer(key); }
                 protected Collection<Computer> all() { return computers.values(); }
+                @Override
+                protected Collection<Computer> candidates(String token) { return computerSuggestIndex.candidates(token); }
             })
             .add(new CollectionSearchIndex() {// for users
                 protected User get(String key) { return User.get(key,false); }
@@ -2495,9 +2518,16 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
             });
         }
 
-        g.requires(JOB_LOADED).add("Finalizing set up",new Executable() {
+        // independent of the rest of the set up, so let it run in parallel
+        g.requires(JOB_LOADED).add("Computing the dependency graph",new Executable() {
             public void run(Reactor session) throws Exception {
                 rebuildDependencyGraph();
+            }
+        });
+
+        g.requires(JOB_LOADED).add("Finalizing set up",new Executable() {
+            public void run(Reactor session) throws Exception {
+                SuggestIndexUpdater.rebuildItems(Jenkins.this);
 
                 {// recompute label objects - populates the labels mapping.
                     for (Node slave : slaves)
@@ -2607,6 +2637,9 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
                 LOGGER.log(Level.WARNING, "Failed to shut down properly",e);
             }
 
+        // pending saves must not be lost
+        XmlFileWriteQueue.flushAll();
+
         LogFactory.releaseAll();
 
         theInstance = null;
@@ -3835,7 +3868,19 @@ public class Jenkins extends AbstractCIBase implements ModifiableItemGroup<TopLe
 
     public static boolean PARALLEL_LOAD = Configuration.getBooleanConfigParameter("parallelLoad", true);
     public static boolean KILL_AFTER_LOAD = Configuration.getBooleanConfigParameter("killAfterLoad", false);
+    /**
+     * Load the build records of the projects in the background once the start up is complete, instead of
+     * along with the projects. Build records of a project that's needed before then are loaded on the spot.
+     *
+     * @see StartupProfile#getBackgroundTasks()
+     * @since 1.475
+     */
+    public static boolean DEFERRED_BUILD_LOAD = Configuration.getBooleanConfigParameter("deferredBuildLoad", false);
     private static final boolean CONSISTENT_HASH = true; // Boolean.getBoolean(Hudson.class.getName()+".consistentHash");
+    /**
+     * Use {@link LoadBalancer#LOAD_AWARE} instead of the consistent hash.
+     */
+    private static final boolean LOAD_AWARE_BALANCING = Boolean.getBoolean(LoadBalancer.class.getName()+".loadAware");
     /**
      * Enabled by default as of 1.337. Will keep it for a while just in case we have some serious problems.
      */
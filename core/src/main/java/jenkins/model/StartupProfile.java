@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.model;
+
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Records how long each step of the start up took, so that slow start ups can be diagnosed.
+ *
+ * <p>
+ * This covers every task of the initialization reactor (such as loading a plugin, running an
+ * {@link hudson.init.Initializer}, or loading a job), the time at which each milestone is attained,
+ * and the work that continues in the background after the start up is complete.
+ * The profile is available at <tt>/startupProfile</tt> and through the remote API.
+ *
+ * @since 1.475
+ */
+@Extension @ExportedBean
+public class StartupProfile implements RootAction {
+    /**
+     * A timed step.
+     */
+    @ExportedBean(defaultVisibility=2)
+    public static final class Entry {
+        private final String name;
+        private final String thread;
+        private final long start;
+        private final long duration;
+
+        Entry(String name, String thread, long start, long duration) {
+            this.name = name;
+            this.thread = thread;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Name of the thread that ran the step.
+         */
+        @Exported
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * When the step started, in milliseconds since the beginning of the start up.
+         */
+        @Exported
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Milliseconds.
+         */
+        @Exported
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Startup Profile";
+    }
+
+    public String getUrlName() {
+        return "startupProfile";
+    }
+
+    public Api getApi() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        return new Api(this);
+    }
+
+    /**
+     * Reactor tasks, the slowest first.
+     */
+    @Exported
+    public List<Entry> getTasks() {
+        return sortByDuration(TASKS);
+    }
+
+    /**
+     * Milestones in the order they are attained. The duration is the time since the previous milestone.
+     */
+    @Exported
+    public List<Entry> getMilestones() {
+        synchronized (MILESTONES) {
+            return new ArrayList<Entry>(MILESTONES);
+        }
+    }
+
+    /**
+     * Work deferred to the background, the slowest first.
+     */
+    @Exported
+    public List<Entry> getBackgroundTasks() {
+        return sortByDuration(BACKGROUND_TASKS);
+    }
+
+    /**
+     * Milliseconds from the beginning of the start up to the last attained milestone.
+     */
+    @Exported
+    public long getTotalDuration() {
+        synchronized (MILESTONES) {
+            if (MILESTONES.isEmpty())   return 0;
+            return MILESTONES.get(MILESTONES.size()-1).start;
+        }
+    }
+
+    private static List<Entry> sortByDuration(List<Entry> entries) {
+        List<Entry> r;
+        synchronized (entries) {
+            r = new ArrayList<Entry>(entries);
+        }
+        Collections.sort(r,new Comparator<Entry>() {
+            public int compare(Entry o1, Entry o2) {
+                return o1.duration<o2.duration ? 1 : o1.duration>o2.duration ? -1 : 0;
+            }
+        });
+        return r;
+    }
+
+    private static volatile long startTime = System.currentTimeMillis();
+    private static final List<Entry> TASKS = new ArrayList<Entry>();
+    private static final List<Entry> MILESTONES = new ArrayList<Entry>();
+    private static final List<Entry> BACKGROUND_TASKS = new ArrayList<Entry>();
+
+    /**
+     * Discards the current profile and starts a new one. Called when the initialization begins.
+     */
+    static void reset() {
+        startTime = System.currentTimeMillis();
+        synchronized (TASKS) {
+            TASKS.clear();
+        }
+        synchronized (MILESTONES) {
+            MILESTONES.clear();
+        }
+        synchronized (BACKGROUND_TASKS) {
+            BACKGROUND_TASKS.clear();
+        }
+    }
+
+    /**
+     * Records a step of the start up.
+     *
+     * @param start
+     *      When the step started, as in {@link System#currentTimeMillis()}.
+     */
+    static void recordTask(String name, long start) {
+        record(TASKS,name,start);
+    }
+
+    static void recordMilestone(String name) {
+        long now = System.currentTimeMillis()-startTime;
+        synchronized (MILESTONES) {
+            long last = MILESTONES.isEmpty() ? 0 : MILESTONES.get(MILESTONES.size()-1).start;
+            MILESTONES.add(new Entry(name,Thread.currentThread().getName(),now,now-last));
+        }
+    }
+
+    /**
+     * Records the work done in the background once the start up is complete.
+     *
+     * @param start
+     *      When the work started, as in {@link System#currentTimeMillis()}.
+     */
+    public static void recordBackgroundTask(String name, long start) {
+        record(BACKGROUND_TASKS,name,start);
+    }
+
+    private static void record(List<Entry> entries, String name, long start) {
+        Entry e = new Entry(name,Thread.currentThread().getName(),start-startTime,System.currentTimeMillis()-start);
+        synchronized (entries) {
+            entries.add(e);
+        }
+    }
+}
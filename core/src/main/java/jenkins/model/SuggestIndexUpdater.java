@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.TopLevelItem;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.search.TrigramIndex;
+import hudson.slaves.ComputerListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps {@link Jenkins#itemSuggestIndex} and {@link Jenkins#computerSuggestIndex} in sync
+ * with the items and the computers.
+ *
+ * @since 1.475
+ */
+final class SuggestIndexUpdater {
+    private SuggestIndexUpdater() {}
+
+    /**
+     * Indexes all the top-level items from scratch. Called when the items are (re)loaded from the disk.
+     */
+    static void rebuildItems(Jenkins j) {
+        Map<TopLevelItem,String> names = new HashMap<TopLevelItem,String>();
+        for (TopLevelItem item : j.items.values())
+            names.put(item,item.getDisplayName());
+        j.itemSuggestIndex.reset(names);
+    }
+
+    private static void update(Item item) {
+        Jenkins j = Jenkins.getInstance();
+        if (j!=null && item instanceof TopLevelItem && item.getParent()==j)
+            j.itemSuggestIndex.put((TopLevelItem)item,item.getDisplayName());
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onCreated(Item item) {
+            update(item);
+        }
+
+        @Override
+        public void onCopied(Item src, Item item) {
+            update(item);
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            update(item);
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            update(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            Jenkins j = Jenkins.getInstance();
+            if (j!=null && item instanceof TopLevelItem)
+                j.itemSuggestIndex.remove((TopLevelItem)item);
+        }
+    }
+
+    /**
+     * The display name can change whenever the configuration is saved.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item)
+                update((Item)o);
+        }
+    }
+
+    /**
+     * Nodes are added and removed through {@link Jenkins#updateComputerList()}, which ends with this event.
+     */
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onConfigurationChange() {
+            Jenkins j = Jenkins.getInstance();
+            if (j==null)    return;
+            Map<Computer,String> names = new HashMap<Computer,String>();
+            for (Computer c : j.computers.values()) {
+                // the computer of a deleted node stays until its executors finish, but it's no longer searchable
+                if (c.getNode()!=null)
+                    names.put(c,c.getDisplayName());
+            }
+            j.computerSuggestIndex.reset(names);
+        }
+    }
+}
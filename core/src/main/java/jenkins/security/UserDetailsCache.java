@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.security;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.SecurityRealm;
+import jenkins.model.Jenkins;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.AuthenticationException;
+import org.acegisecurity.AuthenticationManager;
+import org.acegisecurity.BadCredentialsException;
+import org.acegisecurity.providers.UsernamePasswordAuthenticationToken;
+import org.acegisecurity.userdetails.UserDetails;
+import org.acegisecurity.userdetails.UsernameNotFoundException;
+import org.springframework.dao.DataAccessException;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the users looked up from the {@link SecurityRealm} and the results of
+ * the password authentications for a short while.
+ *
+ * <p>
+ * Scripted clients of the remote API authenticate every single request, with the API token
+ * (which looks up the user through {@link User#impersonate()}) or with the password (which goes
+ * through the {@link AuthenticationManager}). With realms like LDAP each of those is a round trip
+ * to the directory server, so we keep the results for {@link #TTL} seconds, up to {@link #MAX_SIZE} entries each.
+ * Failures are remembered as well, so that a misconfigured client doesn't hammer the directory server either,
+ * but errors in talking to the realm (such as {@link DataAccessException}) are not.
+ *
+ * <p>
+ * Password authentications are keyed by a salted hash of the password, so a different password
+ * is always checked against the realm. The cache is discarded when the security realm is changed,
+ * and the entries of a user are discarded when the user is saved (which is when a password
+ * stored in Jenkins would change.)
+ *
+ * @since 1.475
+ */
+public final class UserDetailsCache {
+    /**
+     * Security realm that the cached entries came from.
+     */
+    private SecurityRealm realm;
+
+    /**
+     * User name to the result of {@link SecurityRealm#loadUserByUsername(String)}.
+     */
+    private final Map<String,Entry> users = new Lru();
+
+    /**
+     * User name and the hash of the password to the result of the authentication.
+     */
+    private final Map<String,Entry> authentications = new Lru();
+
+    private final byte[] salt = new byte[16];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private UserDetailsCache() {
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Works like {@link SecurityRealm#loadUserByUsername(String)}, but can return a recent result.
+     */
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException, DataAccessException {
+        SecurityRealm r = Jenkins.getInstance().getSecurityRealm();
+        Entry e = lookup(users,r,username);
+        if (e!=null)
+            return (UserDetails)e.get();
+
+        try {
+            UserDetails u = r.loadUserByUsername(username);
+            store(users,r,username,new Entry(u,null));
+            return u;
+        } catch (UsernameNotFoundException x) {
+            store(users,r,username,new Entry(null,x));
+            throw x;
+        }
+    }
+
+    /**
+     * Authenticates with the given {@link AuthenticationManager}, unless the same user name and password
+     * has been authenticated recently.
+     */
+    public Authentication authenticate(AuthenticationManager manager, Authentication a) throws AuthenticationException {
+        if (a.getPrincipal()==null || !(a.getCredentials() instanceof String))
+            return manager.authenticate(a);     // not something we know how to cache
+
+        SecurityRealm r = Jenkins.getInstance().getSecurityRealm();
+        String key = a.getPrincipal()+":"+hash((String)a.getCredentials());
+        Entry e = lookup(authentications,r,key);
+        if (e!=null) {
+            // the details (such as the remote address) belong to the request, so don't hand out those of an earlier one
+            Authentication cached = (Authentication)e.get();
+            UsernamePasswordAuthenticationToken t = new UsernamePasswordAuthenticationToken(
+                    cached.getPrincipal(), a.getCredentials(), cached.getAuthorities());
+            t.setDetails(a.getDetails());
+            return t;
+        }
+
+        try {
+            Authentication result = manager.authenticate(a);
+            store(authentications,r,key,new Entry(result,null));
+            return result;
+        } catch (BadCredentialsException x) {
+            store(authentications,r,key,new Entry(null,x));
+            throw x;
+        }
+    }
+
+    /**
+     * Discards the cached entries of the given user.
+     */
+    public synchronized void invalidate(String username) {
+        users.remove(username);
+        String prefix = username+":";
+        for (Iterator<String> itr = authentications.keySet().iterator(); itr.hasNext();) {
+            if (itr.next().startsWith(prefix))
+                itr.remove();
+        }
+    }
+
+    /**
+     * Discards all the cached entries.
+     */
+    public synchronized void invalidateAll() {
+        users.clear();
+        authentications.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of hits that returned a cached failure.
+     */
+    public long getNegativeHitCount() {
+        return negativeHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Fraction of the lookups that were answered from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long h = hits.get(), m = misses.get();
+        return h+m>0 ? (double)h/(h+m) : 0;
+    }
+
+    private synchronized Entry lookup(Map<String,Entry> map, SecurityRealm r, String key) {
+        if (TTL<=0)     return null;
+        if (r!=realm) {
+            invalidateAll();
+            realm = r;
+        }
+        Entry e = map.get(key);
+        if (e!=null && e.expires-System.currentTimeMillis()<0) {
+            map.remove(key);
+            e = null;
+        }
+        if (e==null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            if (e.failure!=null)
+                negativeHits.incrementAndGet();
+        }
+        return e;
+    }
+
+    private synchronized void store(Map<String,Entry> map, SecurityRealm r, String key, Entry e) {
+        if (TTL<=0 || r!=realm)     return; // the realm has changed while we were talking to it
+        map.put(key,e);
+    }
+
+    private String hash(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            return Util.toHexString(md.digest(password.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final AuthenticationException failure;
+        private final long expires = System.currentTimeMillis()+TimeUnit.SECONDS.toMillis(TTL);
+
+        Entry(Object value, AuthenticationException failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        Object get() throws AuthenticationException {
+            if (failure!=null)  throw failure;
+            return value;
+        }
+    }
+
+    private static final class Lru extends LinkedHashMap<String,Entry> {
+        Lru() {
+            super(16,0.75f,true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest) {
+            return size()>MAX_SIZE;
+        }
+    }
+
+    public static UserDetailsCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Passwords and API tokens stored in Jenkins live in the user configuration,
+     * so forget what we know about a user when it's saved.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User)
+                INSTANCE.invalidate(((User)o).getId());
+        }
+    }
+
+    /**
+     * How long the entries are kept, in seconds. 0 to disable the cache.
+     */
+    public static int TTL = Integer.getInteger(UserDetailsCache.class.getName()+".ttl",120);
+
+    /**
+     * Maximum number of users and authentications to remember, each.
+     */
+    public static int MAX_SIZE = Integer.getInteger(UserDetailsCache.class.getName()+".maxSize",1024);
+
+    private static final UserDetailsCache INSTANCE = new UserDetailsCache();
+}
@@ -126,7 +126,12 @@ public class JnlpSlaveAgentProtocol extends AgentProtocol {
                             }
                         }
                     });
-                return computer.getChannel();
+                Channel channel = computer.getChannel();
+                // the channel is up, so the handshake timeout no longer applies. the round trip makes sure
+                // the reader thread isn't left in a read that was started with the timeout
+                socket.setSoTimeout(0);
+                channel.syncIO();
+                return channel;
             } catch (AbortException e) {
                 logw.println(e.getMessage());
                 logw.println("Failed to establish the connection with the slave");
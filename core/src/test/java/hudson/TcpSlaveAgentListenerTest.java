@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TcpSlaveAgentListenerTest {
+    private int threads, pending, timeout, rate;
+    private TcpSlaveAgentListener listener;
+
+    @Before
+    public void setUp() {
+        threads = TcpSlaveAgentListener.HANDSHAKE_THREADS;
+        pending = TcpSlaveAgentListener.MAX_PENDING_HANDSHAKES;
+        timeout = TcpSlaveAgentListener.HANDSHAKE_TIMEOUT;
+        rate = TcpSlaveAgentListener.MAX_ACCEPT_RATE;
+        TcpSlaveAgentListener.MAX_ACCEPT_RATE = 0;
+    }
+
+    @After
+    public void tearDown() {
+        if (listener!=null)
+            listener.shutdown();
+        TcpSlaveAgentListener.HANDSHAKE_THREADS = threads;
+        TcpSlaveAgentListener.MAX_PENDING_HANDSHAKES = pending;
+        TcpSlaveAgentListener.HANDSHAKE_TIMEOUT = timeout;
+        TcpSlaveAgentListener.MAX_ACCEPT_RATE = rate;
+    }
+
+    /**
+     * A client that never speaks is disconnected, and doesn't hold up the others for good.
+     */
+    @Test
+    public void silentClient() throws Exception {
+        TcpSlaveAgentListener.HANDSHAKE_THREADS = 1;
+        TcpSlaveAgentListener.HANDSHAKE_TIMEOUT = 500;
+        listener = new TcpSlaveAgentListener(0);
+
+        Socket silent = connect();
+        waitForAccepted(1);
+        Socket other = connect();
+        DataOutputStream out = new DataOutputStream(other.getOutputStream());
+        out.writeUTF("Hello");
+        out.flush();
+
+        long start = System.currentTimeMillis();
+        assertEquals(-1, silent.getInputStream().read());
+        assertTrue(System.currentTimeMillis()-start < 5000);
+
+        // once the silent client is gone, the other one gets its turn
+        BufferedReader in = new BufferedReader(new InputStreamReader(other.getInputStream()));
+        assertEquals("Unrecognized protocol: Hello", in.readLine());
+        silent.close();
+        other.close();
+    }
+
+    /**
+     * Connections beyond what the handshake queue can hold are closed right away.
+     */
+    @Test
+    public void queueOverflow() throws Exception {
+        TcpSlaveAgentListener.HANDSHAKE_THREADS = 1;
+        TcpSlaveAgentListener.MAX_PENDING_HANDSHAKES = 1;
+        TcpSlaveAgentListener.HANDSHAKE_TIMEOUT = 30*1000;
+        listener = new TcpSlaveAgentListener(0);
+
+        Socket handshaking = connect();
+        waitForAccepted(1);
+        Socket queued = connect();
+        waitForAccepted(2);
+        Socket overflow = connect();
+        waitForAccepted(3);
+
+        assertEquals(-1, overflow.getInputStream().read());
+        assertEquals(1, listener.getRejectedCount());
+        assertEquals(2, listener.getPendingHandshakeCount());
+
+        // the others are still waiting for their turn
+        for (Socket s : new Socket[]{handshaking,queued}) {
+            s.setSoTimeout(200);
+            try {
+                s.getInputStream().read();
+                throw new AssertionError("should still be open");
+            } catch (SocketTimeoutException e) {
+                // expected
+            }
+        }
+        handshaking.close();
+        queued.close();
+        overflow.close();
+    }
+
+    private Socket connect() throws IOException {
+        Socket s = new Socket("localhost",listener.getPort());
+        s.setSoTimeout(10*1000);
+        return s;
+    }
+
+    private void waitForAccepted(int n) throws InterruptedException {
+        long end = System.currentTimeMillis()+10*1000;
+        while (listener.getAcceptedCount()<n) {
+            if (System.currentTimeMillis()>end)
+                throw new AssertionError("only "+listener.getAcceptedCount()+" connections accepted");
+            Thread.sleep(10);
+        }
+    }
+}
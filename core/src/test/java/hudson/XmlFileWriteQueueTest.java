@@ -0,0 +1,154 @@
+package hudson;
+
+import hudson.util.XStream2;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XmlFileWriteQueueTest extends TestCase {
+    private File dir;
+    private int oldDelay;
+    private final XStream2 xs = new XStream2();
+
+    public static class Foo {
+        public List<String> items = new ArrayList<String>();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = Util.createTempDir();
+        oldDelay = XmlFileWriteQueue.DELAY;
+        XmlFileWriteQueue.DELAY = 60000;  // long enough that nothing gets written behind our back
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        XmlFileWriteQueue.flushAll();
+        XmlFileWriteQueue.DELAY = oldDelay;
+        Util.deleteRecursive(dir);
+        super.tearDown();
+    }
+
+    private XmlFile file(String name) {
+        return new XmlFile(xs, new File(dir,name));
+    }
+
+    public void testCoalescing() throws Exception {
+        XmlFile f = file("foo.xml");
+        Foo foo = new Foo();
+        long written = XmlFileWriteQueue.getWrittenCount();
+        for (int i=0; i<3; i++) {
+            foo.items.add("item"+i);
+            f.write(foo);
+        }
+        assertFalse(f.getFile().exists());
+        assertTrue(f.exists());
+        assertTrue(XmlFileWriteQueue.isPending(f.getFile()));
+
+        XmlFileWriteQueue.flushAll();
+        assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+        assertEquals(written+1, XmlFileWriteQueue.getWrittenCount());
+        assertEquals(3, ((Foo)new XmlFile(xs,f.getFile()).read()).items.size());
+    }
+
+    /**
+     * What gets written is the state at the time of the write, not whatever the object is later.
+     */
+    public void testSnapshot() throws Exception {
+        XmlFile f = file("foo.xml");
+        Foo foo = new Foo();
+        foo.items.add("a");
+        f.write(foo);
+        foo.items.add("b");
+        XmlFileWriteQueue.flushAll();
+        assertEquals(1, ((Foo)f.read()).items.size());
+    }
+
+    public void testReadAfterWrite() throws Exception {
+        XmlFile f = file("foo.xml");
+        Foo foo = new Foo();
+        foo.items.add("a");
+        f.write(foo);
+        assertEquals(1, ((Foo)f.read()).items.size());
+        assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+
+        foo.items.add("b");
+        f.write(foo);
+        assertTrue(f.asString().contains("<string>b</string>"));
+    }
+
+    public void testCancelOnDelete() throws Exception {
+        XmlFile f = file("foo.xml");
+        f.write(new Foo());
+        f.delete();
+        assertFalse(f.exists());
+        XmlFileWriteQueue.flushAll();
+        assertFalse(f.getFile().exists());
+    }
+
+    public void testFlushAll() throws Exception {
+        List<XmlFile> files = new ArrayList<XmlFile>();
+        for (int i=0; i<5; i++) {
+            XmlFile f = file("foo"+i+".xml");
+            f.write(new Foo());
+            files.add(f);
+        }
+        XmlFileWriteQueue.flushAll();
+        for (XmlFile f : files) {
+            assertTrue(f.getFile().exists());
+            assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+        }
+    }
+
+    /**
+     * A pending write doesn't bring back the directory deleted in the mean time, with just this file in it.
+     */
+    public void testDeletedDirectoryNotRecreated() throws Exception {
+        File sub = new File(dir,"sub");
+        assertTrue(sub.mkdir());
+        XmlFile f = new XmlFile(xs, new File(sub,"foo.xml"));
+        f.write(new Foo());
+        Util.deleteRecursive(sub);
+        XmlFileWriteQueue.flushAll();
+        assertFalse(sub.exists());
+        assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+    }
+
+    /**
+     * Same, for a directory that didn't exist yet when the write was requested, like that of a new item.
+     */
+    public void testNewDirectoryDeletedBeforeWrite() throws Exception {
+        File sub = new File(dir,"new");
+        XmlFile f = new XmlFile(xs, new File(sub,"foo.xml"));
+        f.write(new Foo());
+        assertTrue(sub.isDirectory());
+        Util.deleteRecursive(sub);
+        XmlFileWriteQueue.flushAll();
+        assertFalse(sub.exists());
+        assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+    }
+
+    /**
+     * A write that fails stays pending, and the failure is reported to those who read the file.
+     */
+    public void testFailedWriteIsKept() throws Exception {
+        File notADir = new File(dir,"file");
+        FileUtils.writeStringToFile(notADir,"");
+        XmlFile f = new XmlFile(xs, new File(notADir,"foo.xml"));
+        f.write(new Foo());
+        try {
+            f.read();
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(XmlFileWriteQueue.isPending(f.getFile()));
+        f.delete();
+        assertFalse(XmlFileWriteQueue.isPending(f.getFile()));
+    }
+}
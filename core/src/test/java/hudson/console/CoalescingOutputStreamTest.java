@@ -0,0 +1,66 @@
+package hudson.console;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
+public class CoalescingOutputStreamTest extends TestCase {
+    public void testCoalesce() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink,16,60000);
+        out.write("abc\n".getBytes());
+        out.write('d');
+        assertEquals(0, sink.size());   // held until the latency passes
+
+        out.write("0123456789abcdef".getBytes());  // too big to buffer
+        assertEquals("abc\nd0123456789abcdef", sink.toString());
+        assertEquals(2, out.getFlushCount());
+
+        out.write("xyz".getBytes());
+        out.close();
+        assertEquals("abc\nd0123456789abcdefxyz", sink.toString());
+        assertEquals(24, out.getBytesWritten());
+    }
+
+    /**
+     * Writers flushing after every line don't defeat the buffering, but the owner of the stream
+     * can still get everything in the file, for the post-build steps that read it.
+     */
+    public void testFlush() throws Exception {
+        File f = File.createTempFile("log","txt");
+        try {
+            CoalescingOutputStream out = new CoalescingOutputStream(new FileOutputStream(f),1024,60000);
+            out.write("abc\n".getBytes());
+            out.write('d');
+            out.flush();
+            new PrintStream(out,true).println("e");
+            assertEquals(0, f.length());
+            out.flushNow();
+            assertEquals("abc\nde"+System.getProperty("line.separator"), FileUtils.readFileToString(f));
+            assertEquals(1, out.getFlushCount());
+            out.close();
+        } finally {
+            f.delete();
+        }
+    }
+
+    public void testLatency() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink,1024,10);
+        out.write("abc".getBytes());
+        for (int i=0; i<100 && sink.size()==0; i++)
+            Thread.sleep(50);
+        assertEquals("abc", sink.toString());
+    }
+
+    public void testUnbuffered() throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink,1024,0);
+        out.write("abc".getBytes());
+        assertEquals("abc", sink.toString());
+    }
+}
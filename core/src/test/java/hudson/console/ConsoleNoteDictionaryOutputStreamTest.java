@@ -0,0 +1,78 @@
+package hudson.console;
+
+import hudson.Util;
+import hudson.util.IOUtils;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class ConsoleNoteDictionaryOutputStreamTest extends TestCase {
+    private File dir;
+    private String note;
+    private String payload;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Util.createTempDir();
+        note = new HyperlinkNote("http://jenkins-ci.org/",7).encode();
+        payload = note.substring(ConsoleNote.PREAMBLE_STR.length(), note.length()-ConsoleNote.POSTAMBLE_STR.length());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    /**
+     * Repeated notes should be stored only once and referenced from the log.
+     */
+    public void testRepeatedNotes() throws IOException {
+        File log = new File(dir,"log");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleNoteDictionaryOutputStream s = new ConsoleNoteDictionaryOutputStream(out, ConsoleNoteDictionary.getFileFor(log));
+        s.write(("first "+note+"line\n").getBytes());
+        // byte by byte
+        for (byte b : ("second "+note+"line\n").getBytes())
+            s.write(b);
+        s.close();
+
+        String ref = new String(ConsoleNote.encodeReference(0));
+        assertEquals("first "+ref+"line\nsecond "+ref+"line\n", out.toString());
+        assertEquals(payload+"\n", readDictionary(log));
+
+        // references are removed just like regular notes
+        assertEquals("first line", ConsoleNote.removeNotes("first "+ref+"line"));
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        PlainTextConsoleOutputStream p = new PlainTextConsoleOutputStream(plain);
+        out.writeTo(p);
+        p.close();
+        assertEquals("first line\nsecond line\n", plain.toString());
+    }
+
+    /**
+     * Things that look like the beginning of a note but aren't should go through unmodified.
+     */
+    public void testFalseAlarm() throws IOException {
+        File log = new File(dir,"log");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleNoteDictionaryOutputStream s = new ConsoleNoteDictionaryOutputStream(out, ConsoleNoteDictionary.getFileFor(log));
+        String text = "\u001B[1mbold\u001B[0m "+ConsoleNote.PREAMBLE_STR+"broken\nend\u001B";
+        s.write(text.getBytes());
+        s.close();
+
+        assertEquals(text, out.toString());
+        assertEquals("", readDictionary(log));
+    }
+
+    private String readDictionary(File log) throws IOException {
+        FileInputStream in = new FileInputStream(ConsoleNoteDictionary.getFileFor(log));
+        try {
+            return IOUtils.toString(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+}
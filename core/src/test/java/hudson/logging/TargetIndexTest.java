@@ -0,0 +1,39 @@
+package hudson.logging;
+
+import hudson.logging.LogRecorder.Target;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+public class TargetIndexTest extends TestCase {
+    /**
+     * The index should agree with {@link Target#includes(LogRecord)}.
+     */
+    public void testSameAsTargets() {
+        List<Target> targets = Arrays.asList(
+                new Target("hudson.model", Level.FINE),
+                new Target("hudson.model.Queue", Level.WARNING),
+                new Target("hudson.remoting.", Level.ALL),
+                new Target("", Level.INFO));
+        TargetIndex index = new TargetIndex(targets);
+
+        String[] names = {"hudson.model", "hudson.model.Queue", "hudson.model.Queue$Item", "hudson.modelx",
+                "hudson", "hudson.remoting", "hudson.remoting.Channel", "", "foo"};
+        Level[] levels = {Level.FINEST, Level.FINE, Level.INFO, Level.WARNING, Level.SEVERE};
+        for (int i=0; i<2; i++) {   // the second round hits the memoized thresholds
+            for (String n : names) {
+                for (Level lv : levels) {
+                    LogRecord r = new LogRecord(lv,"test");
+                    r.setLoggerName(n);
+                    boolean expected = false;
+                    for (Target t : targets)
+                        expected |= t.includes(r);
+                    assertEquals(n+" at "+lv, expected, index.includes(r));
+                }
+            }
+        }
+    }
+}
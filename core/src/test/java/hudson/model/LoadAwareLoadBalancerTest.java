@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.model.Queue.BuildableItem;
+import hudson.model.Queue.Task;
+import hudson.model.Queue.WaitingItem;
+import hudson.model.queue.LoadPredictor;
+import hudson.model.queue.MappingWorksheet;
+import hudson.model.queue.MappingWorksheet.ExecutorChunk;
+import hudson.model.queue.MappingWorksheet.ExecutorSlot;
+import hudson.model.queue.MappingWorksheet.Mapping;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class LoadAwareLoadBalancerTest {
+    private final LoadAwareLoadBalancer lb = new LoadAwareLoadBalancer();
+
+    /**
+     * Computer named after its node, with the given number of executors and recent load.
+     */
+    private static Computer computer(String name, int executors, final int recentTotal, final int recentBusy) throws Exception {
+        Node n = mock(Node.class);
+        when(n.getNodeName()).thenReturn(name);
+        Computer c = mock(Computer.class);
+        when(c.getNode()).thenReturn(n);
+        when(c.getLoadStatistics()).thenReturn(new LoadStatistics(recentTotal,recentBusy) {
+            public int computeIdleExecutors() { return recentTotal-recentBusy; }
+            public int computeTotalExecutors() { return recentTotal; }
+            public int computeQueueLength() { return 0; }
+        });
+
+        List<Executor> list = new CopyOnWriteArrayList<Executor>();
+        for (int i=0; i<executors; i++) {
+            Executor e = mock(Executor.class);
+            when(e.isIdle()).thenReturn(true);
+            when(e.getOwner()).thenReturn(c);
+            list.add(e);
+        }
+        Field f = Computer.class.getDeclaredField("executors");
+        f.setAccessible(true);
+        f.set(c, list);
+        when(c.getExecutors()).thenReturn(list);
+        return c;
+    }
+
+    /**
+     * Offers the first {@code n} executors of the computer.
+     */
+    private static List<ExecutorSlot> offer(Computer c, int n) {
+        List<ExecutorSlot> r = new ArrayList<ExecutorSlot>();
+        for (Executor e : c.getExecutors().subList(0,n)) {
+            ExecutorSlot s = mock(ExecutorSlot.class);
+            when(s.getExecutor()).thenReturn(e);
+            when(s.isAvailable()).thenReturn(true);
+            r.add(s);
+        }
+        return r;
+    }
+
+    private static MappingWorksheet worksheet(long duration, List<ExecutorSlot> offers) {
+        Task t = mock(Task.class);
+        when(t.getFullDisplayName()).thenReturn("task");
+        when(t.getEstimatedDuration()).thenReturn(duration);
+        when(t.getSubTasks()).thenReturn((Collection)asList(t));
+        BuildableItem item = new BuildableItem(new WaitingItem(new GregorianCalendar(),t,new ArrayList<Action>()));
+        return new MappingWorksheet(item, offers, Collections.<LoadPredictor>emptyList());
+    }
+
+    private static ExecutorChunk chunk(MappingWorksheet ws, String name) {
+        for (ExecutorChunk ec : ws.executors)
+            if (ec.getName().equals(name))
+                return ec;
+        throw new AssertionError(name);
+    }
+
+    private String map(MappingWorksheet ws) {
+        Mapping m = lb.map(ws.item.task, ws);
+        assertNotNull(m);
+        return m.assigned(0).getName();
+    }
+
+    @Test
+    public void prefersRecentlyIdleNode() throws Exception {
+        List<ExecutorSlot> offers = new ArrayList<ExecutorSlot>();
+        offers.addAll(offer(computer("busy",2,2,2),2));
+        offers.addAll(offer(computer("idle",2,2,0),2));
+        assertEquals("idle", map(worksheet(1000,offers)));
+    }
+
+    /**
+     * Executors predicted to be busy aren't in the worksheet, which makes the node look more loaded.
+     */
+    @Test
+    public void prefersNodeWithMoreFreeExecutors() throws Exception {
+        List<ExecutorSlot> offers = new ArrayList<ExecutorSlot>();
+        offers.addAll(offer(computer("half",2,2,0),1));
+        offers.addAll(offer(computer("free",2,2,0),2));
+        assertEquals("free", map(worksheet(1000,offers)));
+    }
+
+    /**
+     * The node with the workspace wins over an idle one, unless it's busy and the task is long.
+     */
+    @Test
+    public void workspaceAffinity() throws Exception {
+        List<ExecutorSlot> offers = new ArrayList<ExecutorSlot>();
+        offers.addAll(offer(computer("last",2,4,3),2));
+        offers.addAll(offer(computer("idle",2,4,0),2));
+        MappingWorksheet ws = worksheet(1000,offers);
+        ExecutorChunk last = chunk(ws,"last"), idle = chunk(ws,"idle");
+
+        // short task: the workspace outweighs the load
+        assertTrue(lb.score(last,"last",1) < lb.score(idle,"last",1));
+        // without the workspace, the load decides
+        assertTrue(lb.score(last,null,1) > lb.score(idle,null,1));
+        // long task: the load gets twice the weight and outweighs the workspace
+        assertTrue(lb.score(last,"last",2) > lb.score(idle,"last",2));
+    }
+
+    /**
+     * Among equally loaded nodes, the same task keeps going to the same node.
+     */
+    @Test
+    public void stableAmongEquals() throws Exception {
+        List<ExecutorSlot> offers = new ArrayList<ExecutorSlot>();
+        offers.addAll(offer(computer("a",1,1,0),1));
+        offers.addAll(offer(computer("b",1,1,0),1));
+        offers.addAll(offer(computer("c",1,1,0),1));
+        String first = map(worksheet(1000,offers));
+        for (int i=0; i<5; i++)
+            assertEquals(first, map(worksheet(1000,offers)));
+    }
+}
@@ -24,21 +24,33 @@
 package hudson.model;
 
 import com.trilead.ssh2.crypto.Base64;
+import hudson.Util;
+import hudson.model.UpdateCenter.DownloadJob;
+import hudson.model.UpdateCenter.UpdateCenterConfiguration;
+import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.FormValidation.Kind;
 import hudson.util.TimeUnit2;
 import junit.framework.TestCase;
 import net.sf.json.JSONObject;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Quick test for {@link UpdateCenter}.
@@ -73,4 +85,111 @@ public class UpdateCenterTest extends TestCase {
             c.checkValidity(new Date(System.currentTimeMillis() + TimeUnit2.DAYS.toMillis(30)));
         }
     }
+
+    /**
+     * Local files stand in for the update site.
+     */
+    public void testDownloadVerifiesChecksum() throws Exception {
+        File dir = Util.createTempDir();
+        try {
+            File src = new File(dir,"src");
+            FileUtils.writeStringToFile(src,"plugin");
+            UpdateCenter uc = new UpdateCenter();
+            UpdateCenterConfiguration config = new UpdateCenterConfiguration();
+
+            TestJob job = new TestJob(uc, src, new File(dir,"good.jpi"), sha1("plugin"), null);
+            File tmp = config.download(job, src.toURI().toURL());
+            assertEquals("plugin", FileUtils.readFileToString(tmp));
+            assertEquals(6, job.getDownloadedBytes());
+
+            job = new TestJob(uc, src, new File(dir,"bad.jpi"), sha1("something else"), null);
+            try {
+                config.download(job, src.toURI().toURL());
+                fail();
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(new File(dir,"bad.jpi.tmp").exists());
+        } finally {
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    /**
+     * Downloads run concurrently, but the installation happens in the order the jobs are submitted.
+     */
+    public void testInstallOrder() throws Exception {
+        File dir = Util.createTempDir();
+        try {
+            UpdateCenter uc = new UpdateCenter();
+            List<String> installed = Collections.synchronizedList(new ArrayList<String>());
+            List<Future<UpdateCenterJob>> futures = new ArrayList<Future<UpdateCenterJob>>();
+            List<String> expected = new ArrayList<String>();
+            for (int i=0; i<5; i++) {
+                File src = new File(dir,"src"+i);
+                FileUtils.writeStringToFile(src,"plugin"+i);
+                File dst = new File(dir,"p"+i+".jpi");
+                futures.add(new TestJob(uc, src, dst, sha1("plugin"+i), installed).submit());
+                expected.add(dst.getName());
+            }
+            for (int i=0; i<futures.size(); i++) {
+                DownloadJob job = (DownloadJob)futures.get(i).get();
+                assertTrue(job.status.isSuccess());
+                assertEquals("plugin"+i, FileUtils.readFileToString(new File(dir,"p"+i+".jpi")));
+            }
+            assertEquals(expected, installed);
+        } finally {
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    private static String sha1(String s) throws Exception {
+        return new String(Base64.encode(MessageDigest.getInstance("SHA1").digest(s.getBytes("UTF-8"))));
+    }
+
+    private static final class TestJob extends DownloadJob {
+        private final File src, dst;
+        private final String sha1;
+        private final List<String> installed;
+
+        TestJob(UpdateCenter uc, File src, File dst, String sha1, List<String> installed) {
+            uc.super(null, ACL.SYSTEM);
+            this.src = src;
+            this.dst = dst;
+            this.sha1 = sha1;
+            this.installed = installed;
+        }
+
+        @Override
+        public Future<UpdateCenterJob> submit() {
+            startDownload();
+            return super.submit();
+        }
+
+        protected URL getURL() throws MalformedURLException {
+            return src.toURI().toURL();
+        }
+
+        protected File getDestination() {
+            return dst;
+        }
+
+        public String getName() {
+            return dst.getName();
+        }
+
+        protected void onSuccess() {
+        }
+
+        @Override
+        protected String getExpectedSHA1() {
+            return sha1;
+        }
+
+        @Override
+        protected void replace(File dst, File src) throws IOException {
+            super.replace(dst, src);
+            installed.add(dst.getName());
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package hudson.search;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TrigramIndexTest extends TestCase {
+    public void testCandidates() {
+        TrigramIndex<String> index = new TrigramIndex<String>();
+        index.put("a", "Foo-Core");
+        index.put("b", "foo-ui");
+        index.put("c", "bar");
+
+        assertEquals(2, index.candidates("foo").size());
+        assertEquals(Collections.singletonList("a"), index.candidates("o-cO"));
+        assertEquals(Collections.singletonList("c"), index.candidates("ba"));   // shorter than a trigram
+        assertTrue(index.candidates("zzz").isEmpty());
+        assertTrue(index.candidates("foo-x").isEmpty());
+
+        // rename and remove
+        index.put("a", "baz");
+        assertEquals(Collections.singletonList("b"), index.candidates("foo"));
+        index.remove("b");
+        assertTrue(index.candidates("foo").isEmpty());
+        assertEquals(2, index.size());
+
+        Map<String,String> all = new HashMap<String,String>();
+        all.put("x", "quux");
+        index.reset(all);
+        assertEquals(1, index.size());
+        assertEquals(Collections.singletonList("x"), index.candidates("uux"));
+    }
+
+    /**
+     * Limiting the number of suggestions should give the head of the full ranking.
+     */
+    public void testLimitedSuggest() {
+        SearchIndexBuilder b = new SearchIndexBuilder();
+        for (int i=0; i<50; i++)
+            b.add("item"+i, "item"+i+"-abc");
+        b.add("abc", "abc");
+        SearchIndex si = b.make();
+
+        List<SuggestedItem> all = Search.suggest(si, "abc");
+        List<SuggestedItem> top = Search.suggest(si, "abc", 5);
+        assertEquals(51, all.size());
+        assertEquals(5, top.size());
+        assertEquals("abc", top.get(0).getPath());
+        for (int i=0; i<5; i++)
+            assertSame(all.get(i).item, top.get(i).item);
+    }
+}
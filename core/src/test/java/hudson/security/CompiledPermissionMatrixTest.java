@@ -0,0 +1,128 @@
+package hudson.security;
+
+import junit.framework.TestCase;
+import org.jvnet.localizer.Localizable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CompiledPermissionMatrixTest extends TestCase {
+    private static final PermissionGroup GROUP = new PermissionGroup(CompiledPermissionMatrixTest.class, new Localizable(null,"test"));
+    private static final Permission ROOT = new Permission(GROUP, "Root", null, null);
+    private static final Permission PARENT = new Permission(GROUP, "Parent", null, ROOT);
+    private static final Permission CHILD = new Permission(GROUP, "Child", null, PARENT);
+
+    private final Map<Permission,Set<String>> granted = new HashMap<Permission,Set<String>>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        grant(ROOT,"alice");
+        grant(PARENT,"bob");
+        grant(CHILD,"carol");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PARENT.setEnabled(true);
+        CHILD.setEnabled(true);
+        super.tearDown();
+    }
+
+    private void grant(Permission p, String sid) {
+        Set<String> s = granted.get(p);
+        if (s==null)
+            granted.put(p, s=new HashSet<String>());
+        s.add(sid);
+    }
+
+    public void testImplied() {
+        CompiledPermissionMatrix m = new CompiledPermissionMatrix(granted,false);
+        for (int i=0; i<2; i++) { // computed, then cached
+            assertTrue(m.hasPermission("alice",ROOT));
+            assertTrue(m.hasPermission("alice",PARENT));
+            assertTrue(m.hasPermission("alice",CHILD));
+
+            assertFalse(m.hasPermission("bob",ROOT));
+            assertTrue(m.hasPermission("bob",PARENT));
+            assertTrue(m.hasPermission("bob",CHILD));
+
+            assertFalse(m.hasPermission("carol",ROOT));
+            assertFalse(m.hasPermission("carol",PARENT));
+            assertTrue(m.hasPermission("carol",CHILD));
+
+            assertFalse(m.hasPermission("dave",CHILD));
+        }
+    }
+
+    public void testInvalidate() {
+        CompiledPermissionMatrix m = new CompiledPermissionMatrix(granted,false);
+        assertFalse(m.hasPermission("dave",CHILD));
+        grant(PARENT,"dave");
+        m.invalidate();
+        assertTrue(m.hasPermission("dave",CHILD));
+        granted.put(PARENT, Collections.<String>emptySet());
+        m.invalidate();
+        assertFalse(m.hasPermission("dave",CHILD));
+        assertFalse(m.hasPermission("bob",CHILD));
+    }
+
+    public void testDisabled() {
+        CompiledPermissionMatrix m = new CompiledPermissionMatrix(granted,true);
+        assertTrue(m.hasPermission("bob",CHILD));
+        assertTrue(m.hasPermission("carol",CHILD));
+
+        PARENT.setEnabled(false);
+        // a grant of a disabled permission doesn't count, but the implication goes through it
+        assertFalse(m.hasPermission("bob",CHILD));
+        assertFalse(m.hasPermission("bob",PARENT));
+        assertTrue(m.hasPermission("alice",CHILD));
+        assertTrue(m.hasPermission("carol",CHILD));
+
+        CHILD.setEnabled(false);
+        assertFalse(m.hasPermission("carol",CHILD));
+
+        PARENT.setEnabled(true);
+        CHILD.setEnabled(true);
+        assertTrue(m.hasPermission("bob",CHILD));
+        assertTrue(m.hasPermission("carol",CHILD));
+
+        // the matrix of a project ignores whether a permission is enabled
+        PARENT.setEnabled(false);
+        assertTrue(new CompiledPermissionMatrix(granted,false).hasPermission("bob",CHILD));
+    }
+
+    /**
+     * Checks racing with enabling and disabling a permission must never leave a stale answer behind.
+     */
+    public void testToggleWhileChecking() throws Exception {
+        final CompiledPermissionMatrix m = new CompiledPermissionMatrix(granted,true);
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread[] checkers = new Thread[4];
+        for (int i=0; i<checkers.length; i++) {
+            checkers[i] = new Thread() {
+                @Override
+                public void run() {
+                    while (!stop.get())
+                        m.hasPermission("bob",CHILD);
+                }
+            };
+            checkers[i].start();
+        }
+        try {
+            for (int i=0; i<2000; i++) {
+                boolean enabled = i%2==0;
+                PARENT.setEnabled(enabled);
+                assertEquals("round "+i, enabled, m.hasPermission("bob",CHILD));
+            }
+        } finally {
+            stop.set(true);
+            for (Thread t : checkers)
+                t.join();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+public class GraphTest {
+    private long cacheSize;
+
+    @Before
+    public void setUp() {
+        cacheSize = Graph.CACHE_SIZE;
+    }
+
+    @After
+    public void tearDown() {
+        Graph.CACHE_SIZE = cacheSize;
+    }
+
+    @Test
+    public void hitDoesNotAddBytes() throws Exception {
+        Graph.CACHE_SIZE = 64*1024*1024;
+        long before = Graph.getCacheBytes();
+        render("hit",1);
+        long added = Graph.getCacheBytes()-before;
+        assertTrue(added>0);
+
+        long hits = Graph.getCacheHitCount();
+        render("hit",1);
+        assertEquals(hits+1, Graph.getCacheHitCount());
+        assertEquals(before+added, Graph.getCacheBytes());
+    }
+
+    @Test
+    public void newerTimestampReplaces() throws Exception {
+        Graph.CACHE_SIZE = 64*1024*1024;
+        long before = Graph.getCacheBytes();
+        render("replace",1);
+        long added = Graph.getCacheBytes()-before;
+
+        // the same chart renders to the same bytes, which replace the old ones instead of adding to them
+        render("replace",2);
+        assertEquals(before+added, Graph.getCacheBytes());
+    }
+
+    /**
+     * Charts have localized text, so a rendering for one language isn't served to another.
+     */
+    @Test
+    public void perLocale() throws Exception {
+        Graph.CACHE_SIZE = 64*1024*1024;
+        long misses = Graph.getCacheMissCount(), hits = Graph.getCacheHitCount();
+        render("locale",1,Locale.ENGLISH);
+        render("locale",1,Locale.JAPANESE);
+        assertEquals(misses+2, Graph.getCacheMissCount());
+        assertEquals(hits, Graph.getCacheHitCount());
+
+        render("locale",1,Locale.JAPANESE);
+        render("locale",1,Locale.ENGLISH);
+        assertEquals(misses+2, Graph.getCacheMissCount());
+        assertEquals(hits+2, Graph.getCacheHitCount());
+    }
+
+    /**
+     * Renderings replaced or evicted while they are being drawn must not be taken off the count.
+     */
+    @Test
+    public void concurrentReplacement() throws Exception {
+        // every rendering evicts everything, so nothing stays counted
+        Graph.CACHE_SIZE = 1;
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i=0; i<200; i++) {
+                final int ts = i;
+                futures.add(es.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        render("race"+(ts%3),ts);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> f : futures)
+                f.get();
+        } finally {
+            es.shutdown();
+        }
+        assertEquals(0, Graph.getCacheBytes());
+    }
+
+    private static void render(String key, long timestamp) throws Exception {
+        render(key,timestamp,Locale.ENGLISH);
+    }
+
+    private static void render(final String key, long timestamp, Locale locale) throws Exception {
+        Graph g = new Graph(timestamp,100,50) {
+            @Override
+            protected JFreeChart createGraph() {
+                DataSetBuilder<String,Integer> dsb = new DataSetBuilder<String,Integer>();
+                for (int i=0; i<5; i++)
+                    dsb.add(i*i, "row", i);
+                return ChartFactory.createLineChart(null, null, null, dsb.build(), PlotOrientation.VERTICAL, false, true, false);
+            }
+
+            @Override
+            protected String getCacheKey() {
+                return key;
+            }
+        };
+        StaplerRequest req = mock(StaplerRequest.class);
+        when(req.getLocale()).thenReturn(locale);
+        StaplerResponse rsp = mock(StaplerResponse.class);
+        when(rsp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        g.doMap(req,rsp);
+    }
+}
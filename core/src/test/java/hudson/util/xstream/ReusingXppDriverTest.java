@@ -0,0 +1,50 @@
+package hudson.util.xstream;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import hudson.util.XStream2;
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+
+public class ReusingXppDriverTest extends TestCase {
+    private final ReusingXppDriver driver = new ReusingXppDriver();
+
+    public void testSequentialAndNested() {
+        for (int i=0; i<3; i++) {
+            HierarchicalStreamReader r = driver.createReader(new StringReader("<a><b>"+i+"</b></a>"));
+            assertEquals("a", r.getNodeName());
+
+            // a document read while another one is being read must not share its parser
+            HierarchicalStreamReader nested = driver.createReader(new StringReader("<c>x</c>"));
+            assertEquals("c", nested.getNodeName());
+            assertEquals("x", nested.getValue());
+            nested.close();
+
+            r.moveDown();
+            assertEquals("b", r.getNodeName());
+            assertEquals(String.valueOf(i), r.getValue());
+            r.moveUp();
+            r.close();
+        }
+    }
+
+    public static class Foo {
+        String s;
+        int n;
+    }
+
+    public void testUnmarshal() {
+        XStream2 xs = new XStream2();
+        String cls = Foo.class.getName();
+        for (int i=0; i<3; i++) {
+            HierarchicalStreamReader r = driver.createReader(new StringReader("<"+cls+"><s>foo</s><n>"+i+"</n><gone>1</gone></"+cls+">"));
+            try {
+                Foo f = (Foo)xs.unmarshal(r);
+                assertEquals("foo", f.s);
+                assertEquals(i, f.n);
+            } finally {
+                r.close();
+            }
+        }
+    }
+}
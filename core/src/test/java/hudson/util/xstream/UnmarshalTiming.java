@@ -0,0 +1,156 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.util.xstream;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+import hudson.util.XStream2;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the unmarshalling of records shaped like {@code build.xml}, {@code config.xml} and
+ * {@code junitResult.xml} through {@link XStream2}, with the plain {@link XppDriver} and with
+ * {@link ReusingXppDriver}.
+ *
+ * <p>
+ * This is not a test but a harness to be run by hand, for example from the IDE with the test classpath:
+ * {@code java hudson.util.xstream.UnmarshalTiming [iterations]}. Each measurement is preceded by a warm-up
+ * of the same length, and the time per document is printed.
+ */
+public class UnmarshalTiming {
+    public static class Build {
+        int number;
+        String result = "SUCCESS";
+        long timestamp = System.currentTimeMillis();
+        long duration = 12345;
+        String charset = "UTF-8";
+        String builtOn = "slave1";
+        List<Parameter> actions = new ArrayList<Parameter>();
+        List<String> culprits = new ArrayList<String>();
+    }
+
+    public static class Parameter {
+        String name;
+        String value;
+    }
+
+    public static class Config {
+        String description = "some job";
+        boolean keepDependencies;
+        boolean disabled;
+        String assignedNode = "linux";
+        int quietPeriod = 5;
+        List<Builder> builders = new ArrayList<Builder>();
+    }
+
+    public static class Builder {
+        String command;
+    }
+
+    public static class TestResult {
+        float duration;
+        List<Suite> suites = new ArrayList<Suite>();
+    }
+
+    public static class Suite {
+        String name;
+        String timestamp = "2012-07-01T00:00:00";
+        List<Case> cases = new ArrayList<Case>();
+    }
+
+    public static class Case {
+        float duration;
+        String className;
+        String testName;
+        boolean skipped;
+        int failedSince;
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length>0 ? Integer.parseInt(args[0]) : 20000;
+        XStream2 xs = new XStream2();
+
+        Build b = new Build();
+        b.number = 42;
+        for (int i=0; i<5; i++) {
+            Parameter p = new Parameter();
+            p.name = "PARAM"+i;
+            p.value = "value"+i;
+            b.actions.add(p);
+            b.culprits.add("user"+i);
+        }
+
+        Config c = new Config();
+        for (int i=0; i<3; i++) {
+            Builder s = new Builder();
+            s.command = "make target"+i;
+            c.builders.add(s);
+        }
+
+        TestResult t = new TestResult();
+        for (int i=0; i<10; i++) {
+            Suite s = new Suite();
+            s.name = "org.example.Suite"+i;
+            for (int j=0; j<20; j++) {
+                Case tc = new Case();
+                tc.className = s.name;
+                tc.testName = "test"+j;
+                tc.duration = j;
+                s.cases.add(tc);
+            }
+            t.suites.add(s);
+        }
+
+        String[] names = {"build.xml", "config.xml", "junitResult.xml"};
+        String[] docs = {xs.toXML(b), xs.toXML(c), xs.toXML(t)};
+        HierarchicalStreamDriver[] drivers = {new XppDriver(), new ReusingXppDriver()};
+
+        for (int i=0; i<docs.length; i++) {
+            // fewer rounds for the big document, so that each takes a comparable time
+            int n = Math.max(1, iterations*docs[0].length()/docs[i].length());
+            for (HierarchicalStreamDriver d : drivers) {
+                time(xs, d, docs[i], n);
+                long ns = time(xs, d, docs[i], n);
+                System.out.printf("%-16s %-20s %8.1f us/doc%n", names[i], d.getClass().getSimpleName(), ns/1000.0/n);
+            }
+        }
+    }
+
+    private static long time(XStream2 xs, HierarchicalStreamDriver d, String xml, int n) {
+        long start = System.nanoTime();
+        for (int i=0; i<n; i++) {
+            HierarchicalStreamReader r = d.createReader(new StringReader(xml));
+            try {
+                xs.unmarshal(r);
+            } finally {
+                r.close();
+            }
+        }
+        return System.nanoTime()-start;
+    }
+}
@@ -68,6 +68,12 @@ public class Maven3Builder extends AbstractMavenBuilder implements DelegatingCal
      * the setting at master.
      */
     private final boolean profile = MavenProcessFactory.profile;
+
+    /**
+     * Minimum interval in milliseconds between updates of the executed mojos of a module sent to the master.
+     * Also captured at the constructor to reflect the setting at master.
+     */
+    private final long executedMojosUpdateInterval = EXECUTED_MOJOS_UPDATE_INTERVAL;
     
     HudsonMavenExecutionResult mavenExecutionResult;    
     
@@ -172,6 +178,13 @@ public class Maven3Builder extends AbstractMavenBuilder implements DelegatingCal
         private final Map<ModuleName,List<MavenReporter>> reporters;
         
         private final Map<ModuleName, Long> currentMojoStartPerModuleName = new ConcurrentHashMap<ModuleName, Long>();
+
+        /**
+         * When the executed mojos of each module were last sent to the master.
+         * Sending them after every mojo means a remoting call per mojo with an ever growing list,
+         * so we only do that every once in a while and when the module ends.
+         */
+        private final Map<ModuleName, Long> executedMojosSentAt = new ConcurrentHashMap<ModuleName, Long>();
         
         private ExecutionEventLogger eventLogger;
 
@@ -342,6 +355,10 @@ public class Maven3Builder extends AbstractMavenBuilder implements DelegatingCal
             MavenBuildProxy2 mavenBuildProxy2 = getMavenBuildProxy2( event.getProject() );
             mavenBuildProxy2.setResult(result);
 
+            List<ExecutedMojo> executedMojos = this.executedMojosPerModule.get( new ModuleName(event.getProject()) );
+            if (executedMojos!=null)
+                mavenBuildProxy2.setExecutedMojos( executedMojos );
+
             List<MavenReporter> mavenReporters = getMavenReporters( event.getProject() );
 
             for ( MavenReporter mavenReporter : fixNull(mavenReporters)) {
@@ -414,7 +431,13 @@ public class Maven3Builder extends AbstractMavenBuilder implements DelegatingCal
             
             MavenBuildProxy2 mavenBuildProxy2 = getMavenBuildProxy2( mavenProject );
             
-            mavenBuildProxy2.setExecutedMojos( this.executedMojosPerModule.get( new ModuleName(event) ) );
+            ModuleName name = new ModuleName(event);
+            Long sentAt = executedMojosSentAt.get(name);
+            long now = System.currentTimeMillis();
+            if (sentAt==null || now-sentAt>=maven3Builder.executedMojosUpdateInterval) {
+                mavenBuildProxy2.setExecutedMojos( this.executedMojosPerModule.get( name ) );
+                executedMojosSentAt.put(name,now);
+            }
             
             for (MavenReporter mavenReporter : fixNull(mavenReporters)) {
                 try {
@@ -537,5 +560,10 @@ public class Maven3Builder extends AbstractMavenBuilder implements DelegatingCal
 
     public static boolean DEBUG = true;
 
+    /**
+     * See {@link #executedMojosUpdateInterval}.
+     */
+    public static long EXECUTED_MOJOS_UPDATE_INTERVAL = Long.getLong(Maven3Builder.class.getName()+".executedMojosUpdateInterval",5000);
+
     private static final Logger LOGGER = Logger.getLogger(Maven3Builder.class.getName());
 }
@@ -128,6 +128,12 @@ public class MavenModuleSet extends AbstractMavenProject<MavenModuleSet,MavenMod
     @CopyOnWrite
     transient List<MavenModule> sortedActiveModules;
 
+    /**
+     * Result of the last successful POM parsing, which lets the next build skip parsing if POMs are unchanged.
+     * Not persisted, so the first build after a restart always parses.
+     */
+    transient volatile MavenModuleSetBuild.ParsedPoms parsedPoms;
+
     /**
      * Name of the top-level module. Null until the root module is determined.
      */
@@ -244,6 +250,14 @@ public class MavenModuleSet extends AbstractMavenProject<MavenModuleSet,MavenMod
      */
     private boolean runHeadless = false;
 
+    /**
+     * Number of threads Maven 3 uses to build independent modules of the reactor in parallel,
+     * in the format of its <tt>-T</tt> option, such as "4" or "1C". Null to build modules one by one.
+     *
+     * @since 1.475
+     */
+    private String moduleThreads;
+
     /**
      * @since 1.426
      */
@@ -477,6 +491,20 @@ public class MavenModuleSet extends AbstractMavenProject<MavenModuleSet,MavenMod
         return archivingDisabled;
     }
 
+    /**
+     * @since 1.475
+     */
+    public String getModuleThreads() {
+        return moduleThreads;
+    }
+
+    /**
+     * @since 1.475
+     */
+    public void setModuleThreads(String moduleThreads) {
+        this.moduleThreads = Util.fixEmptyAndTrim(moduleThreads);
+    }
+
     public void setIncrementalBuild(boolean incrementalBuild) {
         this.incrementalBuild = incrementalBuild;
     }
@@ -1048,6 +1076,7 @@ public class MavenModuleSet extends AbstractMavenProject<MavenModuleSet,MavenMod
         perModuleEmail = req.hasParameter("maven.perModuleEmail");
         ignoreUpstremChanges = !json.has("triggerByDependency");
         runHeadless = req.hasParameter("maven.runHeadless");
+        moduleThreads = req.hasParameter("maven.parallelModules") ? Util.fixEmptyAndTrim(req.getParameter("maven.moduleThreads")) : null;
         incrementalBuild = req.hasParameter("maven.incrementalBuild");
         archivingDisabled = req.hasParameter("maven.archivingDisabled");
         resolveDependencies = req.hasParameter( "maven.resolveDependencies" );
@@ -60,6 +60,7 @@ import hudson.tasks.BuildWrapper;
 import hudson.tasks.MailSender;
 import hudson.tasks.Maven.MavenInstallation;
 import hudson.util.ArgumentListBuilder;
+import hudson.util.IOException2;
 import hudson.util.IOUtils;
 import hudson.util.StreamTaskListener;
 
@@ -67,6 +68,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.PrintStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -79,11 +83,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jenkins.model.Jenkins;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.artifact.versioning.ComparableVersion;
@@ -349,6 +355,17 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
         return Math.round((double)overhead / moduleSetBuilds.size());
     }
 
+    /**
+     * Checks if the goals and options already specify the number of threads, as in "-T 4", "-T4" or "--threads 4".
+     */
+    /*package*/ static boolean hasThreadsOption(String goals) {
+        for (String t : Util.tokenize(Util.fixNull(goals))) {
+            if (t.startsWith("-T") || t.equals("--threads") || t.startsWith("--threads="))
+                return true;
+        }
+        return false;
+    }
+
     private static String normalizePath(String relPath) {
         relPath = StringUtils.trimToEmpty( relPath );
         if (StringUtils.isEmpty( relPath )) {
@@ -766,6 +783,12 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
 						}
 						margs.addTokenized(envVars.expand(goals));
 
+                        // Maven 3 can build independent modules in parallel threads.
+                        // Maven takes the first -T it sees, so leave it to the goals if they have one
+                        if (maven3orLater && project.getModuleThreads() != null && !hasThreadsOption(envVars.expand(goals))) {
+                            margs.add("-T", project.getModuleThreads());
+                        }
+
 						// enable the interceptors to change the whole command argument list
 						// all available interceptors are allowed to modify the argument list
 						for (MavenArgumentInterceptorAction mavenArgInterceptor : argInterceptors) {
@@ -907,8 +930,16 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
 
             List<PomInfo> poms;
             try {
-                poms = getModuleRoot().act(new PomParser(listener, mvn, mavenVersion, envVars, MavenModuleSetBuild.this));
+                ParsedPoms previous = project.parsedPoms;
+                ParsedPoms parsed = getModuleRoot().act(new PomParser(listener, mvn, mavenVersion, envVars, MavenModuleSetBuild.this, previous));
+                if (parsed.poms==null) {
+                    logger.println("POMs are unchanged since the last build, reusing the parse result");
+                    parsed = new ParsedPoms(previous.poms, parsed.digest, parsed.files);
+                }
+                project.parsedPoms = parsed;
+                poms = parsed.poms;
             } catch (IOException e) {
+                project.parsedPoms = null;
                 if (project.isIncrementalBuild()) {
                     // If POM parsing failed we should do a full build next time.
                     // Otherwise only the modules which have a SCM change for the next build might
@@ -920,6 +951,7 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                     throw (AbortException) e.getCause();
                 throw e;
             } catch (MavenExecutionException e) {
+                project.parsedPoms = null;
                 // Maven failed to parse POM
                 e.getCause().printStackTrace(listener.error(Messages.MavenModuleSetBuild_FailedToParsePom()));
                 if (project.isIncrementalBuild()) {
@@ -1038,11 +1070,38 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
         private static final long serialVersionUID = 1L;
     }
 
+    /**
+     * Result of {@link PomParser}, which also remembers what went into it,
+     * so that the next build can tell if parsing again would produce the same result.
+     */
+    static final class ParsedPoms implements Serializable {
+        /**
+         * Parsed POMs, or null if they are unchanged from the previous result.
+         */
+        final List<PomInfo> poms;
+        /**
+         * Digest of the parser configuration and the contents of {@link #files}.
+         */
+        final String digest;
+        /**
+         * Absolute paths of the POM files that were read.
+         */
+        final List<String> files;
+
+        ParsedPoms(List<PomInfo> poms, String digest, List<String> files) {
+            this.poms = poms;
+            this.digest = digest;
+            this.files = files;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
     /**
      * Executed on the slave to parse POM and extract information into {@link PomInfo},
      * which will be then brought back to the master.
      */
-    private static final class PomParser implements FileCallable<List<PomInfo>> {
+    private static final class PomParser implements FileCallable<ParsedPoms> {
         private final BuildListener listener;
         private final String rootPOM;
         /**
@@ -1072,8 +1131,14 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
         private boolean updateSnapshots = false;
         
         String rootPOMRelPrefix;
+
+        /**
+         * Digest and POM files of the last successful parsing, or null if it cannot be reused.
+         */
+        private final String previousDigest;
+        private final List<String> previousFiles;
         
-        public PomParser(BuildListener listener, MavenInstallation mavenHome, String mavenVersion, EnvVars envVars, MavenModuleSetBuild build) {
+        public PomParser(BuildListener listener, MavenInstallation mavenHome, String mavenVersion, EnvVars envVars, MavenModuleSetBuild build, ParsedPoms previous) {
             // project cannot be shipped to the remote JVM, so all the relevant properties need to be captured now.
             MavenModuleSet project = build.getProject();
             this.listener = listener;
@@ -1121,13 +1186,23 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
             
             this.mavenValidationLevel = project.getMavenValidationLevel();
             this.globalSetings = project.globalSettingConfigPath;
+
+            // resolving dependencies and updating snapshots are side effects that the user asked for,
+            // and remote parents can change without any change in the workspace, so don't skip parsing then.
+            if (previous!=null && !resolveDependencies && !updateSnapshots && !DISABLE_POM_CACHE) {
+                this.previousDigest = previous.digest;
+                this.previousFiles = previous.files;
+            } else {
+                this.previousDigest = null;
+                this.previousFiles = null;
+            }
         }
 
         private boolean isUpdateSnapshots(String goals) {
           return StringUtils.contains(goals, "-U") || StringUtils.contains(goals, "--update-snapshots");
         }
 
-        public List<PomInfo> invoke(File ws, VirtualChannel channel) throws IOException {
+        public ParsedPoms invoke(File ws, VirtualChannel channel) throws IOException {
             File pom;
             
             PrintStream logger = listener.getLogger();
@@ -1187,6 +1262,9 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                 throw new AbortException(Messages.MavenModuleSetBuild_NoSuchAlternateSettings(settingsLoc.getAbsolutePath()));
             }
 
+            if (previousDigest!=null && previousDigest.equals(digest(previousFiles,settingsLoc)))
+                return new ParsedPoms(null,previousDigest,previousFiles);
+
             try {
                 MavenEmbedderRequest mavenEmbedderRequest = new MavenEmbedderRequest( listener, mavenHome.getHomeDir(),
                                                                                       profiles, properties,
@@ -1270,7 +1348,15 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
                 for (PomInfo pi : infos)
                     pi.cutCycle();
 
-                return new ArrayList<PomInfo>(infos);
+                List<String> files = new ArrayList<String>();
+                for (MavenProject mp : mps) {
+                    // parents with a relative path are read from the workspace, too
+                    for (MavenProject p=mp; p!=null; p=p.getParent())
+                        if (p.getFile()!=null && !files.contains(p.getFile().getAbsolutePath()))
+                            files.add(p.getFile().getAbsolutePath());
+                }
+
+                return new ParsedPoms(new ArrayList<PomInfo>(infos),digest(files,settingsLoc),files);
             } catch (MavenEmbedderException e) {
                 throw new MavenExecutionException(e);
             } catch (ProjectBuildingException e) {
@@ -1278,6 +1364,63 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
             }
         }
 
+        /**
+         * Computes the digest of everything that affects the parse result that we can see from here:
+         * the parser configuration, the settings files, and the given POM files.
+         */
+        private String digest(List<String> files, File settingsLoc) throws IOException {
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                boolean usesEnv = false;
+                for (String f : files)
+                    usesEnv |= refersToEnv(digestFile(md5, new File(f)));
+                // without explicit settings, Maven reads them from the usual places
+                usesEnv |= refersToEnv(digestFile(md5, settingsLoc!=null ? settingsLoc
+                        : new File(System.getProperty("user.home"),".m2/settings.xml")));
+                usesEnv |= refersToEnv(digestFile(md5, globalSetings!=null ? new File(globalSetings)
+                        : new File(mavenHome.getHomeDir(),"conf/settings.xml")));
+
+                StringBuilder config = new StringBuilder();
+                config.append(rootPOM).append('\n').append(profiles).append('\n').append(privateRepository).append('\n')
+                      .append(alternateSettings).append('\n').append(globalSetings).append('\n').append(nonRecursive).append('\n')
+                      .append(workspaceProper).append('\n').append(moduleRootPath).append('\n').append(mavenVersion).append('\n')
+                      .append(mavenHome.getHome()).append('\n').append(processPlugins).append('\n').append(mavenValidationLevel).append('\n');
+                // environment variables, such as BUILD_NUMBER, change every build.
+                // they only matter if POMs or settings refer to them, be it as ${env.X} or to activate a profile.
+                for (Entry<Object,Object> e : new TreeMap<Object,Object>(properties).entrySet()) {
+                    if (usesEnv || !e.getKey().toString().startsWith("env."))
+                        config.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+                }
+                md5.update(config.toString().getBytes("UTF-8"));
+
+                return Util.toHexString(md5.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException2("MD5 not installed",e);
+            }
+        }
+
+        /**
+         * Checks if the given POM or settings file refers to any environment variable.
+         * This is deliberately loose, as a false positive only costs a parse.
+         */
+        private static boolean refersToEnv(byte[] data) throws IOException {
+            return data!=null && new String(data,"ISO-8859-1").contains("env.");
+        }
+
+        /**
+         * @return the contents of the file, or null if it doesn't exist.
+         */
+        private byte[] digestFile(MessageDigest md5, File f) throws IOException {
+            if (f==null || !f.isFile()) {
+                md5.update((byte)0);
+                return null;
+            }
+            byte[] data = FileUtils.readFileToByteArray(f);
+            md5.update((byte)1);
+            md5.update(data);
+            return data;
+        }
+
         /**
          * @see PomInfo#relativePath to understand relPath calculation
          */
@@ -1359,6 +1502,11 @@ public class MavenModuleSetBuild extends AbstractMavenBuild<MavenModuleSet,Maven
      */
     public static boolean debug = Boolean.getBoolean( "hudson.maven.debug" );
 
+    /**
+     * Set to true to parse POMs on every build, even if they are unchanged since the last build.
+     */
+    public static boolean DISABLE_POM_CACHE = Boolean.getBoolean(MavenModuleSetBuild.class.getName()+".disablePomCache");
+
     @Override
     public MavenModuleSet getParent() {// don't know why, but javac wants this
         return super.getParent();
@@ -26,6 +26,7 @@ package hudson.maven;
 import hudson.Util;
 import hudson.Proc;
 import hudson.model.BuildListener;
+import hudson.model.Computer;
 import hudson.model.JDK;
 import hudson.model.TaskListener;
 import hudson.remoting.Callable;
@@ -33,6 +34,7 @@ import hudson.remoting.Channel;
 import hudson.remoting.VirtualChannel;
 import hudson.remoting.RequestAbortedException;
 import hudson.tasks.Maven.MavenInstallation;
+import hudson.tools.ToolInstallation;
 import hudson.util.DelegatingOutputStream;
 import hudson.util.NullStream;
 
@@ -43,6 +45,8 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Properties;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -91,6 +95,10 @@ public final class ProcessCache {
         final Proc proc;
         private final MavenInstallation installation;
         private final JDK jdk;
+        /**
+         * Type of {@link Factory} that created this process, since Maven 2 and Maven 3 processes are different.
+         */
+        private final Class<?> factoryType;
         private final RedirectableOutputStream output;
         /**
          * System properties captured right after the process is created.
@@ -101,8 +109,9 @@ public final class ProcessCache {
 
         private int age = 0;
 
-        MavenProcess(PerChannel parent, String mavenOpts, MavenInstallation installation, JDK jdk, NewProcess np, RedirectableOutputStream output) throws IOException, InterruptedException {
+        MavenProcess(PerChannel parent, String mavenOpts, MavenInstallation installation, JDK jdk, Class<?> factoryType, NewProcess np, RedirectableOutputStream output) throws IOException, InterruptedException {
             this.parent = parent;
+            this.factoryType = factoryType;
             this.mavenOpts = mavenOpts;
             this.channel = np.channel;
             this.proc = np.proc;
@@ -116,26 +125,57 @@ public final class ProcessCache {
             return mavenOpts;
         }
         
-        boolean matches(String mavenOpts,MavenInstallation installation, JDK jdk) {
+        boolean matches(String mavenOpts,MavenInstallation installation, JDK jdk, Class<?> factoryType) {
+            // installations are compared by their home, since forNode/forEnvironment create new instances every time
             return Util.fixNull(this.mavenOpts).equals(Util.fixNull(mavenOpts))
-                && this.installation==installation
-                && this.jdk==jdk;
+                && Util.fixNull(getHome(this.installation)).equals(Util.fixNull(getHome(installation)))
+                && Util.fixNull(getHome(this.jdk)).equals(Util.fixNull(getHome(jdk)))
+                && this.factoryType==factoryType;
         }
 
         public void recycle() throws IOException {
-            if(age>=MAX_AGE || maxProcess==0)
+            if(age>=MAX_AGE || parent.capacity==0 || !isAlive() || isUsingTooMuchMemory())
                 discard();
             else {
                 output.set(new NullStream());
                 // make room for the new process and reuse.
                 synchronized(parent.processes) {
-                    while(parent.processes.size()>=maxProcess)
+                    while(parent.processes.size()>=parent.capacity)
                         parent.processes.removeFirst().discard();
                     parent.processes.add(this);
                 }
             }
         }
 
+        private boolean isAlive() throws IOException {
+            try {
+                return proc.isAlive();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Maven leaks memory through plugin class loaders and static caches, so a JVM whose heap is
+         * mostly used after a build would just make the next build slow or fail with {@link OutOfMemoryError}.
+         */
+        private boolean isUsingTooMuchMemory() {
+            try {
+                long[] mem = channel.call(new GetMemoryUsage());
+                if (mem[0] > mem[1]*MAX_HEAP_USAGE/100) {
+                    LOGGER.fine("Discarding a maven process that uses "+mem[0]+" bytes of heap out of "+mem[1]);
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                return true;    // the process is not healthy
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+        }
+
         /**
          * Discards this maven process.
          * It won't be reused in future builds.
@@ -174,15 +214,30 @@ public final class ProcessCache {
          * Cached processes.
          */
         private final LinkedList<MavenProcess> processes = new LinkedList<MavenProcess>();
+        /**
+         * Number of processes to keep, which follows the number of executors of the node.
+         */
+        private volatile int capacity;
+
+        PerChannel(int capacity) {
+            this.capacity = capacity;
+        }
     }
 
     // use WeakHashMap to avoid keeping VirtualChannel in memory.
     private final Map<VirtualChannel,PerChannel> cache = new WeakHashMap<VirtualChannel,PerChannel>();
     private final int maxProcess;
 
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    /**
+     * Total time spent launching new processes, in milliseconds.
+     */
+    private final AtomicLong startupTime = new AtomicLong();
+
     /**
      * @param maxProcess
-     *      Number of maximum processes to cache.
+     *      Number of maximum processes to cache per node, unless the node has more executors than this.
      */
     protected ProcessCache(int maxProcess) {
         this.maxProcess = maxProcess;
@@ -191,7 +246,12 @@ public final class ProcessCache {
     private synchronized PerChannel get(VirtualChannel owner) {
         PerChannel r = cache.get(owner);
         if(r==null)
-            cache.put(owner,r=new PerChannel());
+            cache.put(owner,r=new PerChannel(maxProcess));
+
+        // every executor can be running a Maven build, so keep one process for each
+        Computer c = Computer.currentComputer();
+        if (c!=null && maxProcess>0)
+            r.capacity = Math.min(Math.max(maxProcess,c.getNumExecutors()),MAX_PROCESS_PER_NODE);
         return r;
     }
 
@@ -207,10 +267,12 @@ public final class ProcessCache {
         synchronized(list.processes) {
             for (Iterator<MavenProcess> itr = list.processes.iterator(); itr.hasNext();) {
                 MavenProcess p =  itr.next();
-                if(p.matches(mavenOpts,installation,jdk)) {
+                if(p.matches(mavenOpts,installation,jdk,factory.getClass())) {
                     // reset the system property.
                     // this also serves as the sanity check.
                     try {
+                        if (!p.proc.isAlive())
+                            throw new IOException("Maven process is dead");
                         p.call(new SetSystemProperties(p.systemProperties));
                     } catch (IOException e) {
                         p.discard();
@@ -222,19 +284,67 @@ public final class ProcessCache {
                     itr.remove();
                     p.age++;
                     p.output.set(listener.getLogger());
+                    hits.incrementAndGet();
                     return p;
                 }
             }
         }
 
+        long start = System.currentTimeMillis();
         RedirectableOutputStream out = new RedirectableOutputStream(listener.getLogger());
-        return new MavenProcess(list,mavenOpts,installation,jdk,factory.newProcess(listener,out),out);
+        MavenProcess p = new MavenProcess(list,mavenOpts,installation,jdk,factory.getClass(),factory.newProcess(listener,out),out);
+        misses.incrementAndGet();
+        startupTime.addAndGet(System.currentTimeMillis()-start);
+        return p;
+    }
+
+    /**
+     * Number of times a cached process was reused.
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of times a new process had to be launched.
+     */
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Average time in milliseconds it took to launch a new process and connect to it.
+     */
+    public long getAverageStartupTime() {
+        int n = misses.get();
+        return n==0 ? 0 : startupTime.get()/n;
+    }
+
+    /**
+     * Estimated time in milliseconds saved by reusing processes instead of launching new ones.
+     */
+    public long getStartupTimeSaved() {
+        return getAverageStartupTime()*hits.get();
+    }
+
+    private static String getHome(ToolInstallation t) {
+        return t==null ? null : t.getHome();
     }
 
 
 
     public static int MAX_AGE = 5;
 
+    /**
+     * Upper bound of the number of processes to cache per node, regardless of its number of executors.
+     */
+    public static int MAX_PROCESS_PER_NODE = Integer.getInteger(ProcessCache.class.getName()+".maxPerNode",16);
+
+    /**
+     * Processes that use more than this percentage of their maximum heap after a build are not reused.
+     */
+    public static int MAX_HEAP_USAGE = Integer.getInteger(ProcessCache.class.getName()+".maxHeapUsage",75);
+
     static {
         String age = System.getProperty(ProcessCache.class.getName() + ".age");
         if(age!=null)
@@ -258,6 +368,19 @@ public final class ProcessCache {
         private static final long serialVersionUID = 1L;
     }
 
+    /**
+     * Reports used and maximum heap size of the maven process.
+     */
+    private static class GetMemoryUsage implements Callable<long[],RuntimeException> {
+        public long[] call() {
+            // what's left after a build is mostly garbage. we want to know what survives
+            System.gc();
+            Runtime r = Runtime.getRuntime();
+            return new long[]{r.totalMemory()-r.freeMemory(), r.maxMemory()};
+        }
+        private static final long serialVersionUID = 1L;
+    }
+
     private static class GetSystemProperties implements Callable<Properties,RuntimeException> {
         public Properties call() {
             return System.getProperties();
@@ -0,0 +1,18 @@
+package hudson.maven;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MavenModuleSetBuildTest {
+    @Test
+    public void hasThreadsOption() {
+        assertFalse(MavenModuleSetBuild.hasThreadsOption(null));
+        assertFalse(MavenModuleSetBuild.hasThreadsOption("clean install -DskipTests"));
+        assertFalse(MavenModuleSetBuild.hasThreadsOption("install -Dtest=Threads"));
+        assertTrue(MavenModuleSetBuild.hasThreadsOption("clean install -T 4"));
+        assertTrue(MavenModuleSetBuild.hasThreadsOption("-T1C install"));
+        assertTrue(MavenModuleSetBuild.hasThreadsOption("install --threads 2"));
+        assertTrue(MavenModuleSetBuild.hasThreadsOption("install --threads=2"));
+    }
+}
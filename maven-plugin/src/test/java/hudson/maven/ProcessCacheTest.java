@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.maven;
+
+import hudson.Proc;
+import hudson.maven.ProcessCache.MavenProcess;
+import hudson.maven.ProcessCache.NewProcess;
+import hudson.model.BuildListener;
+import hudson.model.JDK;
+import hudson.model.StreamBuildListener;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.VirtualChannel;
+import hudson.tasks.Maven.MavenInstallation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks when {@link ProcessCache} reuses a process and when it throws one away.
+ * The "maven process" is just the other end of an in-memory {@link Channel}.
+ */
+public class ProcessCacheTest {
+    private final ExecutorService executors = Executors.newCachedThreadPool();
+    private final List<Channel> channels = new ArrayList<Channel>();
+    private final VirtualChannel node = mock(VirtualChannel.class);
+    private final BuildListener listener = new StreamBuildListener(new ByteArrayOutputStream());
+
+    private int maxAge;
+    private int maxHeapUsage;
+
+    @Before
+    public void setUp() {
+        maxAge = ProcessCache.MAX_AGE;
+        maxHeapUsage = ProcessCache.MAX_HEAP_USAGE;
+        // the "maven process" is this JVM, so don't let its heap decide anything
+        ProcessCache.MAX_HEAP_USAGE = 100;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ProcessCache.MAX_AGE = maxAge;
+        ProcessCache.MAX_HEAP_USAGE = maxHeapUsage;
+        for (Channel c : channels)
+            c.close();
+        executors.shutdownNow();
+    }
+
+    @Test
+    public void reusedWhenMatching() throws Exception {
+        ProcessCache cache = new ProcessCache(2);
+        FakeFactory f = new FakeFactory("-Xmx256m");
+
+        MavenProcess p = cache.get(node, listener, f);
+        p.recycle();
+        assertSame(p, cache.get(node, listener, f));
+        assertEquals(1, f.launched);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void notReusedForDifferentOpts() throws Exception {
+        ProcessCache cache = new ProcessCache(2);
+        MavenProcess p = cache.get(node, listener, new FakeFactory("-Xmx256m"));
+        p.recycle();
+
+        FakeFactory f = new FakeFactory("-Xmx512m");
+        assertNotSame(p, cache.get(node, listener, f));
+        assertEquals(1, f.launched);
+        assertEquals(0, cache.getHitCount());
+        assertFalse(f.closed(p));
+    }
+
+    @Test
+    public void deadProcessDiscarded() throws Exception {
+        ProcessCache cache = new ProcessCache(2);
+        FakeFactory f = new FakeFactory(null);
+
+        MavenProcess p = cache.get(node, listener, f);
+        p.recycle();
+        when(p.proc.isAlive()).thenReturn(false);
+
+        assertNotSame(p, cache.get(node, listener, f));
+        assertEquals(2, f.launched);
+        assertEquals(0, cache.getHitCount());
+        assertTrue(f.closed(p));
+    }
+
+    @Test
+    public void discardedAtMaxAge() throws Exception {
+        ProcessCache.MAX_AGE = 1;
+        ProcessCache cache = new ProcessCache(2);
+        FakeFactory f = new FakeFactory(null);
+
+        MavenProcess p = cache.get(node, listener, f);
+        p.recycle();
+        assertSame(p, cache.get(node, listener, f));
+        p.recycle();    // second build done, too old now
+        assertTrue(f.closed(p));
+
+        assertNotSame(p, cache.get(node, listener, f));
+        assertEquals(2, f.launched);
+    }
+
+    @Test
+    public void oldestEvictedBeyondCapacity() throws Exception {
+        ProcessCache cache = new ProcessCache(1);
+        FakeFactory f = new FakeFactory(null);
+
+        MavenProcess p1 = cache.get(node, listener, f);
+        MavenProcess p2 = cache.get(node, listener, f);
+        p1.recycle();
+        p2.recycle();
+        assertTrue(f.closed(p1));
+        assertFalse(f.closed(p2));
+
+        assertSame(p2, cache.get(node, listener, f));
+        assertEquals(2, f.launched);
+    }
+
+    @Test
+    public void nothingKeptWithoutCapacity() throws Exception {
+        ProcessCache cache = new ProcessCache(0);
+        FakeFactory f = new FakeFactory(null);
+
+        MavenProcess p = cache.get(node, listener, f);
+        p.recycle();
+        assertTrue(f.closed(p));
+        assertNotSame(p, cache.get(node, listener, f));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private Channel[] pipe() throws Exception {
+        final FastPipedInputStream p1i = new FastPipedInputStream();
+        final FastPipedInputStream p2i = new FastPipedInputStream();
+        final FastPipedOutputStream p1o = new FastPipedOutputStream(p1i);
+        final FastPipedOutputStream p2o = new FastPipedOutputStream(p2i);
+
+        Future<Channel> f1 = executors.submit(new Callable<Channel>() {
+            public Channel call() throws Exception {
+                return new Channel("Jenkins side", executors, p1i, p2o);
+            }
+        });
+        Future<Channel> f2 = executors.submit(new Callable<Channel>() {
+            public Channel call() throws Exception {
+                return new Channel("Maven side", executors, p2i, p1o);
+            }
+        });
+        Channel[] r = {f1.get(), f2.get()};
+        channels.add(r[0]);
+        return r;
+    }
+
+    private class FakeFactory implements ProcessCache.Factory {
+        private final String mavenOpts;
+        private final List<Channel> closed = new ArrayList<Channel>();
+        int launched;
+
+        FakeFactory(String mavenOpts) {
+            this.mavenOpts = mavenOpts;
+        }
+
+        public NewProcess newProcess(BuildListener listener, OutputStream out) throws IOException, InterruptedException {
+            try {
+                final Channel[] c = pipe();
+                c[0].addListener(new Channel.Listener() {
+                    @Override
+                    public void onClosed(Channel channel, IOException cause) {
+                        synchronized (closed) {
+                            closed.add(c[0]);
+                        }
+                    }
+                });
+                Proc proc = mock(Proc.class);
+                when(proc.isAlive()).thenReturn(true);
+                launched++;
+                return new NewProcess(c[0], proc);
+            } catch (IOException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.toString());
+            }
+        }
+
+        boolean closed(MavenProcess p) {
+            synchronized (closed) {
+                return closed.contains(p.channel);
+            }
+        }
+
+        public String getMavenOpts() {
+            return mavenOpts;
+        }
+
+        public MavenInstallation getMavenInstallation(TaskListener listener) {
+            return null;
+        }
+
+        public JDK getJava(TaskListener listener) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson;
+
+import hudson.DependencyRunner.ProjectRunnable;
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.tasks.BuildTrigger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class ParallelDependencyRunnerTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private ExecutorService executor;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * a -> b -> c, d on its own, and e <-> f in a cycle.
+     */
+    private void createProjects() throws Exception {
+        FreeStyleProject a = j.jenkins.createProject(FreeStyleProject.class, "a");
+        FreeStyleProject b = j.jenkins.createProject(FreeStyleProject.class, "b");
+        j.jenkins.createProject(FreeStyleProject.class, "c");
+        j.jenkins.createProject(FreeStyleProject.class, "d");
+        FreeStyleProject e = j.jenkins.createProject(FreeStyleProject.class, "e");
+        FreeStyleProject f = j.jenkins.createProject(FreeStyleProject.class, "f");
+        a.getPublishersList().add(new BuildTrigger("b", Result.SUCCESS));
+        b.getPublishersList().add(new BuildTrigger("c", Result.SUCCESS));
+        e.getPublishersList().add(new BuildTrigger("f", Result.SUCCESS));
+        f.getPublishersList().add(new BuildTrigger("e", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+    }
+
+    private ParallelDependencyRunner run(final String failing, Executor executor) throws Exception {
+        ParallelDependencyRunner r = new ParallelDependencyRunner(new ProjectRunnable() {
+            public void run(AbstractProject p) {
+                events.add("start "+p.getName());
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new Error(e);
+                }
+                events.add("end "+p.getName());
+                if (p.getName().equals(failing))
+                    throw new IllegalStateException("failing "+p.getName());
+            }
+        }, executor);
+        r.start();
+        for (int i=0; i<300 && !r.isDone(); i++)
+            Thread.sleep(100);
+        assertTrue(r.isDone());
+        return r;
+    }
+
+    private void assertBefore(String first, String second) {
+        int i = events.indexOf(first), k = events.indexOf(second);
+        assertTrue(first+" missing in "+events, i>=0);
+        assertTrue(second+" missing in "+events, k>=0);
+        assertTrue(first+" should come before "+second+" in "+events, i<k);
+    }
+
+    /**
+     * Downstream projects start only after their upstream projects end, and cycles go last.
+     */
+    @Test
+    public void ordering() throws Exception {
+        createProjects();
+        ParallelDependencyRunner r = run(null, executor);
+
+        assertBefore("end a", "start b");
+        assertBefore("end b", "start c");
+        for (String p : new String[] {"a","b","c","d"}) {
+            assertBefore("end "+p, "start e");
+            assertBefore("end "+p, "start f");
+        }
+        assertEquals(12, events.size());
+        assertEquals(6, r.getProjectCount());
+        // d runs alongside a
+        assertTrue(r.getMaxParallelism()>=2);
+    }
+
+    /**
+     * A project that fails doesn't hold back its downstream projects, nor the completion of the round.
+     */
+    @Test
+    public void failure() throws Exception {
+        createProjects();
+        run("b", executor);
+
+        assertBefore("end b", "start c");
+        assertTrue(events.contains("end c"));
+        assertTrue(events.contains("end f"));
+    }
+
+    /**
+     * The round still completes when the executor refuses the work, such as while it's being replaced.
+     */
+    @Test
+    public void rejected() throws Exception {
+        createProjects();
+        run(null, new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        assertTrue(events.isEmpty());
+    }
+}
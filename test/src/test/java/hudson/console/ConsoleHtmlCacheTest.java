@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.tasks.Mailer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class ConsoleHtmlCacheTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private long minSize;
+    private int chunkSize;
+    private boolean disabled;
+
+    @Before
+    public void setUp() throws Exception {
+        minSize = ConsoleHtmlCache.MIN_SIZE;
+        chunkSize = ConsoleHtmlCache.CHUNK_SIZE;
+        disabled = ConsoleHtmlCache.DISABLED;
+        ConsoleHtmlCache.MIN_SIZE = 0;
+        ConsoleHtmlCache.CHUNK_SIZE = 512;   // so that the log spans many chunks
+        Mailer.descriptor().setHudsonUrl(j.getURL().toString());
+    }
+
+    @After
+    public void tearDown() {
+        ConsoleHtmlCache.MIN_SIZE = minSize;
+        ConsoleHtmlCache.CHUNK_SIZE = chunkSize;
+        ConsoleHtmlCache.DISABLED = disabled;
+    }
+
+    private String render(File log, FreeStyleBuild b, long start, boolean cached) throws Exception {
+        ConsoleHtmlCache.DISABLED = !cached;
+        StringWriter w = new StringWriter();
+        long end = new AnnotatedLargeText<FreeStyleBuild>(log, Charset.defaultCharset(), true, b).writeHtmlTo(start, w);
+        assertEquals(log.length(), end);
+        return w.toString();
+    }
+
+    /**
+     * The cached rendering must look exactly like the rendering on the fly, wherever the request starts.
+     */
+    @Test
+    public void sameAsUncached() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class, "p");
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+
+        StringBuilder buf = new StringBuilder();
+        for (int i=0; i<200; i++) {
+            buf.append("line ").append(i).append(" see http://www.example.com/").append(i).append(" <&>\n");
+            if (i%7==0)
+                buf.append(HyperlinkNote.encodeTo("/job/p/", "link "+i)).append('\n');
+        }
+        File log = new File(j.jenkins.getRootDir(), "test.log");
+        FileUtils.writeStringToFile(log, buf.toString());
+
+        long[] offsets = {0, 1, 100, log.length()/2, log.length()-1, log.length()};
+        for (long start : offsets) {
+            String expected = render(log, b, start, false);
+            // twice: once to render the cache, once to read from it
+            assertEquals("at "+start, expected, render(log, b, start, true));
+            assertEquals("at "+start, expected, render(log, b, start, true));
+        }
+        assertTrue(new File(log.getPath()+".html.gz").exists());
+        String html = render(log, b, 0, true);
+        assertTrue(html.contains("<a href"));
+        assertTrue(html.contains("&lt;&amp;&gt;"));
+    }
+
+    private File writeLinkedLog() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i=0; i<50; i++)
+            buf.append(HyperlinkNote.encodeTo("/job/p/", "link "+i)).append('\n');
+        File log = new File(j.jenkins.getRootDir(), "test.log");
+        FileUtils.writeStringToFile(log, buf.toString());
+        return log;
+    }
+
+    /**
+     * Without a configured root URL, links would be rendered with whatever URL the first viewer used.
+     */
+    @Test
+    public void notCachedWithoutRootUrl() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class, "p");
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        File log = writeLinkedLog();
+        Mailer.descriptor().setHudsonUrl(null);
+
+        assertEquals(render(log, b, 0, false), render(log, b, 0, true));
+        assertFalse(new File(log.getPath()+".html.gz").exists());
+    }
+
+    /**
+     * Changing the root URL discards the rendering made with the old one.
+     */
+    @Test
+    public void rootUrlChange() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class, "p");
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        File log = writeLinkedLog();
+
+        Mailer.descriptor().setHudsonUrl("http://old.example.com/");
+        assertTrue(render(log, b, 0, true).contains("http://old.example.com/job/p/"));
+        assertTrue(new File(log.getPath()+".html.gz").exists());
+
+        Mailer.descriptor().setHudsonUrl("http://new.example.com/");
+        String html = render(log, b, 0, true);
+        assertTrue(html.contains("http://new.example.com/job/p/"));
+        assertFalse(html.contains("http://old.example.com/"));
+        assertEquals(render(log, b, 0, false), html);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.console;
+
+import hudson.Util;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class ConsoleNoteDictionaryTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * Notes written through the dictionary are annotated just like the ones written inline.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i=0; i<3; i++)
+            text.append("line ").append(i).append(' ').append(HyperlinkNote.encodeTo("http://jenkins-ci.org/","jenkins")).append('\n');
+
+        File dir = Util.createTempDir();
+        try {
+            File log = new File(dir,"log");
+            OutputStream out = new ConsoleNoteDictionaryOutputStream(new FileOutputStream(log), ConsoleNoteDictionary.getFileFor(log));
+            out.write(text.toString().getBytes("UTF-8"));
+            out.close();
+
+            // the same note is stored once, and the log only has references to it
+            String written = FileUtils.readFileToString(log,"UTF-8");
+            assertTrue(written.length() < text.length());
+            ConsoleNoteDictionary d = ConsoleNoteDictionary.of(log);
+            assertNotNull(d);
+            assertTrue(d.get(0) instanceof HyperlinkNote);
+            assertEquals(1, d.size());
+
+            String html = annotate(written.getBytes("UTF-8"), d);
+            assertEquals(annotate(text.toString().getBytes("UTF-8"), null), html);
+            assertEquals("line 0 <a href='http://jenkins-ci.org/'>jenkins</a>\n" +
+                         "line 1 <a href='http://jenkins-ci.org/'>jenkins</a>\n" +
+                         "line 2 <a href='http://jenkins-ci.org/'>jenkins</a>\n", html);
+
+            // and the references are unreadable without the dictionary, so they are just dropped
+            assertEquals("line 0 jenkins\nline 1 jenkins\nline 2 jenkins\n", annotate(written.getBytes("UTF-8"), null));
+        } finally {
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    private static String annotate(byte[] log, ConsoleNoteDictionary d) throws IOException {
+        StringWriter w = new StringWriter();
+        ConsoleAnnotationOutputStream<Object> out = new ConsoleAnnotationOutputStream<Object>(w, null, null, Charset.forName("UTF-8"), d);
+        IOUtils.write(log, out);
+        out.close();
+        return w.toString();
+    }
+}
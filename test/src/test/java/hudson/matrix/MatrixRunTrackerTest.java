@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.matrix;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.util.OneShotEvent;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class MatrixRunTrackerTest extends HudsonTestCase {
+    /**
+     * A configuration that completes is noticed right away, even while one scheduled earlier is still running.
+     */
+    public void testCompletionInAnyOrder() throws Exception {
+        jenkins.setNumExecutors(3);
+        jenkins.setNodes(jenkins.getNodes());
+        MatrixProject p = createMatrixProject();
+        p.setAxes(new AxisList(new TextAxis("foo", "a", "b")));
+        final OneShotEvent release = new OneShotEvent();
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                if (build.getBuildVariables().get("foo").equals("a"))
+                    release.block();
+                return true;
+            }
+        });
+
+        QueueTaskFuture<MatrixBuild> f = p.scheduleBuild2(0);
+        MatrixBuild b = f.waitForStart();
+        try {
+            waitForLog(b, "foo=b completed with result SUCCESS");
+            assertFalse(b.getLog().contains("foo=a completed"));
+        } finally {
+            release.signal();
+        }
+        assertBuildStatusSuccess(f);
+        assertLogContains("foo=a completed with result SUCCESS", b);
+    }
+
+    /**
+     * A configuration cancelled while in the queue never produces a build, and is noticed through the future of its queue item.
+     */
+    public void testCancelledInQueue() throws Exception {
+        jenkins.setNumExecutors(2);
+        jenkins.setNodes(jenkins.getNodes());
+        MatrixProject p = createMatrixProject();
+        p.setAxes(new AxisList(new LabelAxis("label", Arrays.asList("master", "nosuchlabel"))));
+
+        QueueTaskFuture<MatrixBuild> f = p.scheduleBuild2(0);
+        MatrixBuild b = f.waitForStart();
+        MatrixConfiguration stuck = p.getItem("label=nosuchlabel");
+        Queue.Item item = null;
+        for (int i=0; i<100 && item==null; i++) {
+            item = stuck.getQueueItem();
+            if (item==null)
+                Thread.sleep(100);
+        }
+        assertNotNull(item);
+        jenkins.getQueue().cancel(item);
+
+        assertBuildStatus(Result.ABORTED, f.get());
+        assertLogContains("label=nosuchlabel appears to be cancelled", b);
+        assertNull(stuck.getBuildByNumber(b.getNumber()));
+    }
+
+    private static void waitForLog(MatrixBuild b, String text) throws Exception {
+        for (int i=0; i<300; i++) {
+            if (b.getLog().contains(text))
+                return;
+            Thread.sleep(100);
+        }
+        fail("never saw "+text+" in "+b.getLog());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.maven;
+
+import hudson.model.Cause;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.SingleFileSCM;
+
+public class MavenModuleSetBuildTest extends HudsonTestCase {
+    private static final String POM =
+        "<project><modelVersion>4.0.0</modelVersion>" +
+        "<groupId>test</groupId><artifactId>root</artifactId><version>1.0</version><packaging>pom</packaging>" +
+        "<profiles><profile><id>with-b</id>" +
+        "<activation><property><name>env.WITH_B</name><value>true</value></property></activation>" +
+        "<modules><module>b</module></modules>" +
+        "</profile></profiles></project>";
+
+    private static final String POM_B =
+        "<project><modelVersion>4.0.0</modelVersion>" +
+        "<groupId>test</groupId><artifactId>b</artifactId><version>1.0</version><packaging>pom</packaging></project>";
+
+    /**
+     * A profile activated by an environment variable that the POM doesn't otherwise refer to
+     * still has the POMs parsed again when the variable changes.
+     */
+    public void testProfileActivatedByEnv() throws Exception {
+        configureDefaultMaven();
+        MavenModuleSet m = createMavenProject();
+        m.setScm(new SingleFileSCM("pom.xml", POM));
+        m.setGoals("validate");
+        m.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("WITH_B", "false")));
+        jenkins.getWorkspaceFor(m).child("b/pom.xml").write(POM_B, "UTF-8");
+
+        assertBuildStatusSuccess(m.scheduleBuild2(0, new Cause.UserCause(),
+                new ParametersAction(new StringParameterValue("WITH_B", "false"))));
+        assertEquals(1, m.getModules().size());
+
+        assertBuildStatusSuccess(m.scheduleBuild2(0, new Cause.UserCause(),
+                new ParametersAction(new StringParameterValue("WITH_B", "true"))));
+        assertLogNotContains("reusing the parse result", m.getLastBuild());
+        assertEquals(2, m.getModules().size());
+        assertNotNull(m.getModule("test:b"));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest;
+import org.koshuke.stapler.simile.timeline.Event;
+import org.koshuke.stapler.simile.timeline.TimelineEventList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildSummaryIndexTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void buildsPaged() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        for (int i=0; i<5; i++)
+            j.buildAndAssertSuccess(p);
+
+        assertEquals(Arrays.asList(5,4,3,2,1), numbers(p.getBuildsPaged(2)));
+        assertEquals(Arrays.asList(5,4,3,2,1), numbers(p.getBuildsPaged(10)));
+
+        p.getBuildByNumber(3).delete();
+        assertEquals(Arrays.asList(5,4,2,1), numbers(p.getBuildsPaged(2)));
+        assertEquals(4, p.getBuildSummaryIndex().size());
+    }
+
+    @Test
+    public void persistedAcrossReload() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        for (int i=0; i<3; i++)
+            j.buildAndAssertSuccess(p);
+        p.getBuildByNumber(2).setDisplayName("second");
+        assertEquals("second", p.getBuildSummaryIndex().get(2).displayName);
+        assertTrue(new File(p.getRootDir(),"buildSummaries.txt").exists());
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p",FreeStyleProject.class);
+        BuildSummaryIndex index = p.getBuildSummaryIndex();
+        assertEquals(3, index.size());
+        for (FreeStyleBuild b : p.getBuilds())
+            assertEquals(new BuildSummaryIndex.Summary(b), index.get(b.getNumber()));
+        assertEquals("second", index.get(2).displayName);
+    }
+
+    /**
+     * The timeline of a job drawn from the summaries is the same as the one drawn from the builds.
+     */
+    @Test
+    public void timeline() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        for (int i=0; i<3; i++)
+            j.buildAndAssertSuccess(p);
+
+        StaplerRequest req = mock(StaplerRequest.class);
+        when(req.getContextPath()).thenReturn("/jenkins");
+        long min = 0, max = System.currentTimeMillis()+1000;
+        TimelineEventList expected = new BuildTimelineWidget(p.getBuilds()).doData(req,min,max);
+        TimelineEventList actual = p.getTimeline().doData(req,min,max);
+
+        assertEquals(3, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); i++) {
+            Event e = expected.get(i), a = actual.get(i);
+            assertEquals(e.start, a.start);
+            assertEquals(e.end, a.end);
+            assertEquals(e.title, a.title);
+            assertEquals(e.link, a.link);
+            assertEquals(e.color, a.color);
+            assertEquals(e.classname, a.classname);
+        }
+
+        // only the builds within the range
+        FreeStyleBuild b2 = p.getBuildByNumber(2);
+        long t = b2.getTimestamp().getTimeInMillis();
+        TimelineEventList one = p.getTimeline().doData(req,t,t+1);
+        assertEquals(1, one.size());
+        assertEquals("/jenkins/"+b2.getUrl(), one.get(0).link);
+    }
+
+    private static List<Integer> numbers(Iterable<? extends Run<?,?>> runs) {
+        List<Integer> r = new ArrayList<Integer>();
+        for (Run<?,?> b : runs)
+            r.add(b.getNumber());
+        return r;
+    }
+}
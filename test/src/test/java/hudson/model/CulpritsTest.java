@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import hudson.XmlFile;
+import hudson.model.listeners.SaveableListener;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.FakeChangeLogSCM;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class CulpritsTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * Two failing builds, by alice and then by bob.
+     */
+    private FreeStyleProject failingChain() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class, "p");
+        FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        p.setScm(scm);
+        p.getBuildersList().add(new FailureBuilder());
+
+        scm.addChange().withAuthor("alice");
+        j.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0).get());
+        scm.addChange().withAuthor("bob");
+        j.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0).get());
+        return p;
+    }
+
+    private static Set<String> ids(Set<User> users) {
+        Set<String> r = new TreeSet<String>();
+        for (User u : users)
+            r.add(u.getId());
+        return r;
+    }
+
+    private static Set<String> set(String... ids) {
+        return new TreeSet<String>(Arrays.asList(ids));
+    }
+
+    /**
+     * Culprits of a failing build are inherited from the previous failing build when it completes,
+     * and kept in <tt>build.xml</tt> rather than computed again.
+     */
+    @Test
+    public void inheritedAtCompletion() throws Exception {
+        FreeStyleProject p = failingChain();
+        assertEquals(set("alice","bob"), ids(p.getBuildByNumber(2).getCulprits()));
+        String xml = FileUtils.readFileToString(new File(p.getBuildByNumber(2).getRootDir(), "build.xml"));
+        assertTrue(xml, xml.contains("<culprits"));
+
+        j.jenkins.reload();
+        // computed on the fly, it'd only have bob, as a completed build doesn't inherit
+        p = (FreeStyleProject)j.jenkins.getItem("p");
+        assertEquals(set("alice","bob"), ids(p.getBuildByNumber(2).getCulprits()));
+    }
+
+    /**
+     * A build from before the culprits were recorded gets them recorded once, in the background,
+     * and not by those who ask for them.
+     */
+    @Test
+    public void legacyBuildBackfilledOnce() throws Exception {
+        FreeStyleProject p = failingChain();
+        File xml = new File(p.getBuildByNumber(2).getRootDir(), "build.xml");
+        String s = FileUtils.readFileToString(xml).replaceAll("(?s)<culprits.*?</culprits>|<culprits[^>]*/>", "");
+        assertFalse(s.contains("<culprits"));
+        FileUtils.writeStringToFile(xml, s);
+
+        final int[] saves = new int[1];
+        SaveableListener l = new SaveableListener() {
+            @Override
+            public void onChange(Saveable o, XmlFile file) {
+                if (o instanceof FreeStyleBuild && ((FreeStyleBuild)o).getNumber()==2)
+                    saves[0]++;
+            }
+        };
+        l.register();
+        try {
+            j.jenkins.reload();
+            BuildRecordBackfill.waitForCompletion();
+            assertEquals(1, saves[0]);
+            assertTrue(FileUtils.readFileToString(xml).contains("<culprits"));
+
+            p = (FreeStyleProject)j.jenkins.getItem("p");
+            FreeStyleBuild b = p.getBuildByNumber(2);
+            // the old algorithm, which doesn't inherit for completed builds
+            assertEquals(set("bob"), ids(b.getCulprits()));
+            b.getCulprits();
+            BuildRecordBackfill.waitForCompletion();
+            assertEquals(1, saves[0]);
+        } finally {
+            l.unregister();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.model;
+
+import jenkins.model.Jenkins;
+import jenkins.model.StartupProfile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DeferredBuildLoaderTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private boolean deferred;
+
+    @Before
+    public void setUp() {
+        deferred = Jenkins.DEFERRED_BUILD_LOAD;
+    }
+
+    @After
+    public void tearDown() {
+        Jenkins.DEFERRED_BUILD_LOAD = deferred;
+    }
+
+    private FreeStyleProject reloadWithTwoBuilds() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        j.buildAndAssertSuccess(p);
+        j.buildAndAssertSuccess(p);
+
+        Jenkins.DEFERRED_BUILD_LOAD = true;
+        j.jenkins.reload();
+        return (FreeStyleProject)j.jenkins.getItem("p");
+    }
+
+    /**
+     * Many threads asking for the builds right after the start up all need to see them,
+     * including the ones that come while they are being loaded.
+     */
+    @Test
+    public void buildsVisibleOnFirstAccess() throws Exception {
+        final FreeStyleProject p = reloadWithTwoBuilds();
+
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i=0; i<8; i++) {
+                results.add(es.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        FreeStyleBuild b = p.getLastBuild();
+                        return b!=null ? b.getNumber() : -1;
+                    }
+                }));
+            }
+            for (Future<Integer> r : results)
+                assertEquals(2, r.get().intValue());
+        } finally {
+            es.shutdown();
+        }
+        assertEquals(2, p.getBuilds().size());
+        assertNotNull(p.getLastSuccessfulBuild());
+    }
+
+    @Test
+    public void newBuildAfterDeferredLoad() throws Exception {
+        FreeStyleProject p = reloadWithTwoBuilds();
+
+        // start a build before anyone looked at the existing ones
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        assertEquals(3, b.getNumber());
+        assertEquals(3, p.getBuilds().size());
+        assertEquals(2, b.getPreviousBuild().getNumber());
+    }
+
+    @Test
+    public void startupProfile() throws Exception {
+        reloadWithTwoBuilds();
+
+        StartupProfile profile = j.jenkins.getExtensionList(RootAction.class).get(StartupProfile.class);
+        assertFalse(profile.getTasks().isEmpty());
+        assertFalse(profile.getMilestones().isEmpty());
+        assertTrue(profile.getTotalDuration()>=0);
+        // the slowest first
+        List<StartupProfile.Entry> tasks = profile.getTasks();
+        for (int i=1; i<tasks.size(); i++)
+            assertTrue(tasks.get(i-1).getDuration()>=tasks.get(i).getDuration());
+    }
+}
@@ -36,6 +36,7 @@ import hudson.model.queue.QueueTaskFuture;
 import hudson.tasks.Shell;
 import hudson.triggers.SCMTrigger.SCMTriggerCause;
 import hudson.triggers.TimerTrigger.TimerTriggerCause;
+import hudson.util.ConsistentHash;
 import hudson.util.XStream2;
 import hudson.util.OneShotEvent;
 import hudson.Launcher;
@@ -289,6 +290,44 @@ public class QueueTest extends HudsonTestCase {
             assertBuildStatusSuccess(f);
     }
 
+    /**
+     * The hash that places flyweight tasks is reused, but not once the nodes or their executors change.
+     */
+    public void testFlyweightHashRebuilt() throws Exception {
+        ConsistentHash<Node> h = getFlyweightHash();
+        assertSame(h, getFlyweightHash());
+
+        Node s = createSlave();
+        ConsistentHash<Node> h2 = getFlyweightHash();
+        assertNotSame(h, h2);
+        assertSame(h2, getFlyweightHash());
+        assertTrue(contains(h2, s));
+
+        jenkins.setNumExecutors(jenkins.getNumExecutors()+1);
+        ConsistentHash<Node> h3 = getFlyweightHash();
+        assertNotSame(h2, h3);
+        assertSame(h3, getFlyweightHash());
+
+        jenkins.removeNode(s);
+        ConsistentHash<Node> h4 = getFlyweightHash();
+        assertNotSame(h3, h4);
+        assertFalse(contains(h4, s));
+    }
+
+    private ConsistentHash<Node> getFlyweightHash() {
+        Queue q = jenkins.getQueue();
+        synchronized (q) {
+            return q.getFlyweightHash();
+        }
+    }
+
+    private static boolean contains(ConsistentHash<Node> h, Node n) {
+        for (Node x : h.list("some task"))
+            if (x==n)
+                return true;
+        return false;
+    }
+
     public void testWaitForStart() throws Exception {
         final OneShotEvent ev = new OneShotEvent();
         FreeStyleProject p = createFreeStyleProject();
@@ -23,8 +23,12 @@
  */
 package hudson.model;
 
+import hudson.Launcher;
 import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.TestBuilder;
 
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.List;
 
 /**
@@ -61,4 +65,29 @@ public class RunTest extends HudsonTestCase {
         assertEquals(a.get(0).getDisplayPath(),"a.xml");
         assertEquals(a.get(1).getDisplayPath(),"a/a.xml");
     }
+
+    /**
+     * A build writing line by line and flushing after each, as builds do, still gets its writes to the log coalesced.
+     */
+    public void testLogCoalesced() throws Exception {
+        FreeStyleProject p = createFreeStyleProject();
+        final long[] flushes = new long[1];
+        p.getBuildersList().add(new TestBuilder() {
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                PrintStream logger = listener.getLogger();
+                long before = build.getLogStream().getFlushCount();
+                for (int i=0; i<1000; i++) {
+                    logger.println("line "+i);
+                    logger.flush();
+                }
+                flushes[0] = build.getLogStream().getFlushCount()-before;
+                return true;
+            }
+        });
+        FreeStyleBuild b = buildAndAssertSuccess(p);
+        assertTrue("flushed "+flushes[0]+" times", flushes[0]<100);
+        String log = b.getLog();
+        for (int i=0; i<1000; i++)
+            assertTrue(log.contains("line "+i+"\n") || log.contains("line "+i+"\r\n"));
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.scm;
+
+import hudson.XmlFileWriteQueue;
+import hudson.model.BuildRecordBackfill;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.FakeChangeLogSCM;
+import org.jvnet.hudson.test.FakeChangeLogSCM.EntryImpl;
+import org.jvnet.hudson.test.FakeChangeLogSCM.FakeChangeLogSet;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ChangeLogSummaryTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void roundTrip() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        scm.addChange().withAuthor("alice").withMsg("first");
+        scm.addChange().withAuthor("bob").withMsg("second");
+        p.setScm(scm);
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+
+        XmlFileWriteQueue.flushAll();
+        assertTrue(getFile(b).exists());
+
+        ChangeLogSummary s = ChangeLogSummary.load(b);
+        assertNotNull(s);
+        assertEquals(2, s.getEntries().size());
+        ChangeLogSummary.Entry e = s.getEntries().get(0);
+        assertEquals("alice", e.author);
+        assertEquals("first", e.msg);
+        assertEquals(Collections.singletonList("path"), e.getAffectedPaths());
+        assertEquals("second", s.getEntries().get(1).msg);
+        assertEquals(Arrays.asList("alice","bob"), Arrays.asList(s.getAuthorIds().toArray()));
+
+        assertTrue(b.hasParticipant(User.get("bob")));
+        assertFalse(b.hasParticipant(User.get("carol")));
+    }
+
+    @Test
+    public void unresolvableAuthor() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+
+        EntryImpl unknown = new EntryImpl() {
+            @Override
+            public User getAuthor() {
+                throw new RuntimeException("no such committer");
+            }
+        }.withMsg("anonymous");
+        ChangeLogSummary s = ChangeLogSummary.of(new FakeChangeLogSet(b,
+                Arrays.asList(unknown, new EntryImpl().withAuthor("alice"))));
+        assertEquals(2, s.getEntries().size());
+        assertNull(s.getEntries().get(0).author);
+        assertEquals("anonymous", s.getEntries().get(0).msg);
+        assertEquals(Collections.singleton("alice"), s.getAuthorIds());
+
+        // the entry without an author survives the round trip
+        s.save(b);
+        ChangeLogSummary t = ChangeLogSummary.load(b);
+        assertEquals(2, t.getEntries().size());
+        assertNull(t.getEntries().get(0).author);
+        assertEquals("alice", t.getEntries().get(1).author);
+    }
+
+    /**
+     * Builds from before the summary was introduced get one computed from the change log,
+     * which is written in the background.
+     */
+    @Test
+    public void backfill() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        FakeChangeLogSCM scm = new FakeChangeLogSCM();
+        scm.addChange().withAuthor("alice").withMsg("old change");
+        p.setScm(scm);
+        j.buildAndAssertSuccess(p);
+
+        XmlFileWriteQueue.flushAll();
+        File f = getFile(p.getBuildByNumber(1));
+        assertTrue(f.delete());
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p",FreeStyleProject.class);
+        FreeStyleBuild b = p.getBuildByNumber(1);
+        assertNull(ChangeLogSummary.load(b));
+
+        ChangeLogSummary s = b.getChangeLogSummary();
+        assertEquals(1, s.getEntries().size());
+        assertEquals("alice", s.getEntries().get(0).author);
+        assertEquals("old change", s.getEntries().get(0).msg);
+
+        BuildRecordBackfill.waitForCompletion();
+        XmlFileWriteQueue.flushAll();
+        assertTrue(f.exists());
+        assertEquals("old change", ChangeLogSummary.load(b).getEntries().get(0).msg);
+    }
+
+    private static File getFile(FreeStyleBuild b) {
+        return new File(b.getRootDir(),"changelogSummary.xml");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.tasks.test;
+
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class TestResultTrendTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    /**
+     * The trend graph is drawn from the recorded series, and not from the builds.
+     */
+    @Test
+    public void graphFromSummaryAlone() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        for (int i=0; i<3; i++)
+            j.buildAndAssertSuccess(p);
+        writeSeries(p);
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        assertEquals(4, b.getNumber());
+        b.addAction(new SummaryOnlyAction(b));
+
+        String map = graphMap(4);
+        for (int i=1; i<=4; i++)
+            assertTrue(map, map.contains("href=\""+i+"/testReport/\""));
+        assertTrue(map, map.contains("#2: 1 failure"));
+        // the name is the recorded one, and not the one the build has
+        assertTrue(map, map.contains("release 3: 2 failures"));
+        assertTrue(map, map.contains("#4: 5 tests"));
+    }
+
+    /**
+     * A build deleted before the series is loaded doesn't stay in the graph.
+     */
+    @Test
+    public void deletedBeforeLoad() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class,"p");
+        for (int i=0; i<3; i++)
+            j.buildAndAssertSuccess(p);
+        writeSeries(p);
+        p.getBuildByNumber(2).delete();
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p",FreeStyleProject.class);
+        FreeStyleBuild b = j.buildAndAssertSuccess(p);
+        assertEquals(4, b.getNumber());
+        b.addAction(new SummaryOnlyAction(b));
+
+        String map = graphMap(4);
+        assertTrue(map, map.contains("href=\"1/testReport/\""));
+        assertFalse(map, map.contains("href=\"2/testReport/\""));
+        assertTrue(map, map.contains("href=\"3/testReport/\""));
+        assertFalse(TestResultTrend.of(p).getPoints().containsKey(2));
+        assertFalse(FileUtils.readFileToString(new File(p.getRootDir(),"testResultTrend.txt")).contains("\n2 "));
+    }
+
+    private void writeSeries(FreeStyleProject p) throws Exception {
+        FileUtils.writeStringToFile(new File(p.getRootDir(),"testResultTrend.txt"),
+                "1 10 0 0 1000\n" +
+                "2 10 1 0 1000 #2\n" +
+                "3 12 2 1 1000 release 3\n");
+    }
+
+    private String graphMap(int build) throws Exception {
+        return j.createWebClient().goTo("job/p/"+build+"/testReport/graphMap","text/plain").getWebResponse().getContentAsString();
+    }
+
+    @Test
+    public void pointWithoutName() {
+        TestResultTrend.Point pt = TestResultTrend.Point.parse("7 3 1 0 20");
+        assertEquals("#7", pt.displayName);
+        assertEquals("7 3 1 0 20 #7", pt.toString());
+        assertEquals("a b", TestResultTrend.Point.parse("7 3 1 0 20 a b").displayName);
+    }
+
+    private static class SummaryOnlyAction extends AbstractTestResultAction<SummaryOnlyAction> {
+        SummaryOnlyAction(AbstractBuild owner) {
+            super(owner);
+        }
+
+        @Override
+        public int getFailCount() {
+            return 0;
+        }
+
+        @Override
+        public int getTotalCount() {
+            return 5;
+        }
+
+        @Override
+        public Object getResult() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2012, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.security;
+
+import hudson.model.User;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.AuthenticationException;
+import org.acegisecurity.AuthenticationManager;
+import org.acegisecurity.BadCredentialsException;
+import org.acegisecurity.providers.UsernamePasswordAuthenticationToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.*;
+
+public class UserDetailsCacheTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private int ttl;
+    private CountingManager manager;
+
+    @Before
+    public void setUp() {
+        ttl = UserDetailsCache.TTL;
+        UserDetailsCache.TTL = 120;
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        manager = new CountingManager();
+    }
+
+    @After
+    public void tearDown() {
+        UserDetailsCache.TTL = ttl;
+    }
+
+    @Test
+    public void badPasswordIsNotServedFromCache() throws Exception {
+        authenticate("alice","alice");
+        authenticate("alice","alice");
+        assertEquals(1, manager.calls);
+
+        try {
+            authenticate("alice","wrong");
+            fail();
+        } catch (BadCredentialsException e) {
+            // expected
+        }
+        assertEquals(2, manager.calls);
+
+        // the failure is remembered, but doesn't affect the right password
+        try {
+            authenticate("alice","wrong");
+            fail();
+        } catch (BadCredentialsException e) {
+            // expected
+        }
+        authenticate("alice","alice");
+        assertEquals(2, manager.calls);
+    }
+
+    @Test
+    public void invalidatedWhenUserIsSaved() throws Exception {
+        authenticate("alice","alice");
+        authenticate("bob","bob");
+        assertEquals(2, manager.calls);
+
+        User.get("alice").save();
+        authenticate("alice","alice");
+        assertEquals(3, manager.calls);
+        authenticate("bob","bob");
+        assertEquals(3, manager.calls);
+    }
+
+    @Test
+    public void invalidatedWhenRealmIsChanged() throws Exception {
+        authenticate("alice","alice");
+        authenticate("alice","alice");
+        assertEquals(1, manager.calls);
+
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        authenticate("alice","alice");
+        assertEquals(2, manager.calls);
+    }
+
+    @Test
+    public void expires() throws Exception {
+        UserDetailsCache.TTL = 1;
+        authenticate("alice","alice");
+        authenticate("alice","alice");
+        assertEquals(1, manager.calls);
+
+        Thread.sleep(1500);
+        authenticate("alice","alice");
+        assertEquals(2, manager.calls);
+    }
+
+    @Test
+    public void detailsOfCurrentRequest() throws Exception {
+        Authentication first = authenticate("alice","alice","first");
+        Authentication second = authenticate("alice","alice","second");
+        assertEquals(1, manager.calls);
+
+        assertEquals("first", first.getDetails());
+        assertEquals("second", second.getDetails());
+        assertEquals(first.getPrincipal(), second.getPrincipal());
+        assertArrayEquals(first.getAuthorities(), second.getAuthorities());
+        assertTrue(second.isAuthenticated());
+    }
+
+    private Authentication authenticate(String user, String password) {
+        return authenticate(user,password,null);
+    }
+
+    private Authentication authenticate(String user, String password, Object details) {
+        UsernamePasswordAuthenticationToken a = new UsernamePasswordAuthenticationToken(user,password);
+        a.setDetails(details);
+        return UserDetailsCache.get().authenticate(manager, a);
+    }
+
+    /**
+     * Authenticates against the security realm of Jenkins, counting the calls.
+     */
+    private class CountingManager implements AuthenticationManager {
+        int calls;
+
+        public Authentication authenticate(Authentication a) throws AuthenticationException {
+            calls++;
+            return j.jenkins.getSecurityRealm().getSecurityComponents().manager.authenticate(a);
+        }
+    }
+}
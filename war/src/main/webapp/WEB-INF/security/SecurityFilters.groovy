@@ -41,6 +41,7 @@ import hudson.security.HttpSessionContextIntegrationFilter2
 import hudson.security.SecurityRealm
 import hudson.security.NoopFilter
 import jenkins.security.ApiTokenFilter
+import jenkins.security.CachingAuthenticationManager
 
 // providers that apply to both patterns
 def commonProviders() {
@@ -75,7 +76,8 @@ filter(ChainedServletFilter) {
         // but allow that to be skipped since it can interfere with reverse proxy setup
         Boolean.getBoolean("jenkins.security.ignoreBasicAuth") ? bean(NoopFilter) :
         bean(BasicProcessingFilter) {
-            authenticationManager = securityComponents.manager
+            // scripted clients authenticate every request, so avoid going back to the realm every time
+            authenticationManager = new CachingAuthenticationManager(securityComponents.manager)
             // if basic authentication fails (which only happens incorrect basic auth credential is sent),
             // respond with 401 with basic auth request, instead of redirecting the user to the login page,
             // since users of basic auth tends to be a program and won't see the redirection to the form